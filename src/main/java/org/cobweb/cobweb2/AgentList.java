@@ -0,0 +1,101 @@
+package org.cobweb.cobweb2;
+
+import java.util.Arrays;
+
+import org.cobweb.cobweb2.core.Agent;
+
+/**
+ * Agents of a simulation, in the order they are updated.
+ *
+ * While the agents are being updated, removed agents leave an empty slot behind and agents
+ * added are held back in a separate buffer, so indexes stay the same for the whole update.
+ * endUpdate() then closes the gaps in one pass and appends the new agents in the order they
+ * were added.
+ */
+final class AgentList {
+
+	private Agent[] agents = new Agent[64];
+	private int size = 0;
+	private int removed = 0;
+
+	private Agent[] pending = new Agent[16];
+	private int pendingSize = 0;
+
+	private boolean updating = false;
+
+	/**
+	 * @return number of slots, including those of agents removed during the current update
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return agent in the given slot, null if it was removed during the current update
+	 */
+	Agent get(int index) {
+		return agents[index];
+	}
+
+	void add(Agent agent) {
+		if (updating) {
+			if (pendingSize == pending.length)
+				pending = Arrays.copyOf(pending, pendingSize * 2);
+			pending[pendingSize++] = agent;
+		} else {
+			ensureCapacity(size + 1);
+			agents[size++] = agent;
+		}
+	}
+
+	/**
+	 * Empties the slot of an agent, the slot is reclaimed by endUpdate().
+	 */
+	void remove(int index) {
+		agents[index] = null;
+		removed++;
+	}
+
+	void beginUpdate() {
+		updating = true;
+	}
+
+	/**
+	 * Closes the slots left by removed agents and appends the agents added since beginUpdate().
+	 */
+	void endUpdate() {
+		updating = false;
+
+		if (removed > 0) {
+			int kept = 0;
+			for (int i = 0; i < size; i++) {
+				if (agents[i] != null)
+					agents[kept++] = agents[i];
+			}
+			Arrays.fill(agents, kept, size, null);
+			size = kept;
+			removed = 0;
+		}
+
+		if (pendingSize > 0) {
+			ensureCapacity(size + pendingSize);
+			System.arraycopy(pending, 0, agents, size, pendingSize);
+			size += pendingSize;
+			Arrays.fill(pending, 0, pendingSize, null);
+			pendingSize = 0;
+		}
+	}
+
+	void clear() {
+		Arrays.fill(agents, 0, size, null);
+		size = 0;
+		removed = 0;
+		Arrays.fill(pending, 0, pendingSize, null);
+		pendingSize = 0;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > agents.length)
+			agents = Arrays.copyOf(agents, Math.max(capacity, agents.length * 2));
+	}
+}
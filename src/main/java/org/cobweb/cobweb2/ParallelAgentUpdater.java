@@ -0,0 +1,421 @@
+package org.cobweb.cobweb2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.cobweb.cobweb2.core.Agent;
+import org.cobweb.cobweb2.core.AgentListener;
+import org.cobweb.cobweb2.core.Cause;
+import org.cobweb.cobweb2.core.ControllerInput;
+import org.cobweb.cobweb2.core.LocationDirection;
+import org.cobweb.cobweb2.core.Phenotype;
+import org.cobweb.cobweb2.impl.ComplexAgentParams;
+import org.cobweb.cobweb2.impl.ai.SwarmController;
+import org.cobweb.cobweb2.plugins.abiotic.AbioticAgentParams;
+import org.cobweb.cobweb2.plugins.abiotic.AbioticFactor;
+import org.cobweb.cobweb2.plugins.abiotic.AgentFactorParams;
+import org.cobweb.cobweb2.plugins.disease.DiseaseAgentParams;
+import org.cobweb.cobweb2.plugins.genetics.BuiltinPhenotype;
+import org.cobweb.cobweb2.plugins.personalities.PersonalityAgentParams;
+import org.cobweb.cobweb2.plugins.production.ProductionAgentParams;
+import org.cobweb.cobweb2.plugins.swarm.PairwiseEffect;
+import org.cobweb.cobweb2.plugins.swarm.SwarmAgentParams;
+import org.cobweb.cobweb2.plugins.swarm.SwarmMutator;
+import org.cobweb.cobweb2.plugins.vision.VisionState;
+import org.cobweb.util.RandomNoGenerator;
+
+/**
+ * Updates agents concurrently by splitting the grid into square tiles.
+ *
+ * <p>Tiles are coloured in a 2x2 checkerboard and updated in four phases, one per colour.
+ * Tiles of the same colour are always separated by a tile of another colour, so as long as
+ * no agent reaches further than half a tile during its update, agents updated in the same
+ * phase never claim the same cell. On a globe the tiles on either side of a pole touch
+ * tiles of the same colour across the pole, so the top and bottom rows of tiles are
+ * updated one after another in a fifth phase.
+ *
+ * <p>Every tile draws from its own random stream split from the simulation seed by
+ * the tick and the tile index. Agents born during a phase are added to the simulation and
+ * numbered in tile order once the phase completes. A seeded run therefore produces the same
+ * result regardless of thread count or scheduling.
+ */
+class ParallelAgentUpdater {
+
+	/**
+	 * Smallest tile size that keeps agents within half a tile: they look
+	 * VisionState.LOOK_DISTANCE cells ahead and move at least one cell.
+	 * getReach() gives how far agents of a configuration reach.
+	 */
+	static final int MIN_TILE_SIZE = 2 * (VisionState.LOOK_DISTANCE + 1);
+
+	private final Simulation simulation;
+
+	private final RandomNoGenerator tileStream;
+
+	private final ForkJoinPool pool;
+
+	private final int tilesX;
+	private final int tilesY;
+	private final int width;
+	private final int height;
+
+	/**
+	 * Whether the first and last rows of tiles are updated serially after the others.
+	 */
+	private final boolean serialPoles;
+
+	private final AgentListener listener;
+
+	private final ThreadLocal<TileContext> currentTile = new ThreadLocal<>();
+
+	/**
+	 * Per-task state for the tile currently being updated by a thread.
+	 */
+	private static class TileContext {
+		private final RandomNoGenerator random;
+		private final List<Agent> spawned = new ArrayList<>();
+
+		TileContext(RandomNoGenerator random) {
+			this.random = random;
+		}
+	}
+
+	ParallelAgentUpdater(Simulation simulation, int threads, int tileSize) {
+		this.simulation = simulation;
+		this.tileStream = simulation.getRandomStream(Simulation.AGENT_TILE_STREAM);
+		SimulationConfig config = simulation.simulationConfig;
+		this.width = config.envParams.width;
+		this.height = config.envParams.height;
+
+		boolean wrapGlobe = config.envParams.wrapMap;
+		boolean wrapX = wrapGlobe || config.envParams.wrapMapX;
+		boolean wrapY = !wrapGlobe && config.envParams.wrapMapY;
+
+		this.tilesX = tileCount(width, tileSize, wrapX);
+		this.tilesY = tileCount(height, tileSize, wrapY);
+		this.serialPoles = wrapGlobe;
+
+		this.pool = new ForkJoinPool(threads);
+		this.listener = new SynchronizedAgentListener(simulation.mutatorListener);
+	}
+
+	/**
+	 * Number of tiles along an axis. Tiles are at least tileSize wide and
+	 * there is an even number of them when the axis wraps around.
+	 */
+	private static int tileCount(int size, int tileSize, boolean wraps) {
+		int n = size / Math.max(1, tileSize);
+		if (n < 2)
+			return 1;
+		if (wraps && n % 2 != 0)
+			n--;
+		return n;
+	}
+
+	/**
+	 * Checks whether the simulation configuration only uses features where agents
+	 * interact with their immediate surroundings. Broadcasts, products, personalities,
+	 * swarm controllers and abiotic barriers reach across the whole grid, and agents that
+	 * reach further than half a tile away, see getReach(), need serial updates.
+	 */
+	static boolean isSupported(SimulationConfig config) {
+		if (config.getControllerName().equals(SwarmController.class.getName()))
+			return false;
+
+		for (ComplexAgentParams agentParams : config.agentParams.agentParams) {
+			if (agentParams.broadcastMode || agentParams.enthusiasticMode)
+				return false;
+		}
+		for (ProductionAgentParams prodParams : config.prodParams.agentParams) {
+			if (prodParams.productionMode)
+				return false;
+		}
+		for (PersonalityAgentParams personalityParams : config.personalityParams.agentParams) {
+			if (personalityParams.personalitiesEnabled)
+				return false;
+		}
+		for (AbioticFactor factor : config.abioticParams.factors) {
+			if (!factor.punishment)
+				return false;
+		}
+		int reach = getReach(config);
+		return reach >= 0 && 2 * reach <= config.parallelTileSize;
+	}
+
+	/**
+	 * Furthest distance from where it starts that an agent reads or changes the grid during its
+	 * update. Each move takes the agent a cell further, and from where it is it looks
+	 * VisionState.LOOK_DISTANCE cells ahead, places the children of a split along a line, and
+	 * counts agents within the radius of its swarm effects once it has moved.
+	 *
+	 * @return the distance, or -1 when a plugin can change the movement speed of agents
+	 */
+	static int getReach(SimulationConfig config) {
+		for (Phenotype phenotype : config.geneticParams.phenotype) {
+			if (changesSpeed(phenotype))
+				return -1;
+		}
+		for (AbioticAgentParams abioticParams : config.abioticParams.agentParams) {
+			for (AgentFactorParams factorParams : abioticParams.factorParams) {
+				if (changesSpeed(factorParams.parameter))
+					return -1;
+			}
+		}
+		for (DiseaseAgentParams diseaseParams : config.diseaseParams.agentParams) {
+			if (changesSpeed(diseaseParams.param))
+				return -1;
+		}
+
+		int moves = 1;
+		int around = VisionState.LOOK_DISTANCE;
+		for (ComplexAgentParams agentParams : config.agentParams.agentParams) {
+			// Action points left over from the last update are less than one move
+			moves = Math.max(moves, (int) Math.ceil(agentParams.agentMovementSpeed.getRawValue()));
+			for (double[] ratios : agentParams.getSplitRatios()) {
+				around = Math.max(around, ratios.length - 1);
+			}
+		}
+		for (SwarmAgentParams swarmParams : config.swarmParams.agentParams) {
+			for (PairwiseEffect effect : swarmParams.effects) {
+				if (effect.radius > 0)
+					around = Math.max(around, SwarmMutator.getSearchReach(effect.radius));
+			}
+		}
+		return moves + around;
+	}
+
+	private static boolean changesSpeed(Phenotype phenotype) {
+		return phenotype instanceof BuiltinPhenotype && phenotype.getIdentifier().equals("agentMovementSpeed");
+	}
+
+	/**
+	 * @return random generator of the tile being updated by the calling thread,
+	 * null when called outside of a parallel update.
+	 */
+	RandomNoGenerator getTileRandom() {
+		TileContext context = currentTile.get();
+		return context == null ? null : context.random;
+	}
+
+	/**
+	 * Holds on to an agent spawned during a parallel update so it can be added to the
+	 * simulation and get its id in a deterministic order once the phase completes.
+	 *
+	 * <p>The agent is already on the grid, so other agents of the tile can meet it before then
+	 * while its id is still 0. Statistics of a child that dies during the phase are written once
+	 * it has its id. A child that becomes a parent during the same phase is recorded with parent
+	 * id 0, and an agent that remembers it as a cheater remembers id 0.
+	 *
+	 * @return true if the agent was deferred, false when called outside of a parallel update.
+	 */
+	boolean deferSpawn(Agent agent) {
+		TileContext context = currentTile.get();
+		if (context == null)
+			return false;
+		context.spawned.add(agent);
+		return true;
+	}
+
+	AgentListener getAgentListener() {
+		return listener;
+	}
+
+	/**
+	 * Updates every live agent once, then removes dead agents from the list.
+	 *
+	 * @param agents agents to update, in the order they should be updated within a tile
+	 */
+	void updateAgents(AgentList agents) {
+		RandomNoGenerator tickRandom = tileStream.split(simulation.getTime());
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		List<Agent>[] tiles = new List[tilesX * tilesY];
+		for (int i = 0; i < agents.size(); i++) {
+			Agent agent = agents.get(i);
+			if (!agent.isAlive())
+				continue;
+			int tile = getTile(agent.getPosition());
+			if (tiles[tile] == null)
+				tiles[tile] = new ArrayList<>();
+			tiles[tile].add(agent);
+		}
+
+		for (int phase = 0; phase < 5; phase++) {
+			final List<TileUpdate> tasks = new ArrayList<>();
+			List<Agent> poleAgents = new ArrayList<>();
+			for (int ty = 0; ty < tilesY; ty++) {
+				for (int tx = 0; tx < tilesX; tx++) {
+					int tile = ty * tilesX + tx;
+					if (tiles[tile] == null || getPhase(tx, ty) != phase)
+						continue;
+					if (phase == 4)
+						poleAgents.addAll(tiles[tile]);
+					else
+						tasks.add(new TileUpdate(tiles[tile], tickRandom.split(tile)));
+				}
+			}
+			if (!poleAgents.isEmpty())
+				tasks.add(new TileUpdate(poleAgents, tickRandom.split(tiles.length)));
+			if (tasks.isEmpty())
+				continue;
+
+			pool.invoke(new RecursiveAction() {
+				@Override
+				protected void compute() {
+					invokeAll(tasks);
+				}
+				private static final long serialVersionUID = 1L;
+			});
+
+			// Tasks are in tile order, so newborns are listed and numbered in the same order every run
+			for (TileUpdate task : tasks) {
+				for (Agent child : task.context.spawned) {
+					simulation.addSpawnedAgent(child);
+				}
+			}
+		}
+
+		agents.beginUpdate();
+		for (int i = 0; i < agents.size(); i++) {
+			Agent agent = agents.get(i);
+			if (!agent.isAlive()) {
+				agents.remove(i);
+				simulation.releaseAgent(agent);
+			}
+		}
+		agents.endUpdate();
+	}
+
+	private int getPhase(int tx, int ty) {
+		if (serialPoles && (ty == 0 || ty == tilesY - 1))
+			return 4;
+		return (tx & 1) | ((ty & 1) << 1);
+	}
+
+	private int getTile(LocationDirection position) {
+		int tx = position.x * tilesX / width;
+		int ty = position.y * tilesY / height;
+		return ty * tilesX + tx;
+	}
+
+	void shutdown() {
+		pool.shutdown();
+	}
+
+	private class TileUpdate extends RecursiveAction {
+		private final List<Agent> agents;
+		private final TileContext context;
+
+		TileUpdate(List<Agent> agents, RandomNoGenerator random) {
+			this.agents = agents;
+			this.context = new TileContext(random);
+		}
+
+		@Override
+		protected void compute() {
+			currentTile.set(context);
+			try {
+				for (Agent agent : agents) {
+					agent.update();
+
+					listener.onUpdate(agent);
+				}
+			} finally {
+				currentTile.remove();
+			}
+		}
+
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * Passes events on to mutators one at a time; mutators keep simulation-wide
+	 * state that is not safe to modify from several tiles at once. Energy changes, the most
+	 * frequent event, are passed on directly, see EnergyMutator.
+	 */
+	private static class SynchronizedAgentListener implements AgentListener {
+
+		private final AgentListener delegate;
+
+		SynchronizedAgentListener(AgentListener delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public synchronized void beforeControl(Agent agent, ControllerInput cInput) {
+			delegate.beforeControl(agent, cInput);
+		}
+
+		@Override
+		public synchronized void onContact(Agent bumper, Agent bumpee) {
+			delegate.onContact(bumper, bumpee);
+		}
+
+		@Override
+		public synchronized void onStep(Agent agent, LocationDirection from, LocationDirection to) {
+			delegate.onStep(agent, from, to);
+		}
+
+		@Override
+		public synchronized void onSpawn(Agent agent, Agent parent1, Agent parent2) {
+			delegate.onSpawn(agent, parent1, parent2);
+		}
+
+		@Override
+		public synchronized void onSpawn(Agent agent, Agent parent) {
+			delegate.onSpawn(agent, parent);
+		}
+
+		@Override
+		public synchronized void onSpawn(Agent agent) {
+			delegate.onSpawn(agent);
+		}
+
+		@Override
+		public synchronized void onDeath(Agent agent) {
+			delegate.onDeath(agent);
+		}
+
+		@Override
+		public synchronized void onConsumeFood(Agent agent, int foodType) {
+			delegate.onConsumeFood(agent, foodType);
+		}
+
+		@Override
+		public synchronized void onConsumeAgent(Agent agent, Agent food) {
+			delegate.onConsumeAgent(agent, food);
+		}
+
+		@Override
+		public boolean hasEnergyListeners() {
+			return delegate.hasEnergyListeners();
+		}
+
+		@Override
+		public void onEnergyChange(Agent agent, int delta, Cause cause) {
+			delegate.onEnergyChange(agent, delta, cause);
+		}
+
+		@Override
+		public synchronized void onUpdate(Agent agent) {
+			delegate.onUpdate(agent);
+		}
+
+		@Override
+		public boolean hasLocationListeners() {
+			return delegate.hasLocationListeners();
+		}
+
+		@Override
+		public synchronized LocationDirection onTryStep(Agent agent, LocationDirection from, LocationDirection originalTo) {
+			return delegate.onTryStep(agent, from, originalTo);
+		}
+
+		@Override
+		public synchronized boolean onNextMove(Agent agent) {
+			return delegate.onNextMove(agent);
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package org.cobweb.cobweb2;
 
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
@@ -12,13 +13,19 @@ import java.util.Set;
 import org.cobweb.cobweb2.core.Agent;
 import org.cobweb.cobweb2.core.AgentListener;
 import org.cobweb.cobweb2.core.AgentSimilarityCalculator;
+import org.cobweb.cobweb2.core.Drop;
+import org.cobweb.cobweb2.core.Location;
+import org.cobweb.cobweb2.core.LocationDirection;
 import org.cobweb.cobweb2.core.SimulationInternals;
 import org.cobweb.cobweb2.core.StateParameter;
 import org.cobweb.cobweb2.core.StatePlugin;
 import org.cobweb.cobweb2.core.Topology;
 import org.cobweb.cobweb2.impl.AgentSpawner;
 import org.cobweb.cobweb2.impl.ComplexAgent;
+import org.cobweb.cobweb2.impl.ComplexAgentParams;
 import org.cobweb.cobweb2.impl.ComplexEnvironment;
+import org.cobweb.cobweb2.io.CheckpointReader;
+import org.cobweb.cobweb2.io.CheckpointWriter;
 import org.cobweb.cobweb2.plugins.AgentState;
 import org.cobweb.cobweb2.plugins.MutatorListener;
 import org.cobweb.cobweb2.plugins.abiotic.AbioticMutator;
@@ -29,16 +36,21 @@ import org.cobweb.cobweb2.plugins.fusion.FusionMutator;
 import org.cobweb.cobweb2.plugins.genetics.GeneticsMutator;
 import org.cobweb.cobweb2.plugins.gravity.GravityMutator;
 import org.cobweb.cobweb2.plugins.learning.LearningMutator;
+import org.cobweb.cobweb2.plugins.learning.LearningState;
 import org.cobweb.cobweb2.plugins.pd.PDMutator;
 import org.cobweb.cobweb2.plugins.personalities.PersonalityMutator;
+import org.cobweb.cobweb2.plugins.production.Product;
+import org.cobweb.cobweb2.plugins.production.ProductionAgentParams;
 import org.cobweb.cobweb2.plugins.production.ProductionMapper;
 import org.cobweb.cobweb2.plugins.stats.EnergyStats;
 import org.cobweb.cobweb2.plugins.stats.StatsMutator;
 import org.cobweb.cobweb2.plugins.swarm.SwarmMutator;
 import org.cobweb.cobweb2.plugins.toxin.ToxinMutator;
 import org.cobweb.cobweb2.plugins.vision.VisionMutator;
+import org.cobweb.cobweb2.plugins.waste.Waste;
 import org.cobweb.cobweb2.plugins.waste.WasteMutator;
 import org.cobweb.cobweb2.ui.SimulationInterface;
+import org.cobweb.io.BinaryParameterSerializer;
 import org.cobweb.util.RandomNoGenerator;
 
 /**
@@ -58,11 +70,13 @@ public class Simulation implements SimulationInternals, SimulationInterface {
 	private int time = 0;
 
 	private AgentSpawner agentSpawner;
-	private List<Agent> agents = new LinkedList<Agent>();
+	private final AgentList agents = new AgentList();
 	private int nextAgentId = 1;
 
 	private AgentSimilarityCalculator similarityCalculator;
 
+	private ParallelAgentUpdater parallelUpdater;
+
 	// TODO: all of this should be in a collection
 
 	private PDMutator pdMutator;
@@ -152,8 +166,14 @@ public class Simulation implements SimulationInternals, SimulationInterface {
 	 */
 	//TODO use reflection to automate this
 	public void load(SimulationConfig p) {
+		if (p.parallelThreads > 0 && p.parallelTileSize < ParallelAgentUpdater.MIN_TILE_SIZE)
+			throw new IllegalArgumentException("Parallel update tile size must be at least " + ParallelAgentUpdater.MIN_TILE_SIZE);
+
 		this.simulationConfig = p;
-		agentSpawner = new AgentSpawner(ComplexAgent.class.getName(), this);
+		boolean recycleAgents = p.agentPooling && canRecycleAgents(p);
+		if (p.agentPooling && !recycleAgents)
+			System.err.println("Configuration uses features that keep references to dead agents, not recycling agents");
+		agentSpawner = new AgentSpawner(ComplexAgent.class.getName(), this, recycleAgents);
 
 		// 0 = use default seed
 		if (p.randomSeed == 0)
@@ -192,6 +212,8 @@ public class Simulation implements SimulationInternals, SimulationInterface {
 			swarmMutator = null;
 			prodMapper = null;
 			wasteMutator = null;
+			if (statsMutator != null)
+				statsMutator.close();
 			statsMutator = null;
 			vision = null;
 			pdMutator = null;
@@ -251,6 +273,7 @@ public class Simulation implements SimulationInternals, SimulationInterface {
 			statsMutator = new StatsMutator(this);
 			mutatorListener.addMutator(statsMutator);
 		}
+		statsMutator.setTrackAllPaths(!p.observedPathsOnly);
 		if (energyStats == null) {
 			energyStats = new EnergyStats();
 			mutatorListener.addMutator(energyStats);
@@ -272,7 +295,7 @@ public class Simulation implements SimulationInternals, SimulationInterface {
 
 		// Load environment plugin settings
 		FoodGrowth foodGrowth = theEnvironment.getPlugin(FoodGrowth.class);
-		foodGrowth.setParams(theEnvironment, p.foodParams);
+		foodGrowth.setParams(theEnvironment, p.foodParams, getRandomStream(FOOD_STREAM));
 		PacketConduit packetConduit = theEnvironment.getPlugin(PacketConduit.class);
 		packetConduit.setParams(theEnvironment.topology);
 
@@ -304,6 +327,17 @@ public class Simulation implements SimulationInternals, SimulationInterface {
 
 		// This is where the setup ends and simulation begins
 
+		if (parallelUpdater != null) {
+			parallelUpdater.shutdown();
+			parallelUpdater = null;
+		}
+		if (p.parallelThreads > 0) {
+			if (ParallelAgentUpdater.isSupported(p))
+				parallelUpdater = new ParallelAgentUpdater(this, p.parallelThreads, p.parallelTileSize);
+			else
+				System.err.println("Configuration uses features that cannot update agents in parallel, updating agents serially");
+		}
+
 		// Create initial environment state, spawn stones, plugins
 		theEnvironment.loadNew();
 
@@ -313,6 +347,19 @@ public class Simulation implements SimulationInternals, SimulationInterface {
 		}
 	}
 
+	/**
+	 * Stops the threads and deletes the files the simulation uses.
+	 * The simulation cannot be used afterwards.
+	 */
+	public void dispose() {
+		if (parallelUpdater != null) {
+			parallelUpdater.shutdown();
+			parallelUpdater = null;
+		}
+		if (statsMutator != null)
+			statsMutator.close();
+	}
+
 	@Override
 	public void step() {
 
@@ -320,31 +367,265 @@ public class Simulation implements SimulationInternals, SimulationInterface {
 
 		// TODO synchronize on something other than environment?
 		synchronized(theEnvironment) {
-			for (Agent agent : new LinkedList<Agent>(agents)) {
-				agent.update();
-
-				mutatorListener.onUpdate(agent);
-
-				if (!agent.isAlive())
-					agents.remove(agent);
+			if (parallelUpdater != null) {
+				theEnvironment.setParallelUpdate(true);
+				try {
+					parallelUpdater.updateAgents(agents);
+				} finally {
+					theEnvironment.setParallelUpdate(false);
+				}
+			} else {
+				// Agents born during the update are added after the ones already there
+				agents.beginUpdate();
+				int count = agents.size();
+				for (int i = 0; i < count; i++) {
+					Agent agent = agents.get(i);
+					agent.update();
+
+					mutatorListener.onUpdate(agent);
+
+					if (!agent.isAlive()) {
+						agents.remove(i);
+						agentSpawner.release(agent);
+					}
+				}
+				agents.endUpdate();
 			}
 		}
 
+		agentSpawner.recycleReleased();
+
 		time++;
 	}
 
 
 	@Override
 	public void addAgent(Agent agent) {
+		if (parallelUpdater != null && parallelUpdater.deferSpawn(agent))
+			return;
+
+		agents.add(agent);
+		agent.id = nextAgentId++;
+	}
+
+	/**
+	 * Adds an agent born during a parallel update and gives it its id, once the phase it was
+	 * born in is over.
+	 */
+	void addSpawnedAgent(Agent agent) {
 		agents.add(agent);
 		agent.id = nextAgentId++;
+		statsMutator.onNumbered(agent);
+	}
+
+	/*
+	 * Kinds of drops in checkpoints.
+	 */
+	private static final byte WASTE_DROP = 1;
+	private static final byte PRODUCT_DROP = 2;
+
+	/**
+	 * Checks the simulation uses nothing that cannot be saved in a checkpoint,
+	 * before anything is written.
+	 *
+	 * @throws IllegalStateException when it does
+	 */
+	void checkCanSave() {
+		for (int i = 0; i < agents.size(); i++) {
+			LearningState learning = ((ComplexAgent) agents.get(i)).getState(LearningState.class);
+			if (learning != null && learning.getAgentParams().learningEnabled)
+				throw new IllegalStateException("Agents that learn cannot be saved in a checkpoint");
+		}
+	}
+
+	/**
+	 * Registers the mutators that apply multipliers to agent parameters, in the same order
+	 * for saving and loading.
+	 */
+	private void addMultiplierCauses(BinaryParameterSerializer parameters) {
+		parameters.addMultiplierCauses(geneticMutator.getMultiplierCauses());
+		parameters.addMultiplierCauses(abioticMutator.getMultiplierCauses());
+		parameters.addMultiplierCauses(swarmMutator.getMultiplierCauses());
+		parameters.addMultiplierCauses(diseaseMutator.getMultiplierCauses());
+		parameters.addMultiplierCauses(toxinMutator.getMultiplierCauses());
+	}
+
+	/**
+	 * Writes the state of the simulation between two steps, in the order loadState() reads it.
+	 * The simulation must be loaded from the same configuration to read it back.
+	 */
+	void saveState(CheckpointWriter out) throws IOException {
+		addMultiplierCauses(out.getParameters());
+		out.writeInt(time);
+		out.writeInt(nextAgentId);
+		theEnvironment.saveCells(out);
+
+		out.writeInt(agents.size());
+		for (int i = 0; i < agents.size(); i++) {
+			ComplexAgent agent = (ComplexAgent) agents.get(i);
+			out.writeInt(agent.getType());
+			out.writeLocationDirection(agent.getPosition());
+			out.addAgent(agent);
+			agent.saveState(out);
+		}
+		// Partners can be agents added later, or dead agents
+		for (int i = 0; i < agents.size(); i++) {
+			((ComplexAgent) agents.get(i)).saveBreedPartner(out);
+		}
+		out.writeInt(theEnvironment.getAgentCount());
+		for (Agent agent : theEnvironment.getAgents()) {
+			out.writeAgent((ComplexAgent) agent);
+		}
+
+		theEnvironment.getPlugin(PacketConduit.class).saveState(out);
+
+		List<Integer> dropCells = new ArrayList<>();
+		int cells = theEnvironment.topology.width * theEnvironment.topology.height;
+		for (int index = 0; index < cells; index++) {
+			if (theEnvironment.hasDrop(index))
+				dropCells.add(index);
+		}
+		out.writeInt(dropCells.size());
+		for (int index : dropCells) {
+			Drop drop = theEnvironment.getDrop(index);
+			out.writeLocation(theEnvironment.topology.getLocation(index));
+			if (drop instanceof Waste) {
+				out.writeByte(WASTE_DROP);
+				wasteMutator.saveDrop((Waste) drop, out);
+			} else if (drop instanceof Product) {
+				out.writeByte(PRODUCT_DROP);
+				prodMapper.saveDrop((Product) drop, out);
+			} else {
+				throw new IllegalStateException("Cannot save drop type: " + drop.getClass().getName());
+			}
+		}
+		prodMapper.saveState(out);
+		out.getParameters().writeSharedMultipliers(out);
+
+		theEnvironment.getPlugin(FoodGrowth.class).saveState(out);
+		random.saveState(out);
+	}
+
+	/**
+	 * Replaces the state of a simulation just loaded without agents with the state written by saveState().
+	 */
+	void loadState(CheckpointReader in) throws IOException {
+		addMultiplierCauses(in.getParameters());
+		time = in.readInt();
+		int savedNextAgentId = in.readInt();
+		theEnvironment.loadCells(in);
+
+		int agentCount = in.readInt();
+		List<ComplexAgent> live = new ArrayList<>(agentCount);
+		for (int i = 0; i < agentCount; i++) {
+			int type = in.readInt();
+			if (type < 0 || type >= getAgentTypeCount())
+				throw new IOException("Corrupt checkpoint, bad agent type " + type);
+			LocationDirection position = in.readLocationDirection();
+			ComplexAgent agent = (ComplexAgent) newAgent(type);
+			agent.init(theEnvironment, position, simulationConfig.agentParams.agentParams[type], 0);
+			in.addAgent(agent);
+			agent.loadState(in);
+			live.add(agent);
+		}
+		for (ComplexAgent agent : live) {
+			agent.loadBreedPartner(in);
+		}
+		int gridCount = in.readInt();
+		List<ComplexAgent> gridOrder = new ArrayList<>(gridCount);
+		for (int i = 0; i < gridCount; i++) {
+			gridOrder.add(in.readAgent());
+		}
+		try {
+			theEnvironment.setAgentOrder(gridOrder);
+		} catch (IllegalArgumentException ex) {
+			throw new IOException("Corrupt checkpoint, " + ex.getMessage(), ex);
+		}
+
+		theEnvironment.getPlugin(PacketConduit.class).loadState(in);
+
+		for (int i = in.readInt(); i > 0; i--) {
+			Location l = in.readLocation();
+			if (!theEnvironment.topology.isValidLocation(l))
+				throw new IOException("Corrupt checkpoint, drop outside of environment");
+			byte kind = in.readByte();
+			if (kind == WASTE_DROP)
+				wasteMutator.loadDrop(l, in);
+			else if (kind == PRODUCT_DROP)
+				prodMapper.loadDrop(l, in);
+			else
+				throw new IOException("Corrupt checkpoint, unknown drop type " + kind);
+		}
+		prodMapper.loadState(in);
+		in.getParameters().readSharedMultipliers(in);
+
+		theEnvironment.getPlugin(FoodGrowth.class).loadState(in);
+
+		// Restoring agents draws from the generator, restore it last
+		nextAgentId = savedNextAgentId;
+		long seed = random.getSeed();
+		random.loadState(in);
+		if (parallelUpdater != null && random.getSeed() != seed) {
+			// Tiles split their streams from the seed, which was picked at random when the
+			// checkpoint was made
+			parallelUpdater.shutdown();
+			parallelUpdater = new ParallelAgentUpdater(this, simulationConfig.parallelThreads, simulationConfig.parallelTileSize);
+		}
 	}
 
 	@Override
 	public RandomNoGenerator getRandom() {
+		if (parallelUpdater != null) {
+			RandomNoGenerator tileRandom = parallelUpdater.getTileRandom();
+			if (tileRandom != null)
+				return tileRandom;
+		}
 		return random;
 	}
 
+	/*
+	 * Keys of the random streams split from the simulation seed. Subsystems with their own
+	 * stream draw the same numbers whatever the rest of the simulation draws from getRandom().
+	 */
+	static final long FOOD_STREAM = 1;
+	static final long AGENT_TILE_STREAM = 2;
+
+	/**
+	 * @return new generator for the given stream, seeded from the simulation seed and the stream key
+	 */
+	RandomNoGenerator getRandomStream(long stream) {
+		return random.split(stream);
+	}
+
+	@Override
+	public Agent reuseAgent(int type) {
+		return agentSpawner.reuse(type);
+	}
+
+	/**
+	 * Checks whether nothing keeps using agents after they die and are removed from the
+	 * simulation. Broadcast packets and products remember the agent that made them, and
+	 * products change the energy and parameters of agents after they are sold.
+	 */
+	private static boolean canRecycleAgents(SimulationConfig config) {
+		for (ComplexAgentParams agentParams : config.agentParams.agentParams) {
+			if (agentParams.broadcastMode || agentParams.enthusiasticMode)
+				return false;
+		}
+		for (ProductionAgentParams prodParams : config.prodParams.agentParams) {
+			if (prodParams.productionMode)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Lets the object of an agent that died and was removed from the simulation be reused.
+	 */
+	void releaseAgent(Agent agent) {
+		agentSpawner.release(agent);
+	}
+
 	@Override
 	public Agent newAgent(int type) {
 		ComplexAgent agent = (ComplexAgent) agentSpawner.spawn(type);
@@ -385,12 +666,14 @@ public class Simulation implements SimulationInternals, SimulationInterface {
 		return similarityCalculator;
 	}
 
-	public MutatorListener mutatorListener = new MutatorListener();
+	public MutatorListener mutatorListener = new MutatorListener(this);
 
 	private EnergyStats energyStats;
 
 	@Override
 	public AgentListener getAgentListener() {
+		if (parallelUpdater != null)
+			return parallelUpdater.getAgentListener();
 		return mutatorListener;
 	}
 
@@ -0,0 +1,133 @@
+package org.cobweb.cobweb2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.cobweb.cobweb2.io.CheckpointReader;
+import org.cobweb.cobweb2.io.CheckpointWriter;
+import org.cobweb.cobweb2.io.Cobweb2Serializer;
+
+/**
+ * Saves the full state of a simulation between two steps, so a run that was stopped can be
+ * resumed and give the same results as a run that was not.
+ *
+ * <p>A checkpoint holds the configuration of the simulation followed by its state. It can only be
+ * resumed by the same build of the program that wrote it. Statistics and log counters are not
+ * saved and start again from zero.
+ */
+public class SimulationCheckpoint {
+
+	private SimulationCheckpoint() {
+		// Static methods only
+	}
+
+	/**
+	 * Writes a checkpoint and closes the channel.
+	 *
+	 * @param compress compress the checkpoint, which is slower to write but much smaller
+	 * @throws IllegalStateException when the simulation uses something that cannot be saved
+	 */
+	public static void save(Simulation simulation, WritableByteChannel channel, boolean compress) throws IOException {
+		ByteArrayOutputStream config = new ByteArrayOutputStream();
+		CheckpointWriter writer;
+		try {
+			simulation.checkCanSave();
+			new Cobweb2Serializer().saveConfig(simulation.simulationConfig, config);
+			writer = new CheckpointWriter(channel, simulation.simulationConfig, compress);
+		} catch (IOException | RuntimeException ex) {
+			// The writer closes the channel once it exists, until then it is ours to close
+			channel.close();
+			throw ex;
+		}
+
+		try (CheckpointWriter out = writer) {
+			out.writeString(simulation.simulationConfig.fileName);
+			out.writeByteArray(config.toByteArray());
+			simulation.saveState(out);
+		}
+	}
+
+	/**
+	 * Writes a checkpoint to a file. The file is replaced only once the checkpoint is complete and
+	 * on disk, so an interrupted save leaves the previous checkpoint in place.
+	 */
+	public static void save(Simulation simulation, File file, boolean compress) throws IOException {
+		// Fail before the previous checkpoint is touched
+		simulation.checkCanSave();
+
+		Path target = file.toPath();
+		Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+		boolean done = false;
+		try {
+			save(simulation, FileChannel.open(temp,
+					StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING), compress);
+			try (FileChannel written = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				written.force(true);
+			}
+			try {
+				Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException ex) {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+			done = true;
+		} finally {
+			if (!done)
+				Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Creates a simulation from a checkpoint and closes the channel.
+	 */
+	public static Simulation load(ReadableByteChannel channel) throws IOException {
+		try (CheckpointReader in = new CheckpointReader(channel)) {
+			String fileName = in.readString();
+			SimulationConfig config;
+			try {
+				config = new Cobweb2Serializer().loadConfig(new ByteArrayInputStream(in.readByteArray()));
+			} catch (IllegalArgumentException ex) {
+				throw new IOException("Corrupt checkpoint, cannot read configuration", ex);
+			}
+			config.fileName = fileName;
+
+			// Load the environment empty, the checkpoint replaces everything in it
+			boolean spawnNewAgents = config.spawnNewAgents;
+			boolean keepOldAgents = config.keepOldAgents;
+			boolean keepOldArray = config.keepOldArray;
+			boolean keepOldDrops = config.keepOldDrops;
+			boolean keepOldPackets = config.keepOldPackets;
+			config.spawnNewAgents = false;
+			config.keepOldAgents = false;
+			config.keepOldArray = false;
+			config.keepOldDrops = false;
+			config.keepOldPackets = false;
+
+			Simulation simulation = new Simulation();
+			simulation.load(config);
+
+			config.spawnNewAgents = spawnNewAgents;
+			config.keepOldAgents = keepOldAgents;
+			config.keepOldArray = keepOldArray;
+			config.keepOldDrops = keepOldDrops;
+			config.keepOldPackets = keepOldPackets;
+
+			in.setSimulation(simulation);
+			simulation.loadState(in);
+			return simulation;
+		}
+	}
+
+	public static Simulation load(File file) throws IOException {
+		return load(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+	}
+}
@@ -45,6 +45,37 @@ public class SimulationConfig implements SimulationParams, ParameterSerializable
 	@ConfXMLTag("randomSeed")
 	public long randomSeed = 42;
 
+	/**
+	 * Number of threads used to update agents. 0 updates agents one at a time.
+	 */
+	@ConfDisplayName("Parallel update threads")
+	@ConfXMLTag("parallelThreads")
+	public int parallelThreads = 0;
+
+	/**
+	 * Size of the tiles the grid is split into when updating agents in parallel.
+	 * Must be at least twice the distance an agent can see and move in one tick, 10 cells.
+	 */
+	@ConfDisplayName("Parallel update tile size")
+	@ConfXMLTag("parallelTileSize")
+	public int parallelTileSize = 16;
+
+	/**
+	 * Reuses the objects of dead agents for new agents, to create less garbage when many agents
+	 * are born and die. Agents get new ids, but anything that keeps a reference to a dead agent,
+	 * like the agent observed in the UI, will see it as the new agent it becomes.
+	 */
+	@ConfDisplayName("Recycle dead agents")
+	@ConfXMLTag("agentPooling")
+	public boolean agentPooling = false;
+
+	/**
+	 * Keeps the recent path only of agents observed in the UI, instead of every agent.
+	 */
+	@ConfDisplayName("Track paths of observed agents only")
+	@ConfXMLTag("observedPathsOnly")
+	public boolean observedPathsOnly = false;
+
 	/**
 	 * Number of Agent types.
 	 */
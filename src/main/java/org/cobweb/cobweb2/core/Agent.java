@@ -17,10 +17,38 @@ public abstract class Agent implements Updatable {
 
 	private int type;
 
+	/**
+	 * Number of Environment cells this agent occupies and its position in the
+	 * Environment's list of agents. Maintained by Environment.setAgent().
+	 */
+	int occupiedCells = 0;
+	int environmentListIndex = -1;
+
 	public Agent(int type) {
 		this.type = type;
 	}
 
+	/**
+	 * Brings a dead agent back as a newly created agent of the given type, so the object can be reused.
+	 * The agent must no longer be in the Environment.
+	 */
+	protected void revive(int newType) {
+		assert !isAlive() && occupiedCells == 0 && environmentListIndex == -1;
+		alive = true;
+		position = null;
+		energy = 0;
+		type = newType;
+		id = 0;
+	}
+
+	/**
+	 * Sets the energy and whether the agent is alive, when restoring the agent from a checkpoint.
+	 */
+	protected void restore(int energy, boolean alive) {
+		this.energy = energy;
+		this.alive = alive;
+	}
+
 	public void die() {
 		assert (isAlive());
 		if (!isAlive())
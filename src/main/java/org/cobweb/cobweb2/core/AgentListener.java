@@ -19,10 +19,20 @@ public interface AgentListener extends ControllerListener {
 
 	public abstract void onConsumeAgent(Agent agent, Agent food);
 
+	/**
+	 * @return false when onEnergyChange() would do nothing, so it does not have to be called
+	 */
+	public abstract boolean hasEnergyListeners();
+
 	public abstract void onEnergyChange(Agent agent, int delta, Cause cause);
 
 	public abstract void onUpdate(Agent agent);
 
+	/**
+	 * @return false when onTryStep() always returns the original destination
+	 */
+	public abstract boolean hasLocationListeners();
+
 	public abstract LocationDirection onTryStep(Agent agent, LocationDirection from, LocationDirection originalTo);
 
 	public abstract boolean onNextMove(Agent agent);
@@ -1,5 +1,9 @@
 package org.cobweb.cobweb2.core;
 
+import java.io.IOException;
+
+import org.cobweb.io.CheckpointInput;
+import org.cobweb.io.CheckpointOutput;
 
 /**
  * The "brain" of an Agent, the controller causes the controlled agent to act by
@@ -17,13 +21,26 @@ public interface Controller {
 
 	/**
 	 * Creates controller for child based on parameters of the asexual breeding parent
+	 *
+	 * @param recycled controller of a dead agent that may be reused for the child, or null
 	 */
-	public Controller createChildAsexual();
+	public Controller createChildAsexual(Controller recycled);
 
 	/**
 	 * Creates controller for child based on parameters of the sexual breeding parents
 	 *
 	 * @param parent2 second parent
+	 * @param recycled controller of a dead agent that may be reused for the child, or null
+	 */
+	public Controller createChildSexual(Controller parent2, Controller recycled);
+
+	/**
+	 * Saves the part of the controller that changes as agents breed and learn, in a checkpoint.
+	 */
+	public void saveState(CheckpointOutput out) throws IOException;
+
+	/**
+	 * Loads the state saved by saveState() into a controller created from the same parameters.
 	 */
-	public Controller createChildSexual(Controller parent2);
+	public void loadState(CheckpointInput in) throws IOException;
 }
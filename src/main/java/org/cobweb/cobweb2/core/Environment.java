@@ -1,11 +1,17 @@
 package org.cobweb.cobweb2.core;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Hashtable;
-import java.util.Map;
+import java.util.Collections;
+import java.util.List;
 
+import org.cobweb.io.CheckpointInput;
+import org.cobweb.io.CheckpointOutput;
 import org.cobweb.util.ArrayUtilities;
+import org.cobweb.util.IndexBitSet;
+import org.cobweb.util.RandomNoGenerator;
 
 /**
  * The Environment class represents the simulation world; a collection of
@@ -44,30 +50,100 @@ public class Environment implements Updatable {
 	}
 
 	public void load(int width, int height, boolean wrap, boolean wrapX, boolean wrapY, boolean keepOldArray) {
+		int oldWidth = topology == null ? 0 : topology.width;
+		int oldHeight = topology == null ? 0 : topology.height;
 		topology = new Topology(simulation, width, height, wrap, wrapX, wrapY);
 
+		// Agents outside the new grid stay listed until killOffgridAgents()
+		agentGrid = ArrayUtilities.resizeGrid(agentGrid, oldWidth, oldHeight, topology.width, topology.height);
+
 		if (keepOldArray) {
-			flagArray = ArrayUtilities.resizeArray(flagArray, topology.width, topology.height);
-			foodTypeArray = ArrayUtilities.resizeArray(foodTypeArray, topology.width, topology.height);
+			cellFlags = ArrayUtilities.resizeGrid(cellFlags, oldWidth, oldHeight, topology.width, topology.height);
+			cellFoodType = ArrayUtilities.resizeGrid(cellFoodType, oldWidth, oldHeight, topology.width, topology.height);
 		} else {
-			flagArray = new int[topology.width][topology.height];
-			foodTypeArray = new int[topology.width][topology.height];
+			cellFlags = new int[topology.width * topology.height];
+			cellFoodType = new int[topology.width * topology.height];
+		}
+		cellDrops = ArrayUtilities.resizeGrid(cellDrops, oldWidth, oldHeight, topology.width, topology.height);
+
+		adjacentFood = new byte[topology.width * topology.height];
+		foodFrontier = new IndexBitSet(topology.width * topology.height);
+		foodCounts = new int[0];
+		foodSlots = new int[topology.width * topology.height];
+		for (int i = 0; i < cellFlags.length; i++) {
+			if (hasFood(i)) {
+				registerFood(i);
+				addAdjacentFood(i, 1);
+			}
 		}
-		dropArray = ArrayUtilities.resizeArray(dropArray, topology.width, topology.height);
 	}
 
+	/*
+	 * Grid state is stored in flat arrays indexed by Topology.getIndex(), that is y * width + x.
+	 */
+
+	/**
+	 * Agent occupying each location.
+	 */
+	private Agent[] agentGrid = new Agent[0];
+
+	/**
+	 * Agents occupying the grid, kept up to date by setAgent().
+	 */
+	private List<Agent> agentList = new ArrayList<Agent>();
+
+	private Collection<Agent> agentListView = Collections.unmodifiableList(agentList);
 
 	/**
-	 * The implementation uses a hash table to store agents, as we assume there
-	 * are many more locations than agents.
+	 * FLAG_* bits of each location.
 	 */
-	protected Map<Location, Agent> agentTable = new Hashtable<Location, Agent>();
+	private int[] cellFlags = new int[0];
 
-	private int[][] flagArray = new int[0][0];
+	/**
+	 * Type of the food at each location, only meaningful when FLAG_FOOD is set.
+	 */
+	private int[] cellFoodType = new int[0];
+
+	/**
+	 * Drop at each location, only meaningful when FLAG_DROP is set.
+	 */
+	private Drop[] cellDrops = new Drop[0];
 
-	private int[][] foodTypeArray = new int[0][0];
+	/**
+	 * Number of food locations among the 4 locations adjacent to each location.
+	 */
+	private byte[] adjacentFood = new byte[0];
 
-	protected Drop[][] dropArray = new Drop[0][0];
+	/**
+	 * Locations where adjacentFood is not zero, the only places food can grow.
+	 */
+	private IndexBitSet foodFrontier = new IndexBitSet(0);
+
+	/**
+	 * Indexes of the locations with each type of food, in no particular order.
+	 * Only the first foodCounts[type] entries are used.
+	 */
+	private int[][] foodLocations = new int[0][];
+
+	private int[] foodCounts = new int[0];
+
+	/**
+	 * Position of each food location in foodLocations for its type.
+	 */
+	private int[] foodSlots = new int[0];
+
+	private final Object foodRegistryLock = new Object();
+
+	/**
+	 * True while agents are updated in parallel.
+	 */
+	private volatile boolean parallelUpdate = false;
+
+	/**
+	 * Food was registered or unregistered by agents updated in parallel, so the order of
+	 * foodLocations depends on thread timing.
+	 */
+	private boolean foodRegistryUnordered = false;
 
 	public static final int FLAG_STONE = 1;
 
@@ -81,33 +157,75 @@ public class Environment implements Updatable {
 		for (Agent a : new ArrayList<Agent>(getAgents())) {
 			a.die();
 		}
-		agentTable.clear();
+		clearAgentGrid();
+	}
+
+	/**
+	 * Forgets all agents on the grid without killing them.
+	 */
+	protected void clearAgentGrid() {
+		synchronized (agentList) {
+			for (Agent a : agentList) {
+				a.occupiedCells = 0;
+				a.environmentListIndex = -1;
+			}
+			agentList.clear();
+		}
+		Arrays.fill(agentGrid, null);
 	}
 
 	public Agent getAgent(Location l) {
-		return agentTable.get(l);
+		if (l.x < 0 || l.x >= topology.width || l.y < 0 || l.y >= topology.height)
+			return null;
+		return agentGrid[topology.getIndex(l)];
+	}
+
+	public Agent getAgent(int index) {
+		return agentGrid[index];
 	}
 
-	public synchronized Collection<Agent> getAgents() {
-		return agentTable.values();
+	/**
+	 * @return read-only live view of the agents on the grid.
+	 */
+	public Collection<Agent> getAgents() {
+		return agentListView;
 	}
 
 	public int getAgentCount() {
-		return agentTable.keySet().size();
+		return agentList.size();
+	}
 
+	/**
+	 * Lists the agents on the grid in the given order, which getAgents() keeps until agents
+	 * move on or off the grid. Used to restore the order agents were in when a checkpoint was made.
+	 *
+	 * @param order every agent on the grid, once
+	 */
+	public void setAgentOrder(List<? extends Agent> order) {
+		synchronized (agentList) {
+			if (order.size() != agentList.size())
+				throw new IllegalArgumentException("Order does not list every agent");
+			for (Agent a : order) {
+				if (a.environmentListIndex < 0 || agentList.get(a.environmentListIndex) != a)
+					throw new IllegalArgumentException("Agent is not on the grid");
+			}
+			agentList.clear();
+			agentList.addAll(order);
+			for (int i = 0; i < agentList.size(); i++) {
+				agentList.get(i).environmentListIndex = i;
+			}
+		}
 	}
 
 	public Agent getClosestAgent(Agent agent) {
 		Location l1 = agent.getPosition();
 		Agent closest = null;
 		double closestDistance = Math.sqrt(topology.width * topology.width + topology.height * topology.height); // Can't be farther than this
-		for (Map.Entry<Location, Agent> pair : agentTable.entrySet()) {
-			double distance = topology.getDistance(pair.getKey(), l1);
+		for (Agent ag : agentList) {
+			double distance = topology.getDistance(ag.getPosition(), l1);
 
 			if (distance < closestDistance)
 			{
-				Agent ag = pair.getValue();
-
 				if(ag != agent) // skip itself
 				{
 					closest = ag;
@@ -119,18 +237,42 @@ public class Environment implements Updatable {
 	}
 
 	public final void setAgent(Location l, Agent a) {
-		if (a != null)
-			agentTable.put(l, a);
-		else
-			agentTable.remove(l);
+		if (l.x < 0 || l.x >= topology.width || l.y < 0 || l.y >= topology.height) {
+			if (a != null)
+				throw new IllegalArgumentException("Location outside of environment: " + l);
+			return;
+		}
+
+		int index = topology.getIndex(l);
+		Agent old = agentGrid[index];
+		if (old == a)
+			return;
+
+		agentGrid[index] = a;
+		if (a != null && a.occupiedCells++ == 0)
+			listAgent(a);
+		if (old != null && --old.occupiedCells == 0)
+			unlistAgent(old);
 	}
 
-	private int getLocationBits(Location l) {
-		return flagArray[l.x][l.y];
+	private void listAgent(Agent a) {
+		synchronized (agentList) {
+			a.environmentListIndex = agentList.size();
+			agentList.add(a);
+		}
 	}
 
-	private void setLocationBits(Location l, int bits) {
-		flagArray[l.x][l.y] = bits;
+	private void unlistAgent(Agent a) {
+		synchronized (agentList) {
+			// Swap last agent into the freed slot
+			int index = a.environmentListIndex;
+			Agent last = agentList.remove(agentList.size() - 1);
+			if (last != a) {
+				agentList.set(index, last);
+				last.environmentListIndex = index;
+			}
+			a.environmentListIndex = -1;
+		}
 	}
 
 	/**
@@ -139,62 +281,215 @@ public class Environment implements Updatable {
 	 * does nothing when (0,0) is a stone
 	 */
 	protected void setFlag(Location l, int flag, boolean state) {
-		int flagBits = 1 << (flag - 1);
+		setFlag(topology.getIndex(l), flag, state);
+	}
 
-		assert (!(state && getLocationBits(l) != 0)) : "Attempted to set flag when location flags non-zero: " + getLocationBits(l);
-		assert (!(!state && (getLocationBits(l) & flagBits) == 0)) : "Attempting to unset an unset flag" + flagBits;
+	protected void setFlag(int index, int flag, boolean state) {
+		int flagBits = 1 << (flag - 1);
 
-		int newValue = getLocationBits(l);
+		assert (!(state && cellFlags[index] != 0)) : "Attempted to set flag when location flags non-zero: " + cellFlags[index];
+		assert (!(!state && (cellFlags[index] & flagBits) == 0)) : "Attempting to unset an unset flag" + flagBits;
 
 		if (state)
-			newValue |= flagBits;
+			cellFlags[index] |= flagBits;
 		else
-			newValue &= ~flagBits;
-
-		setLocationBits(l, newValue);
+			cellFlags[index] &= ~flagBits;
 	}
 
-
 	protected boolean testFlag(Location l, int flag) {
+		return testFlag(topology.getIndex(l), flag);
+	}
+
+	protected boolean testFlag(int index, int flag) {
 		int flagBits = 1 << (flag - 1);
-		return (getLocationBits(l) & flagBits) != 0;
+		return (cellFlags[index] & flagBits) != 0;
 	}
 
 	public int getFoodType(Location l) {
-		return foodTypeArray[l.x][l.y];
+		return getFoodType(topology.getIndex(l));
 	}
 
-	public synchronized void addFood(Location l, int type) {
-		if (hasStone(l)) {
+	public int getFoodType(int index) {
+		return cellFoodType[index];
+	}
+
+	public void addFood(Location l, int type) {
+		addFood(topology.getIndex(l), type);
+	}
+
+	public void addFood(int index, int type) {
+		if (hasStone(index)) {
 			throw new IllegalArgumentException("stone here already");
 		}
-		setFlag(l, Environment.FLAG_FOOD, true);
-		foodTypeArray[l.x][l.y] = type;
+		setFlag(index, Environment.FLAG_FOOD, true);
+		cellFoodType[index] = type;
+		registerFood(index);
+		addAdjacentFood(index, 1);
 	}
 
 	public synchronized void clearFood() {
 		clearFlag(Environment.FLAG_FOOD);
 	}
 
-	public synchronized void removeFood(Location l) {
-		setFlag(l, Environment.FLAG_FOOD, false);
+	public void removeFood(Location l) {
+		removeFood(topology.getIndex(l));
+	}
+
+	public void removeFood(int index) {
+		setFlag(index, Environment.FLAG_FOOD, false);
+		unregisterFood(index);
+		addAdjacentFood(index, -1);
+	}
+
+	private void registerFood(int index) {
+		int type = cellFoodType[index];
+		// Agents updated in parallel eat food of the same type
+		synchronized (foodRegistryLock) {
+			if (type >= foodCounts.length) {
+				foodCounts = Arrays.copyOf(foodCounts, type + 1);
+				foodLocations = Arrays.copyOf(foodLocations, type + 1);
+			}
+			int[] locations = foodLocations[type];
+			if (locations == null) {
+				locations = foodLocations[type] = new int[16];
+			} else if (locations.length == foodCounts[type]) {
+				locations = foodLocations[type] = Arrays.copyOf(locations, locations.length * 2);
+			}
+			int slot = foodCounts[type]++;
+			locations[slot] = index;
+			foodSlots[index] = slot;
+			if (parallelUpdate)
+				foodRegistryUnordered = true;
+		}
+	}
+
+	private void unregisterFood(int index) {
+		int type = cellFoodType[index];
+		synchronized (foodRegistryLock) {
+			// Move the last location into the freed slot
+			int[] locations = foodLocations[type];
+			int last = locations[--foodCounts[type]];
+			locations[foodSlots[index]] = last;
+			foodSlots[last] = foodSlots[index];
+			if (parallelUpdate)
+				foodRegistryUnordered = true;
+		}
+	}
+
+	/**
+	 * Marks the start or end of an update where agents add and remove food from several threads.
+	 */
+	public void setParallelUpdate(boolean parallel) {
+		parallelUpdate = parallel;
+	}
+
+	/**
+	 * Puts food changed by agents updated in parallel back in an order that does not depend on
+	 * thread timing, so seeded runs pick the same locations.
+	 */
+	private void sortFoodRegistry() {
+		if (!foodRegistryUnordered)
+			return;
+
+		for (int type = 0; type < foodCounts.length; type++) {
+			int[] locations = foodLocations[type];
+			if (locations == null)
+				continue;
+			Arrays.sort(locations, 0, foodCounts[type]);
+			for (int slot = 0; slot < foodCounts[type]; slot++) {
+				foodSlots[locations[slot]] = slot;
+			}
+		}
+		foodRegistryUnordered = false;
+	}
+
+	/**
+	 * @return number of locations with food of the given type.
+	 */
+	public int getFoodCount(int type) {
+		return type < foodCounts.length ? foodCounts[type] : 0;
+	}
+
+	/**
+	 * @return number of locations with food.
+	 */
+	public long getFoodCount() {
+		long total = 0;
+		for (int count : foodCounts) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * Removes food from randomly chosen locations with the given type of food.
+	 * Locations are picked one at a time from the ones left, like the first
+	 * steps of a Fisher-Yates shuffle.
+	 */
+	public void removeRandomFood(int type, int amount, RandomNoGenerator random) {
+		if (amount <= 0)
+			return;
+
+		sortFoodRegistry();
+
+		int[] locations = foodLocations[type];
+		for (int j = 0; j < amount; j++) {
+			int n = random.nextInt(foodCounts[type]);
+			removeFood(locations[n]);
+		}
+	}
+
+	private void addAdjacentFood(int foodIndex, int delta) {
+		for (Direction dir : topology.ALL_4_WAY) {
+			for (int candidate = 0; candidate < Topology.REVERSE_ADJACENT_CANDIDATES; candidate++) {
+				int index = topology.getReverseAdjacentIndex(foodIndex, dir, candidate);
+				if (index == -1)
+					continue;
+
+				adjacentFood[index] += delta;
+				// Tiles updated in parallel can share words of the set
+				if (delta > 0 && adjacentFood[index] == 1) {
+					synchronized (foodFrontier) {
+						foodFrontier.set(index);
+					}
+				} else if (delta < 0 && adjacentFood[index] == 0) {
+					synchronized (foodFrontier) {
+						foodFrontier.clear(index);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds locations that have food next to them. Food added while iterating
+	 * is taken into account by later calls.
+	 *
+	 * @return index of the first location at or after fromIndex with food
+	 * in one of the 4 adjacent locations, -1 if there is none.
+	 */
+	public int nextFoodFrontier(int fromIndex) {
+		return foodFrontier.nextSetBit(fromIndex);
 	}
 
 	public boolean hasFood(Location l) {
-		return testFlag(l, Environment.FLAG_FOOD);
+		return hasFood(topology.getIndex(l));
+	}
+
+	public boolean hasFood(int index) {
+		return testFlag(index, Environment.FLAG_FOOD);
 	}
 
 	protected void clearFlag(int flag) {
-		for (int x = 0; x < topology.width; ++x) {
-			for (int y = 0; y < topology.height; ++y) {
-				Location currentPos = new Location(x, y);
-
-				if (testFlag(currentPos, flag)) {
-					if (flag == FLAG_DROP) {
-						removeDrop(currentPos);
-					} else {
-						setFlag(currentPos, flag, false);
-					}
+		int flagBits = 1 << (flag - 1);
+		for (int i = 0; i < cellFlags.length; i++) {
+			if ((cellFlags[i] & flagBits) != 0) {
+				if (flag == FLAG_DROP) {
+					removeDrop(i);
+				} else if (flag == FLAG_FOOD) {
+					removeFood(i);
+				} else {
+					cellFlags[i] &= ~flagBits;
 				}
 			}
 		}
@@ -205,12 +500,13 @@ public class Environment implements Updatable {
 			return;
 		}
 
-		if (hasFood(l))
-			removeFood(l);
-		if (testFlag(l, Environment.FLAG_DROP))
-			setFlag(l, Environment.FLAG_DROP, false);
+		int index = topology.getIndex(l);
+		if (hasFood(index))
+			removeFood(index);
+		if (hasDrop(index))
+			setFlag(index, Environment.FLAG_DROP, false);
 
-		setFlag(l, Environment.FLAG_STONE, true);
+		setFlag(index, Environment.FLAG_STONE, true);
 	}
 
 	public synchronized void clearStones() {
@@ -218,7 +514,11 @@ public class Environment implements Updatable {
 	}
 
 	public boolean hasAnythingAt(Location l) {
-		return getLocationBits(l) != 0 || hasAgent(l);
+		return hasAnythingAt(topology.getIndex(l));
+	}
+
+	public boolean hasAnythingAt(int index) {
+		return cellFlags[index] != 0 || agentGrid[index] != null;
 	}
 
 	public synchronized void removeStone(Location l) {
@@ -226,45 +526,131 @@ public class Environment implements Updatable {
 	}
 
 	public void addDrop(Location loc, Drop d) {
-		if (hasFood(loc)) {
-			removeFood(loc);
+		int index = topology.getIndex(loc);
+		if (hasFood(index)) {
+			removeFood(index);
 		}
 
-		setFlag(loc, Environment.FLAG_DROP, true);
+		setFlag(index, Environment.FLAG_DROP, true);
 
-		dropArray[loc.x][loc.y] = d;
+		cellDrops[index] = d;
 	}
 
 	public void removeDrop(Location loc) {
+		removeDrop(topology.getIndex(loc));
+	}
+
+	public void removeDrop(int index) {
 		// Drop.prepareRemove should not end up recursing into this again!
-		if (hasDrop(loc)) {
-			Drop drop = dropArray[loc.x][loc.y];
+		if (hasDrop(index)) {
+			Drop drop = cellDrops[index];
 			drop.prepareRemove();
-			setFlag(loc, FLAG_DROP, false);
-			dropArray[loc.x][loc.y] = null;
+			setFlag(index, FLAG_DROP, false);
+			cellDrops[index] = null;
 		}
 	}
 
 	public Drop getDrop(Location loc) {
-		return dropArray[loc.x][loc.y];
+		return getDrop(topology.getIndex(loc));
+	}
+
+	public Drop getDrop(int index) {
+		return cellDrops[index];
 	}
 
 	public boolean hasDrop(Location loc) {
-		return testFlag(loc, FLAG_DROP);
+		return hasDrop(topology.getIndex(loc));
+	}
+
+	public boolean hasDrop(int index) {
+		return testFlag(index, FLAG_DROP);
 	}
 
 	public boolean hasStone(Location l) {
-		return testFlag(l, Environment.FLAG_STONE);
+		return hasStone(topology.getIndex(l));
+	}
+
+	public boolean hasStone(int index) {
+		return testFlag(index, Environment.FLAG_STONE);
 	}
 
 	public boolean hasAgent(Location l) {
 		return getAgent(l) != null;
 	}
 
+	public boolean hasAgent(int index) {
+		return agentGrid[index] != null;
+	}
+
 	public synchronized void clearDrops() {
 		clearFlag(Environment.FLAG_DROP);
 	}
 
+	/**
+	 * Writes the stones and food of every location. Agents and drops are saved by their owners.
+	 * Food locations are also written in the order removeRandomFood() picks them from.
+	 */
+	public synchronized void saveCells(CheckpointOutput out) throws IOException {
+		out.writeInt(cellFlags.length);
+		for (int index = 0; index < cellFlags.length; index++) {
+			boolean stone = hasStone(index);
+			boolean food = hasFood(index);
+			out.writeByte((byte) ((stone ? 1 : 0) | (food ? 2 : 0)));
+			if (food)
+				out.writeInt(cellFoodType[index]);
+		}
+
+		// Sorting now gives the same order the next removeRandomFood() would
+		sortFoodRegistry();
+		out.writeInt(foodCounts.length);
+		for (int type = 0; type < foodCounts.length; type++) {
+			out.writeInt(foodCounts[type]);
+			for (int slot = 0; slot < foodCounts[type]; slot++) {
+				out.writeInt(foodLocations[type][slot]);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the stones, food and drops of every location with the stones and food written
+	 * by saveCells().
+	 */
+	public synchronized void loadCells(CheckpointInput in) throws IOException {
+		if (in.readInt() != cellFlags.length)
+			throw new IOException("Checkpoint environment has a different size");
+
+		clearDrops();
+		clearFood();
+		clearStones();
+		int[] foodTypes = new int[cellFlags.length];
+		Arrays.fill(foodTypes, -1);
+		int foodCells = 0;
+		for (int index = 0; index < cellFlags.length; index++) {
+			byte flags = in.readByte();
+			if ((flags & 1) != 0)
+				setFlag(index, FLAG_STONE, true);
+			if ((flags & 2) != 0) {
+				foodTypes[index] = in.readInt();
+				foodCells++;
+			}
+		}
+
+		// Add food in the saved order, removeRandomFood() depends on it
+		int types = in.readInt();
+		for (int type = 0; type < types; type++) {
+			for (int count = in.readInt(); count > 0; count--) {
+				int index = in.readInt();
+				if (index < 0 || index >= cellFlags.length || foodTypes[index] != type)
+					throw new IOException("Corrupt checkpoint, food list does not match the cells");
+				foodTypes[index] = -1;
+				addFood(index, type);
+				foodCells--;
+			}
+		}
+		if (foodCells != 0)
+			throw new IOException("Corrupt checkpoint, food list does not match the cells");
+	}
+
 	/**
 	 * Removes old agents that are off the new environment.
 	 */
@@ -272,6 +658,9 @@ public class Environment implements Updatable {
 		for (Agent a : new ArrayList<Agent>(getAgents())) {
 			Location l = a.getPosition();
 			if (l.x >= topology.width || l.y >= topology.height) {
+				// No longer in agentGrid, setAgent() cannot unlist it
+				a.occupiedCells = 0;
+				unlistAgent(a);
 				a.die();
 			}
 		}
@@ -291,10 +680,11 @@ public class Environment implements Updatable {
 
 	public Collection<Location> getNearLocations(Location position) {
 		Collection<Location> result = new ArrayList<>(8);
+		int index = topology.getIndex(position);
 		for (Direction dir : topology.ALL_8_WAY) {
-			Location loc = topology.getAdjacent(position, dir);
-			if (loc != null && !hasStone(loc)) {
-				result.add(loc);
+			int adjacent = topology.getAdjacentIndex(index, dir);
+			if (adjacent != -1 && !hasStone(adjacent)) {
+				result.add(topology.getLocation(adjacent));
 			}
 		}
 		return result;
@@ -9,6 +9,11 @@ public class LocationDirection extends Location {
 		direction = d;
 	}
 
+	public LocationDirection(int x, int y, Direction d) {
+		super(x, y);
+		direction = d;
+	}
+
 	public LocationDirection(Location l) {
 		super(l.x, l.y);
 		direction = Topology.NONE;
@@ -11,6 +11,13 @@ public interface SimulationInternals extends StatePluginSource, SimulationTimeSp
 
 	public Agent newAgent(int type);
 
+	/**
+	 * Gets a dead agent reset to a new agent of the given type, without a controller.
+	 *
+	 * @return reset agent, null when the simulation does not recycle agents or has none to reuse
+	 */
+	public Agent reuseAgent(int type);
+
 	public void addAgent(Agent agent);
 
 	public StateParameter getStateParameter(String name);
@@ -5,6 +5,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.cobweb.util.RandomNoGenerator;
+
 
 public class Topology {
 
@@ -15,6 +17,12 @@ public class Topology {
 	private final boolean wrapX;
 	private final boolean wrapY;
 
+	/**
+	 * Adjacent cell in each of the 4 cardinal directions, indexed by [cardinal][cell].
+	 * Holds (cell index << 2 | cardinal the agent faces after the step), or -1 off the grid.
+	 */
+	private final int[][] adjacentCells;
+
 	public Topology(RandomSource randomSource, int width, int height, boolean wrap, boolean wrapX, boolean wrapY) {
 		this.randomSource = randomSource;
 		this.width = width;
@@ -22,10 +30,51 @@ public class Topology {
 		this.wrap = wrap;
 		this.wrapX = wrapX;
 		this.wrapY = wrapY;
+
+		int cells = width * height;
+		adjacentCells = new int[CARDINALS.length][cells];
+		for (int c = 0; c < CARDINALS.length; c++) {
+			for (int i = 0; i < cells; i++) {
+				adjacentCells[c][i] = computeAdjacentCell(i, c);
+			}
+		}
+	}
+
+	/**
+	 * Same as computeAdjacent() for one of the CARDINALS, on grid indexes.
+	 *
+	 * @return entry of adjacentCells
+	 */
+	private int computeAdjacentCell(int index, int cardinal) {
+		Direction direction = CARDINALS[cardinal];
+		int next = computeAdjacentIndex(index, direction);
+		if (next == -1)
+			return -1;
+
+		// Stepping over the pole of a globe, or off an edge that does not wrap on a grid that
+		// wraps the other way, turns the agent around
+		int x = index % width + direction.x;
+		int y = index / width + direction.y;
+		boolean flipsY = wrap || (wrapX && !wrapY);
+		boolean flipsX = !wrap && wrapY && !wrapX;
+		boolean flip = (flipsY && (y < 0 || y >= height)) || (flipsX && (x < 0 || x >= width));
+		return next << 2 | (flip ? (cardinal + 2) % CARDINALS.length : cardinal);
 	}
 
 	public Location getAdjacent(Location location, Direction direction) {
-		return getAdjacent(new LocationDirection(location, direction));
+		return adjacent(location, direction);
+	}
+
+	private LocationDirection adjacent(Location location, Direction direction) {
+		int cardinal = getCardinal(direction);
+		if (cardinal == -1 || !isValidLocation(location))
+			return computeAdjacent(new LocationDirection(location, direction));
+
+		int next = adjacentCells[cardinal][getIndex(location)];
+		if (next == -1)
+			return null;
+		int index = next >> 2;
+		return new LocationDirection(index % width, index / width, CARDINALS[next & 3]);
 	}
 
 	public double getDistance(Location from, Location to) {
@@ -33,11 +82,15 @@ public class Topology {
 	}
 
 	public Location getRandomLocation() {
+		return getRandomLocation(randomSource.getRandom());
+	}
+
+	public Location getRandomLocation(RandomNoGenerator random) {
 		Location l;
 		do {
 			l = new Location(
-					randomSource.getRandom().nextInt(width),
-					randomSource.getRandom().nextInt(height));
+					random.nextInt(width),
+					random.nextInt(height));
 		} while (!isValidLocation(l));
 		return l;
 	}
@@ -48,7 +101,128 @@ public class Topology {
 				&& l.y >= 0 && l.y < height;
 	}
 
+	/**
+	 * Index of a location in arrays covering the whole grid, which store it row by row.
+	 */
+	public int getIndex(Location l) {
+		return l.y * width + l.x;
+	}
+
+	public Location getLocation(int index) {
+		return new Location(index % width, index / width);
+	}
+
+	/**
+	 * Same as getAdjacent(), but works on grid indexes and does not create any objects.
+	 *
+	 * @return index of the adjacent location, -1 if it is off the grid.
+	 */
+	public int getAdjacentIndex(int index, Direction direction) {
+		int cardinal = getCardinal(direction);
+		if (cardinal != -1 && index >= 0 && index < width * height)
+			return adjacentCells[cardinal][index] >> 2;
+		return computeAdjacentIndex(index, direction);
+	}
+
+	/**
+	 * Direction of the position getAdjacent() returns, for callers that walk the grid with
+	 * getAdjacentIndex(). Does not create any objects for the 4 cardinal directions.
+	 *
+	 * @return direction faced after stepping from index in the given direction, reversed where
+	 * the step goes over the pole of a globe or reflects off an edge
+	 */
+	public Direction getAdjacentDirection(int index, Direction direction) {
+		int cardinal = getCardinal(direction);
+		if (cardinal != -1 && index >= 0 && index < width * height) {
+			int next = adjacentCells[cardinal][index];
+			return next == -1 ? direction : CARDINALS[next & 3];
+		}
+		LocationDirection next = computeAdjacent(new LocationDirection(getLocation(index), direction));
+		return next == null ? direction : next.direction;
+	}
+
+	private int computeAdjacentIndex(int index, Direction direction) {
+		int x = index % width + direction.x;
+		int y = index / width + direction.y;
+
+		if (wrap) {
+			x = (x + width) % width;
+			if (y < 0) {
+				y = -y - 1;
+				x = (x + width / 2) % width;
+			} else if (y >= height) {
+				y = height * 2 - y - 1;
+				x = (x + width / 2) % width;
+			}
+		} else if (wrapX && wrapY) {
+			x = (x + width) % width;
+			y = (y + height) % height;
+		} else if (wrapX) {
+			x = (x + width) % width;
+			if (y < 0)
+				y = -y - 1;
+			else if (y >= height)
+				y = height * 2 - y - 1;
+		} else if (wrapY) {
+			y = (y + height) % height;
+			if (x < 0)
+				x = -x - 1;
+			else if (x >= width)
+				x = width * 2 - x - 1;
+		} else if (x < 0 || x >= width || y < 0 || y >= height) {
+			return -1;
+		}
+
+		return y * width + x;
+	}
+
+	/**
+	 * Inverse of getAdjacentIndex(). At the edges of grids that wrap with reflection or
+	 * globe-style several locations can have the same adjacent location in one direction,
+	 * so callers should check candidates 0 to REVERSE_ADJACENT_CANDIDATES - 1.
+	 *
+	 * @return index of a location whose adjacent location in the given direction is index,
+	 * -1 if this candidate does not exist or is the same as an earlier one.
+	 */
+	public int getReverseAdjacentIndex(int index, Direction direction, int candidate) {
+		int x = index % width;
+		int y = index / width;
+
+		int source;
+		switch (candidate) {
+			case 0: // regular neighbour
+				source = ((y - direction.y + height) % height) * width + (x - direction.x + width) % width;
+				break;
+			case 1: // reflected back onto itself at the edge
+				source = index;
+				break;
+			case 2: // reflected over the pole of a globe
+				source = y * width + (x - width / 2 - direction.x + 2 * width) % width;
+				break;
+			default:
+				return -1;
+		}
+
+		if (getAdjacentIndex(source, direction) != index)
+			return -1;
+		for (int i = 0; i < candidate; i++) {
+			if (getReverseAdjacentIndex(index, direction, i) == source)
+				return -1;
+		}
+		return source;
+	}
+
+	public static final int REVERSE_ADJACENT_CANDIDATES = 3;
+
 	public LocationDirection getAdjacent(LocationDirection location) {
+		return adjacent(location, location.direction);
+	}
+
+	/**
+	 * Adjacent position computed from the coordinates, the adjacentCells table holds its result
+	 * for every cell and cardinal direction.
+	 */
+	LocationDirection computeAdjacent(LocationDirection location) {
 		Direction direction = location.direction;
 		int x = location.x + direction.x;
 		int y = location.y + direction.y;
@@ -65,7 +239,7 @@ public class Topology {
 			}
 			if (flip) {
 				x = (x + width / 2) % width;
-				direction = new Direction(-direction.x, -direction.y);
+				direction = getDirection(-direction.x, -direction.y);
 			}
 
 		}
@@ -89,7 +263,7 @@ public class Topology {
 			}
 			if (flip) {
 				//y = (y + height / 2) % height;
-				direction = new Direction(direction.x, -direction.y);
+				direction = getDirection(direction.x, -direction.y);
 			}
 		} // else if(wrapX)
 		else if(wrapY)
@@ -106,7 +280,7 @@ public class Topology {
 			}
 			if (flip) {
 				//x = (x + width / 2) % width;
-				direction = new Direction(-direction.x, direction.y);
+				direction = getDirection(-direction.x, direction.y);
 			}
 		} // else if(wrapY)
 		else
@@ -119,7 +293,31 @@ public class Topology {
 	}
 
 	public double getDistanceSquared(Location from, Location to) {
-		return simpleDistanceSquared(from, getClosestWrapLocation(from, to));
+		return distanceSquared(from.x, from.y, to.x, to.y);
+	}
+
+	/**
+	 * Same as getDistanceSquared(), but works on grid indexes.
+	 */
+	public int distanceSquared(int fromIndex, int toIndex) {
+		return distanceSquared(fromIndex % width, fromIndex / width, toIndex % width, toIndex / width);
+	}
+
+	private int distanceSquared(int fromX, int fromY, int toX, int toY) {
+		int deltaX = Math.abs(toX - fromX);
+		int deltaY = Math.abs(toY - fromY);
+		if (wrap) {
+			long delta = getClosestWrapDelta(fromX, fromY, toX, toY);
+			deltaX = deltaX(delta);
+			deltaY = deltaY(delta);
+		} else {
+			// Closest of the copies from getWrapVirtualLocations() along each wrapped axis
+			if (wrapX)
+				deltaX = Math.min(deltaX, Math.abs(deltaX - width));
+			if (wrapY)
+				deltaY = Math.min(deltaY, Math.abs(deltaY - height));
+		}
+		return deltaX * deltaX + deltaY * deltaY;
 	}
 
 	protected double simpleDistanceSquared(Location from, Location to) {
@@ -128,7 +326,11 @@ public class Topology {
 		return deltaX * deltaX + deltaY * deltaY;
 	}
 
-	private List<Location> getWrapVirtualLocations(Location l) {
+	/**
+	 * Copies of a location shifted to where it appears across each wrapped edge,
+	 * including the location itself. getDistance() measures to the closest copy.
+	 */
+	public List<Location> getWrapVirtualLocations(Location l) {
 		List<Location> result = new ArrayList<Location>(7);
 		result.add(l);
 
@@ -191,23 +393,66 @@ public class Topology {
 		return result;
 	}
 
-	private Location getClosestWrapLocation(Location zero, Location target) {
-		if (!(wrap || wrapX || wrapY))
-			return target;
+	/**
+	 * Finds the closest of the copies from getWrapVirtualLocations(), checking them in the same
+	 * order so ties are broken the same way, without creating the copies.
+	 *
+	 * @return X and Y delta to the closest copy, packed with packDelta()
+	 */
+	private long getClosestWrapDelta(int fromX, int fromY, int toX, int toY) {
+		int x = toX - fromX;
+		int y = toY - fromY;
+		long best = packDelta(x, y);
 
-		double distance = Double.MAX_VALUE;
-		Location best = target;
-		for(Location virtual : getWrapVirtualLocations(target)) {
-			double d = simpleDistanceSquared(zero, virtual);
-			if (d < distance) {
-				distance = d;
-				if (best != virtual)
-					best = virtual;
-			}
+		if (wrap) {
+			best = closer(best, x - width, y);
+			best = closer(best, x + width, y);
+			best = closer(best, x - width + width / 2, 2 * height - toY - 1 - fromY);
+			best = closer(best, x + width / 2,         2 * height - toY - 1 - fromY);
+			best = closer(best, x - width + width / 2, - toY - 1 - fromY);
+			best = closer(best, x + width / 2,         - toY - 1 - fromY);
+		}
+		else if (wrapX && wrapY) {
+			best = closer(best, x, y - height);
+			best = closer(best, x, y + height);
+			best = closer(best, x + width, y);
+			best = closer(best, x - width, y);
+			best = closer(best, x + width, y - height);
+			best = closer(best, x + width, y + height);
+			best = closer(best, x - width, y - height);
+			best = closer(best, x - width, y + height);
+		}
+		else if (wrapX) {
+			best = closer(best, x + width, y);
+			best = closer(best, x - width, y);
 		}
+		else if (wrapY) {
+			best = closer(best, x, y - height);
+			best = closer(best, x, y + height);
+		}
+		return best;
+	}
+
+	private static long closer(long best, int deltaX, int deltaY) {
+		int bestX = deltaX(best);
+		int bestY = deltaY(best);
+		if (deltaX * deltaX + deltaY * deltaY < bestX * bestX + bestY * bestY)
+			return packDelta(deltaX, deltaY);
 		return best;
 	}
 
+	private static long packDelta(int deltaX, int deltaY) {
+		return (long) deltaX << 32 | deltaY & 0xffffffffL;
+	}
+
+	private static int deltaX(long delta) {
+		return (int) (delta >> 32);
+	}
+
+	private static int deltaY(long delta) {
+		return (int) delta;
+	}
+
 	public LocationDirection getUnwrappedAdjacent(LocationDirection location) {
 		Direction direction = location.direction;
 		int x = location.x + direction.x;
@@ -364,11 +609,11 @@ public class Topology {
 	}
 
 	protected Direction turnRight(Direction dir) {
-		return new Direction(-dir.y, +dir.x);
+		return getDirection(-dir.y, +dir.x);
 	}
 
 	protected Direction turnLeft(Direction dir) {
-		return new Direction(+dir.y, -dir.x);
+		return getDirection(+dir.y, -dir.x);
 	}
 
 	public Rotation getRotationBetween(Direction from, Direction to) {
@@ -383,10 +628,10 @@ public class Topology {
 	}
 
 	public Direction getDirectionBetween4way(Location from, Location to) {
-		to = getClosestWrapLocation(from, to);
+		long delta = getClosestWrapDelta(from.x, from.y, to.x, to.y);
 
-		int deltaX = to.x - from.x;
-		int deltaY = to.y - from.y;
+		int deltaX = deltaX(delta);
+		int deltaY = deltaY(delta);
 		if (deltaX == 0 && deltaY == 0)
 			return NONE;
 
@@ -409,10 +654,10 @@ public class Topology {
 	}
 
 	public Direction getDirectionBetween8way(Location from, Location to) {
-		to = getClosestWrapLocation(from, to);
+		long delta = getClosestWrapDelta(from.x, from.y, to.x, to.y);
 
-		int deltaX = to.x - from.x;
-		int deltaY = to.y - from.y;
+		int deltaX = deltaX(delta);
+		int deltaY = deltaY(delta);
 		if (deltaX == 0 && deltaY == 0)
 			return NONE;
 
@@ -447,6 +692,37 @@ public class Topology {
 	public static final Direction SOUTHWEST = new Direction(-1, +1);
 	public static final Direction NORTHWEST = new Direction(-1, -1);
 
+	/**
+	 * The predefined directions, indexed by (y + 1) * 3 + (x + 1).
+	 */
+	private static final Direction[] DIRECTIONS = {
+			NORTHWEST, NORTH, NORTHEAST,
+			WEST, NONE, EAST,
+			SOUTHWEST, SOUTH, SOUTHEAST
+	};
+
+	/**
+	 * Predefined direction with the given deltas, so turning does not create new directions.
+	 */
+	private static Direction getDirection(int x, int y) {
+		return DIRECTIONS[(y + 1) * 3 + (x + 1)];
+	}
+
+	private static final Direction[] CARDINALS = { NORTH, EAST, SOUTH, WEST };
+
+	/**
+	 * Index of each direction in CARDINALS, -1 for NONE and the diagonals.
+	 */
+	private static final int[] CARDINAL_INDEX = {
+			-1, 0, -1,
+			3, -1, 1,
+			-1, 2, -1
+	};
+
+	private static int getCardinal(Direction direction) {
+		return CARDINAL_INDEX[(direction.y + 1) * 3 + (direction.x + 1)];
+	}
+
 	public final Direction[] ALL_4_WAY = {
 			NORTH, EAST,
 			SOUTH, WEST
@@ -1,6 +1,11 @@
 package org.cobweb.cobweb2.impl;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
 
 import org.cobweb.cobweb2.core.Agent;
 import org.cobweb.cobweb2.core.SimulationInternals;
@@ -12,8 +17,28 @@ public class AgentSpawner {
 	private Class<?> spawnType;
 	private SimulationTimeSpace simulation;
 
+	private final boolean recycle;
+
+	/**
+	 * Agents removed from the simulation that cannot be reused yet
+	 */
+	private final List<ComplexAgent> released = new ArrayList<>();
+
+	/**
+	 * Agents that can be reused
+	 */
+	private final Deque<ComplexAgent> pool = new ArrayDeque<>();
+
 	public AgentSpawner(String classname, SimulationTimeSpace sim) {
+		this(classname, sim, false);
+	}
+
+	/**
+	 * @param recycle whether dead agents should be reused for new agents
+	 */
+	public AgentSpawner(String classname, SimulationTimeSpace sim, boolean recycle) {
 		simulation = sim;
+		this.recycle = recycle;
 		try {
 			spawnType = Class.forName(classname);
 		} catch (ClassNotFoundException ex) {
@@ -22,6 +47,10 @@ public class AgentSpawner {
 	}
 
 	public Agent spawn(int type) {
+		Agent reused = reuse(type);
+		if (reused != null)
+			return reused;
+
 		try {
 			return (Agent)spawnType.getConstructor(SimulationInternals.class, int.class).newInstance(simulation, type);
 
@@ -40,4 +69,42 @@ public class AgentSpawner {
 		}
 
 	}
+
+	/**
+	 * Takes a dead agent out of the pool and resets it to a new agent of the given type.
+	 *
+	 * @return reset agent, or null when there is none to reuse
+	 */
+	public synchronized Agent reuse(int type) {
+		ComplexAgent agent = pool.pollLast();
+		if (agent != null)
+			agent.reset(type);
+		return agent;
+	}
+
+	/**
+	 * Hands over an agent that died and was removed from the simulation.
+	 * It can be reused once recycleReleased() is called.
+	 */
+	public synchronized void release(Agent agent) {
+		assert !agent.isAlive();
+		if (recycle && agent.getClass() == spawnType && agent instanceof ComplexAgent)
+			released.add((ComplexAgent) agent);
+	}
+
+	/**
+	 * Makes the agents released so far available for reuse. Called between ticks, so nothing
+	 * still working with an agent that died during the tick sees it come back as a new agent.
+	 * Agents still waiting to be the other parent of a child are kept back until the birth.
+	 */
+	public synchronized void recycleReleased() {
+		Iterator<ComplexAgent> i = released.iterator();
+		while (i.hasNext()) {
+			ComplexAgent agent = i.next();
+			if (!agent.isBreedPartner()) {
+				pool.add(agent);
+				i.remove();
+			}
+		}
+	}
 }
@@ -1,9 +1,10 @@
 package org.cobweb.cobweb2.impl;
 
-import java.util.Collection;
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import org.apache.commons.collections4.queue.CircularFifoQueue;
 import org.cobweb.cobweb2.core.Agent;
@@ -15,7 +16,10 @@ import org.cobweb.cobweb2.core.Location;
 import org.cobweb.cobweb2.core.LocationDirection;
 import org.cobweb.cobweb2.core.SimulationInternals;
 import org.cobweb.cobweb2.core.Topology;
+import org.cobweb.cobweb2.io.CheckpointReader;
+import org.cobweb.cobweb2.io.CheckpointWriter;
 import org.cobweb.cobweb2.plugins.AgentState;
+import org.cobweb.cobweb2.plugins.AgentStateSlots;
 import org.cobweb.cobweb2.plugins.broadcast.EnthusiasticBroadcast;
 import org.cobweb.cobweb2.plugins.broadcast.BroadcastPacket;
 import org.cobweb.cobweb2.plugins.broadcast.FoodBroadcast;
@@ -23,9 +27,8 @@ import org.cobweb.cobweb2.plugins.broadcast.PacketConduit;
 import org.cobweb.cobweb2.plugins.broadcast.PacketConduit.BroadcastBreedCause;
 import org.cobweb.cobweb2.plugins.broadcast.PacketConduit.BroadcastCause;
 import org.cobweb.cobweb2.plugins.broadcast.PacketConduit.BroadcastFoodCause;
+import org.cobweb.util.CloneHelper;
 import org.cobweb.util.RandomNoGenerator;
-import org.json.simple.JSONArray;
-import org.json.simple.parser.JSONParser;
 
 /**
  * TODO better comments
@@ -40,8 +43,35 @@ import org.json.simple.parser.JSONParser;
  */
 public class ComplexAgent extends Agent {
 
+	// Causes carry no state, so every energy change can share one instance
+	private static final SexualBirthCause SEXUAL_BIRTH_CAUSE = new SexualBirthCause();
+	private static final AsexualBirthCause ASEXUAL_BIRTH_CAUSE = new AsexualBirthCause();
+	private static final CreationBirthCause CREATION_BIRTH_CAUSE = new CreationBirthCause();
+	private static final BroadcastBreedCause BROADCAST_BREED_CAUSE = new BroadcastBreedCause();
+	private static final DeathCause DEATH_CAUSE = new DeathCause();
+	private static final EatFavoriteFoodCause EAT_FAVORITE_FOOD_CAUSE = new EatFavoriteFoodCause();
+	private static final EatFoodCause EAT_FOOD_CAUSE = new EatFoodCause();
+	private static final EatAgentCause EAT_AGENT_CAUSE = new EatAgentCause();
+	private static final BumpWallCause BUMP_WALL_CAUSE = new BumpWallCause();
+	private static final BroadcastFoodCause BROADCAST_FOOD_CAUSE = new BroadcastFoodCause();
+	private static final AsexualReproductionCause ASEXUAL_REPRODUCTION_CAUSE = new AsexualReproductionCause();
+	private static final SexualReproductionCause SEXUAL_REPRODUCTION_CAUSE = new SexualReproductionCause();
+	private static final StepForwardCause STEP_FORWARD_CAUSE = new StepForwardCause();
+	private static final SplitReproductionCause SPLIT_REPRODUCTION_CAUSE = new SplitReproductionCause();
+	private static final SplitBirthCause SPLIT_BIRTH_CAUSE = new SplitBirthCause();
+	private static final BumpAgentCause BUMP_AGENT_CAUSE = new BumpAgentCause();
+	private static final TurnLeftCause TURN_LEFT_CAUSE = new TurnLeftCause();
+	private static final TurnRightCause TURN_RIGHT_CAUSE = new TurnRightCause();
+	private static final AgingPenaltyCause AGING_PENALTY_CAUSE = new AgingPenaltyCause();
+
+	/**
+	 * Parameters of the agent. Shared with every other agent spawned from the same parameters
+	 * until getPrivateParams() gives the agent its own copy.
+	 */
 	public ComplexAgentParams params;
 
+	private boolean privateParams;
+
 	private double commInbox;
 
 	private double commOutbox;
@@ -49,13 +79,21 @@ public class ComplexAgent extends Agent {
 	/**
 	 * IDs of bad agents. Cheaters, etc
 	 */
-	private Collection<Agent> badAgentMemory;
+	private CircularFifoQueue<Integer> badAgentMemory;
 
 	private double memoryBuffer;
 
 
 	protected ComplexAgent breedPartner;
 
+	/**
+	 * Number of pregnant agents that have this agent as their breedPartner
+	 */
+	private volatile int breedReferences;
+
+	private static final AtomicIntegerFieldUpdater<ComplexAgent> breedReferencesUpdater =
+			AtomicIntegerFieldUpdater.newUpdater(ComplexAgent.class, "breedReferences");
+
 	// FIXME: AI should call asexBreed() instead of setting flag and agent doing so.
 	private boolean shouldReproduceAsex;
 
@@ -64,7 +102,15 @@ public class ComplexAgent extends Agent {
 
 	protected boolean pregnant = false;
 
-	public Map<Class<? extends AgentState>, AgentState> extraState = new HashMap<>();
+	/**
+	 * Plugin states, indexed by AgentStateSlots slot.
+	 */
+	private AgentState[] states = new AgentState[AgentStateSlots.count()];
+
+	/**
+	 * Plugin states of the dead agent this agent was recycled from, until spawn mutators have taken them
+	 */
+	private AgentState[] recycledStates;
 
 	public transient ComplexEnvironment environment;
 
@@ -76,14 +122,82 @@ public class ComplexAgent extends Agent {
 
 	public int stop_count = 0;
 
+	/**
+	 * Private parameters of the dead agent this agent was recycled from, getPrivateParams() copies into them
+	 */
+	private ComplexAgentParams recycledParams;
+
 	public ComplexAgent(SimulationInternals sim, int type) {
 		super(type);
 		this.simulation = sim;
 		this.birthTick = getTime();
 	}
 
+	/**
+	 * Resets a dead agent to the state of a newly constructed agent of the given type.
+	 *
+	 * @see AgentSpawner#reuse(int)
+	 */
+	void reset(int type) {
+		assert breedPartner == null && !isBreedPartner();
+		revive(type);
+		if (privateParams)
+			recycledParams = params;
+		params = null;
+		privateParams = false;
+		commInbox = 0;
+		commOutbox = 0;
+		memoryBuffer = 0;
+		shouldReproduceAsex = false;
+		pregPeriod = 0;
+		pregnant = false;
+		AgentState[] deadStates = states;
+		if (recycledStates != null) {
+			states = recycledStates;
+			Arrays.fill(states, null);
+		} else {
+			states = new AgentState[deadStates.length];
+		}
+		recycledStates = deadStates;
+		environment = null;
+		birthTick = getTime();
+		currentActionPoints = 0f;
+		stop_count = 0;
+		recycledController = controller;
+		controller = null;
+	}
+
+	private void setBreedPartner(ComplexAgent partner) {
+		if (breedPartner != null)
+			breedReferencesUpdater.decrementAndGet(breedPartner);
+		breedPartner = partner;
+		if (partner != null)
+			breedReferencesUpdater.incrementAndGet(partner);
+	}
+
+	/**
+	 * @return true while a pregnant agent still needs this agent as the other parent
+	 */
+	boolean isBreedPartner() {
+		return breedReferences > 0;
+	}
+
 	private Controller controller;
 
+	/**
+	 * Controller of the dead agent this agent was recycled from, until the child controller reuses it
+	 */
+	private Controller recycledController;
+
+	/**
+	 * @return controller of the dead agent this agent was recycled from, or null
+	 */
+	private Controller takeRecycledController() {
+		Controller recycled = recycledController;
+		recycledController = null;
+		return recycled;
+	}
+
 	protected AgentListener getAgentListener() {
 		return simulation.getAgentListener();
 	}
@@ -101,55 +215,108 @@ public class ComplexAgent extends Agent {
 	}
 
 	public <T extends AgentState> void setState(Class<T> type, T value) {
-		extraState.put(type, value);
+		setState(AgentStateSlots.getSlot(type), value);
 	}
 
 	public <T extends AgentState> T getState(Class<T> type) {
 		@SuppressWarnings("unchecked")
-		T storedState = (T) extraState.get(type);
+		T storedState = (T) getState(AgentStateSlots.getSlot(type));
 		return storedState;
 	}
 
 	public <T extends AgentState> T removeState(Class<T> type) {
 		@SuppressWarnings("unchecked")
-		T removed = (T) extraState.remove(type);
+		T removed = (T) removeState(AgentStateSlots.getSlot(type));
 		return removed;
 	}
 
+	public void setState(int slot, AgentState value) {
+		if (slot >= states.length)
+			states = Arrays.copyOf(states, AgentStateSlots.count());
+		states[slot] = value;
+	}
+
+	public AgentState getState(int slot) {
+		return slot < states.length ? states[slot] : null;
+	}
+
+	public AgentState removeState(int slot) {
+		AgentState removed = getState(slot);
+		if (removed != null)
+			states[slot] = null;
+		return removed;
+	}
+
+	/**
+	 * Takes the plugin state in the given slot that this agent had before it was recycled.
+	 * Spawn mutators use it to reuse the state object instead of allocating a new one.
+	 *
+	 * @return the old state, or null if there is none
+	 */
+	public AgentState takeRecycledState(int slot) {
+		if (recycledStates == null || slot >= recycledStates.length)
+			return null;
+		AgentState state = recycledStates[slot];
+		recycledStates[slot] = null;
+		return state;
+	}
+
+	private void dropRecycledStates() {
+		if (recycledStates != null)
+			Arrays.fill(recycledStates, null);
+	}
+
+	/**
+	 * @return all plugin states of the agent, by state type
+	 */
+	public Map<Class<? extends AgentState>, AgentState> getStates() {
+		Map<Class<? extends AgentState>, AgentState> result = new LinkedHashMap<>();
+		for (int slot = 0; slot < states.length; slot++) {
+			if (states[slot] != null)
+				result.put(AgentStateSlots.getType(slot), states[slot]);
+		}
+		return result;
+	}
+
 	@Override
 	protected ComplexAgent createChildAsexual(LocationDirection location) {
-		ComplexAgent child = new ComplexAgent(simulation, getType());
+		ComplexAgent child = newChild(getType());
 		child.init(environment, location, this);
 		return child;
 	}
 
+	private ComplexAgent newChild(int type) {
+		ComplexAgent child = (ComplexAgent) simulation.reuseAgent(type);
+		if (child == null)
+			child = new ComplexAgent(simulation, type);
+		return child;
+	}
+
 	//prob = probability of creating a child of another type
 	private ComplexAgent createChildSexual(LocationDirection location, ComplexAgent otherParent) {
 		ComplexAgent child;
 		if(getType() != otherParent.getType()){
 			float probOfOtherType = params.probGiveBirthToOtherType.getValue();
 			float probGiveBirthToSameType = probOfOtherType + (1 - probOfOtherType)/2;
-			Random rand = new Random();
-
-			float n = rand.nextFloat();
+			float n = getRandom().nextFloat();
 
 			if(n <= probOfOtherType){
-				child = new ComplexAgent(simulation, params.childType.getValue()- 1);
+				child = newChild(params.childType.getValue()- 1);
 
 			}else if(n <= probGiveBirthToSameType){
-				child = new ComplexAgent(simulation, getType());
+				child = newChild(getType());
 			}else{
-				child = new ComplexAgent(simulation, otherParent.getType());
+				child = newChild(otherParent.getType());
 			}
 		}else{
-			child = new ComplexAgent(simulation, getType());
+			child = newChild(getType());
 		}
 		child.init(environment, location, this, otherParent);
 		return child;
 	}
 
 	protected ComplexAgent createChildSplit(LocationDirection location) {
-		ComplexAgent child = new ComplexAgent(simulation, getType());
+		ComplexAgent child = newChild(getType());
 		child.init(environment, location, this);
 		return child;
 	}
@@ -166,13 +333,14 @@ public class ComplexAgent extends Agent {
 		copyParams(parent1);
 		controller =
 				parent1.controller.createChildSexual(
-						parent2.controller);
+						parent2.controller, takeRecycledController());
 
 		getAgentListener().onSpawn(this, parent1, parent2);
+		dropRecycledStates();
 
 		initPosition(pos);
 
-		changeEnergy(params.initEnergy.getValue(), new SexualBirthCause());
+		changeEnergy(params.initEnergy.getValue(), SEXUAL_BIRTH_CAUSE);
 	}
 
 
@@ -185,13 +353,14 @@ public class ComplexAgent extends Agent {
 	protected void init(ComplexEnvironment env, LocationDirection pos, ComplexAgent parent) {
 		environment = (env);
 		copyParams(parent);
-		controller = parent.controller.createChildAsexual();
+		controller = parent.controller.createChildAsexual(takeRecycledController());
 
 		getAgentListener().onSpawn(this, parent);
+		dropRecycledStates();
 
 		initPosition(pos);
 
-		changeEnergy(params.initEnergy.getValue(), new AsexualBirthCause());
+		changeEnergy(params.initEnergy.getValue(), ASEXUAL_BIRTH_CAUSE);
 	}
 
 	/**
@@ -202,12 +371,14 @@ public class ComplexAgent extends Agent {
 	public void init(ComplexEnvironment env, LocationDirection pos, ComplexAgentParams agentData, int energy) {
 		environment = (env);
 		setParams(agentData);
+		recycledController = null;
 
 		getAgentListener().onSpawn(this);
+		dropRecycledStates();
 
 		initPosition(pos);
 
-		changeEnergy(energy, new CreationBirthCause());
+		changeEnergy(energy, CREATION_BIRTH_CAUSE);
 	}
 
 	public void setController(Controller c) {
@@ -228,7 +399,7 @@ public class ComplexAgent extends Agent {
 
 		environment.getPlugin(PacketConduit.class).addPacketToList(new EnthusiasticBroadcast(getPosition(),this));
 
-		changeEnergy(-params.enthusiasticEnergyCost.getValue(), new BroadcastBreedCause());
+		changeEnergy(-params.enthusiasticEnergyCost.getValue(), BROADCAST_BREED_CAUSE);
 	}
 
 	/**
@@ -287,7 +458,7 @@ public class ComplexAgent extends Agent {
 	}
 
 	public boolean isAgentGood(ComplexAgent other) {
-		if (!badAgentMemory.contains(other))
+		if (!badAgentMemory.contains(other.id))
 			return true;
 
 		// Refresh memory
@@ -308,7 +479,7 @@ public class ComplexAgent extends Agent {
 	public void die() {
 		super.die();
 
-		changeEnergy(Math.min(0, -getEnergy()), new DeathCause());
+		changeEnergy(Math.min(0, -getEnergy()), DEATH_CAUSE);
 
 		getAgentListener().onDeath(this);
 
@@ -316,6 +487,7 @@ public class ComplexAgent extends Agent {
 
 		// Release references to other agents
 		badAgentMemory.clear();
+		setBreedPartner(null);
 	}
 
 	/**
@@ -331,9 +503,9 @@ public class ComplexAgent extends Agent {
 		environment.removeFood(destPos);
 		// Gain Energy according to the food type.
 		if (foodType == getType()) {
-			changeEnergy(+params.foodEnergy.getValue(), new EatFavoriteFoodCause());
+			changeEnergy(+params.foodEnergy.getValue(), EAT_FAVORITE_FOOD_CAUSE);
 		} else {
-			changeEnergy(+params.otherFoodEnergy.getValue(), new EatFoodCause());
+			changeEnergy(+params.otherFoodEnergy.getValue(), EAT_FOOD_CAUSE);
 		}
 		getAgentListener().onConsumeFood(this, foodType);
 	}
@@ -346,7 +518,7 @@ public class ComplexAgent extends Agent {
 	 */
 	protected void eat(ComplexAgent adjacentAgent) {
 		int gain = (int) (adjacentAgent.getEnergy() * params.agentFoodEnergy.getValue());
-		changeEnergy(+gain, new EatAgentCause());
+		changeEnergy(+gain, EAT_AGENT_CAUSE);
 		getAgentListener().onConsumeAgent(this, adjacentAgent);
 		adjacentAgent.die();
 	}
@@ -366,11 +538,12 @@ public class ComplexAgent extends Agent {
 	}
 
 	protected Agent getAdjacentAgent() {
-		Location destPos = environment.topology.getAdjacent(getPosition());
-		if (destPos == null) {
+		LocationDirection position = getPosition();
+		int destIndex = environment.topology.getAdjacentIndex(environment.topology.getIndex(position), position.direction);
+		if (destIndex == -1) {
 			return null;
 		}
-		return environment.getAgent(destPos);
+		return environment.getAgent(destIndex);
 	}
 
 	public long getAge() {
@@ -401,22 +574,24 @@ public class ComplexAgent extends Agent {
 			return;
 
 		// Moves cheater to the more recent end of memory
-		badAgentMemory.remove(cheater);
-		badAgentMemory.add(cheater);
+		badAgentMemory.remove(cheater.id);
+		badAgentMemory.add(cheater.id);
 	}
 
 	public void move(LocationDirection newPos) {
 		LocationDirection oldPos = getPosition();
 
-		if (oldPos != null && newPos != null)
-			newPos = getAgentListener().onTryStep(this, oldPos, newPos);
-
-		if (oldPos != null)
-			environment.setAgent(oldPos, null);
+		AgentListener listener = getAgentListener();
+		if (oldPos != null && newPos != null && listener.hasLocationListeners())
+			newPos = listener.onTryStep(this, oldPos, newPos);
 
+		// Occupy the new cell before leaving the old one so the agent stays listed in the environment
 		if (newPos != null)
 			environment.setAgent(newPos, this);
 
+		if (oldPos != null && (newPos == null || !oldPos.equals(newPos)))
+			environment.setAgent(oldPos, null);
+
 		getAgentListener().onStep(this, oldPos, newPos);
 		position = newPos;
 	}
@@ -461,21 +636,147 @@ public class ComplexAgent extends Agent {
 
 	/**
 	 * Sets the complex agents parameters.
+	 * The agent shares agentData until something needs to modify its parameters.
 	 *
 	 * @param agentData The ComplexAgentParams used for this complex agent.
+	 * @see #getPrivateParams()
 	 */
 	public void setParams(ComplexAgentParams agentData) {
+		this.params = agentData;
+		privateParams = false;
 
-		this.params = agentData.clone();
+		if (badAgentMemory == null || badAgentMemory.maxSize() != params.pdMemory)
+			badAgentMemory = new CircularFifoQueue<Integer>(params.pdMemory);
+		else
+			badAgentMemory.clear();
 
-		badAgentMemory = new CircularFifoQueue<Agent>(params.pdMemory);
+	}
 
+	/**
+	 * Gives the agent its own copy of its parameters the first time it is called, so they can be
+	 * modified without affecting other agents.
+	 *
+	 * @return parameters of this agent only
+	 */
+	public ComplexAgentParams getPrivateParams() {
+		if (!privateParams) {
+			if (recycledParams != null && recycledParams.getClass() == params.getClass()) {
+				CloneHelper.copyInto(params, recycledParams);
+				params = recycledParams;
+			} else {
+				params = params.clone();
+			}
+			recycledParams = null;
+			privateParams = true;
+		}
+		return params;
 	}
 
 	public void setMemoryBuffer(double memoryBuffer) {
 		this.memoryBuffer = memoryBuffer;
 	}
 
+	/**
+	 * Writes the state of the agent to a checkpoint, except for its position and breeding partner.
+	 */
+	public void saveState(CheckpointWriter out) throws IOException {
+		out.writeInt(id);
+		out.writeBoolean(isAlive());
+		out.writeInt(getEnergy());
+
+		out.writeBoolean(privateParams);
+		if (privateParams)
+			out.getParameters().write(params, out);
+		else
+			out.getParameters().writeInstance(params, out);
+
+		out.writeDouble(commInbox);
+		out.writeDouble(commOutbox);
+		out.writeDouble(memoryBuffer);
+		out.writeInt(badAgentMemory.maxSize());
+		out.writeInt(badAgentMemory.size());
+		for (Integer badAgent : badAgentMemory)
+			out.writeInt(badAgent);
+
+		out.writeBoolean(shouldReproduceAsex);
+		out.writeInt(pregPeriod);
+		out.writeBoolean(pregnant);
+		out.writeLong(birthTick);
+		out.writeFloat(currentActionPoints);
+		out.writeInt(stop_count);
+
+		controller.saveState(out);
+
+		// Transient states are made again by the plugins
+		int saved = 0;
+		for (AgentState state : states) {
+			if (state != null && !state.isTransient())
+				saved++;
+		}
+		out.writeInt(saved);
+		for (AgentState state : states) {
+			if (state != null && !state.isTransient())
+				out.getParameters().writeInstance(state, out);
+		}
+	}
+
+	/**
+	 * Reads the state written by saveState() into an agent of the same type, created with the
+	 * controller the simulation gives new agents.
+	 */
+	public void loadState(CheckpointReader in) throws IOException {
+		id = in.readInt();
+		boolean alive = in.readBoolean();
+		int energy = in.readInt();
+		restore(energy, alive);
+
+		privateParams = in.readBoolean();
+		if (privateParams)
+			params = in.getParameters().read(environment.agentData[getType()].clone(), in);
+		else
+			params = in.getParameters().readInstance(ComplexAgentParams.class, in);
+
+		commInbox = in.readDouble();
+		commOutbox = in.readDouble();
+		memoryBuffer = in.readDouble();
+		int memorySize = in.readInt();
+		if (badAgentMemory == null || badAgentMemory.maxSize() != memorySize)
+			badAgentMemory = new CircularFifoQueue<Integer>(memorySize);
+		else
+			badAgentMemory.clear();
+		for (int i = in.readInt(); i > 0; i--)
+			badAgentMemory.add(in.readInt());
+
+		shouldReproduceAsex = in.readBoolean();
+		pregPeriod = in.readInt();
+		pregnant = in.readBoolean();
+		birthTick = in.readLong();
+		currentActionPoints = in.readFloat();
+		stop_count = in.readInt();
+
+		controller.loadState(in);
+
+		for (int slot = 0; slot < states.length; slot++) {
+			if (states[slot] != null && !states[slot].isTransient())
+				states[slot] = null;
+		}
+		for (int i = in.readInt(); i > 0; i--) {
+			AgentState state = in.getParameters().readInstance(AgentState.class, in);
+			setState(AgentStateSlots.getSlot(state.getClass()), state);
+		}
+	}
+
+	/**
+	 * Writes the agent this agent is pregnant by, once all live agents are in the checkpoint.
+	 */
+	public void saveBreedPartner(CheckpointWriter out) throws IOException {
+		out.writeAgent(breedPartner);
+	}
+
+	public void loadBreedPartner(CheckpointReader in) throws IOException {
+		setBreedPartner(in.readAgent());
+	}
+
 	/**
 	 * During a step, the agent can encounter four different circumstances:
 	 * 1. Nothing is in its way.
@@ -536,7 +837,7 @@ public class ComplexAgent extends Agent {
 		} // end of two agents meet
 		else {
 			// Non-free tile (rock/waste/etc) bump
-			changeEnergy(-params.stepRockEnergy.getValue(), new BumpWallCause());
+			changeEnergy(-params.stepRockEnergy.getValue(), BUMP_WALL_CAUSE);
 		}
 		applyAgePenalty();
 
@@ -549,7 +850,7 @@ public class ComplexAgent extends Agent {
 			}
 			else {
 				// can't step, treat as obstacle
-				changeEnergy(-params.stepRockEnergy.getValue(), new BumpWallCause());
+				changeEnergy(-params.stepRockEnergy.getValue(), BUMP_WALL_CAUSE);
 			}
 		}
 
@@ -558,7 +859,7 @@ public class ComplexAgent extends Agent {
 
 		if (!enoughEnergy(params.breedEnergy.getValue())) {
 			pregnant = false;
-			breedPartner = null;
+			setBreedPartner(null);
 		}
 
 		if (canBroadcastBreed()) {
@@ -576,7 +877,7 @@ public class ComplexAgent extends Agent {
 		// Check for food...
 		if (environment.hasFood(destPos)) {
 			if (canBroadcast()) {
-				broadcast(new FoodBroadcast(destPos, this), new BroadcastFoodCause());
+				broadcast(new FoodBroadcast(destPos, this), BROADCAST_FOOD_CAUSE);
 			}
 			if (canEat(destPos)) {
 				eat(destPos);
@@ -598,72 +899,59 @@ public class ComplexAgent extends Agent {
 			ReproductionCause cause = null;
 			if (breedPartner == null) {
 				child = createChildAsexual(breedPos);
-				cause = new AsexualReproductionCause();
+				cause = ASEXUAL_REPRODUCTION_CAUSE;
 			} else {
 				child = createChildSexual(breedPos, breedPartner);
-				cause = new SexualReproductionCause();
+				cause = SEXUAL_REPRODUCTION_CAUSE;
 			}
 			changeEnergy(-params.initEnergy.getValue(), cause);
 			applyAgePenalty();
-			breedPartner = null;
+			setBreedPartner(null);
 			pregnant = false;
 
 		}
-		changeEnergy(-params.stepEnergy.getValue(), new StepForwardCause());
+		changeEnergy(-params.stepEnergy.getValue(), STEP_FORWARD_CAUSE);
 
 		// splitting functionality
 		boolean canSplit = enoughEnergy(params.splitEnergyThreshold.getValue()) && params.splitChance.getValue() != 0.0
 				&& getRandom().nextFloat() < params.splitChance.getValue();
 		if(canSplit)
 		{
-			String splitRatioStr = params.splitEnergyRatio;
+			// Parsed and checked when the simulation was loaded
+			double[][] splitRatios = params.getSplitRatios();
+			double[] ratios = params.isSplitRatioTable()
+					? splitRatios[getRandom().nextIntRange(0, splitRatios.length)]
+					: splitRatios[0];
 
-			JSONParser jsonParser = new JSONParser();
-			JSONArray jsonArray = null;
-			JSONArray ratioArray = null;
+			LocationDirection currLocation = destPos;
+			int curr_energy = getEnergy();
 
-			try {
-				jsonArray = (JSONArray) jsonParser.parse(splitRatioStr);
+			for(int i = 0; i < ratios.length; i++)
+			{
+				double ratio = ratios[i];
+				int delta = 0;
 
-				if(jsonArray.get(0) instanceof JSONArray) // We have a 2D array
+				if(i == 0) // the original agent
 				{
-					ratioArray = (JSONArray) jsonArray.get(getRandom().nextIntRange(0, jsonArray.size()));
+					delta = curr_energy - (int) Math.round(curr_energy * ratio);
+					changeEnergy(-delta, SPLIT_REPRODUCTION_CAUSE);
 				}
-				else
-					ratioArray = jsonArray;
-
-				LocationDirection currLocation = destPos;
-				int curr_energy = getEnergy();
-
-				for(int i = 0; i < ratioArray.size(); i++)
+				else // the split child
 				{
-					double ratio = (Double) ratioArray.get(i);
-					int delta = 0;
-
-					if(i == 0) // the original agent
-					{
-						delta = curr_energy - (int) Math.round(curr_energy * ratio);
-						changeEnergy(-delta, new SplitReproductionCause());
-					}
-					else // the split child
-					{
-						currLocation = environment.topology.getAdjacent(currLocation);
-						ComplexAgent child = createChildSplit(currLocation);
-						delta = child.getEnergy() - (int) Math.round(curr_energy * ratio);
-						child.changeEnergy(-delta, new SplitBirthCause());
-					}
+					currLocation = environment.topology.getAdjacent(currLocation);
+					if (currLocation == null) // reached the edge of a map that does not wrap
+						break;
+					ComplexAgent child = createChildSplit(currLocation);
+					delta = child.getEnergy() - (int) Math.round(curr_energy * ratio);
+					child.changeEnergy(-delta, SPLIT_BIRTH_CAUSE);
 				}
-
-			} catch (Exception ex) {
-				//new RuntimeException(ex);
-				ex.printStackTrace();
 			}
 		}
 	}
 
 	protected void onstepAgentBump(ComplexAgent adjacentAgent) {
 		getAgentListener().onContact(this, adjacentAgent);
-		changeEnergy(-params.stepAgentEnergy.getValue(), new BumpAgentCause());
+		changeEnergy(-params.stepAgentEnergy.getValue(), BUMP_AGENT_CAUSE);
 
 		if (canEat(adjacentAgent)) {
 			eat(adjacentAgent);
@@ -691,7 +979,7 @@ public class ComplexAgent extends Agent {
 					&& isAgentGood(adjacentAgent) && adjacentAgent.isAgentGood(this)) {
 				pregnant = true;
 				pregPeriod = params.sexualPregnancyPeriod.getValue();
-				breedPartner = adjacentAgent;
+				setBreedPartner(adjacentAgent);
 			}
 		}
 	}
@@ -765,7 +1053,7 @@ public class ComplexAgent extends Agent {
 	public void turnLeft() {
 		stop_count++;
 		position = environment.topology.getTurnLeftPosition(position);
-		changeEnergy(-params.turnLeftEnergy.getValue(), new TurnLeftCause());
+		changeEnergy(-params.turnLeftEnergy.getValue(), TURN_LEFT_CAUSE);
 		afterTurnAction();
 	}
 
@@ -777,7 +1065,7 @@ public class ComplexAgent extends Agent {
 	public void turnRight() {
 		stop_count++;
 		position = environment.topology.getTurnRightPosition(position);
-		changeEnergy(-params.turnRightEnergy.getValue(), new TurnRightCause());
+		changeEnergy(-params.turnRightEnergy.getValue(), TURN_RIGHT_CAUSE);
 		afterTurnAction();
 	}
 
@@ -793,13 +1081,15 @@ public class ComplexAgent extends Agent {
 	protected void applyAgePenalty() {
 		int penalty = energyPenalty();
 		if (penalty > 0)
-			changeEnergy(-penalty, new AgingPenaltyCause());
+			changeEnergy(-penalty, AGING_PENALTY_CAUSE);
 	}
 
 	@Override
 	public void changeEnergy(int delta, Cause cause) {
 		super.changeEnergy(delta, cause);
-		getAgentListener().onEnergyChange(this, delta, cause);
+		AgentListener listener = getAgentListener();
+		if (listener.hasEnergyListeners())
+			listener.onEnergyChange(this, delta, cause);
 	}
 
 	public static class MovementCause implements Cause {
@@ -10,6 +10,9 @@ import org.cobweb.io.ConfXMLTag;
 import org.cobweb.util.CloneHelper;
 import org.cobweb.util.MutatableFloat;
 import org.cobweb.util.MutatableInt;
+import org.json.simple.JSONArray;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
 
 /**
  * Parameters for ComplexAgent.
@@ -306,6 +309,16 @@ public class ComplexAgentParams implements ResizableParam {
 	@ConfXMLTag("SplitEnergyRatio")
 	public String splitEnergyRatio = "[0.5, 0.5]";
 
+	/**
+	 * splitEnergyRatio parsed by getSplitRatios(), and the string it was parsed from.
+	 */
+	private transient double[][] splitRatios;
+	private transient String splitRatiosSource;
+	/**
+	 * Whether splitEnergyRatio is an array of rows rather than a single row.
+	 */
+	private transient boolean splitRatiosTable;
+
 	/**
 	 * Agent's food web parameters.
 	 */
@@ -327,6 +340,77 @@ public class ComplexAgentParams implements ResizableParam {
 		}
 	}
 
+	/**
+	 * Gets the energy split ratios, parsing splitEnergyRatio if it changed since the last call.
+	 * A row lists the fraction of energy the splitting agent keeps, followed by the fraction each
+	 * child gets. splitEnergyRatio is either a single row or an array of rows to pick from at random.
+	 *
+	 * @return rows of split ratios, a single row if splitEnergyRatio is one
+	 * @throws IllegalArgumentException if splitEnergyRatio is not a valid ratio array
+	 */
+	public double[][] getSplitRatios() {
+		String source = splitEnergyRatio;
+		if (source != splitRatiosSource) {
+			JSONArray array = parseRatioArray(source);
+			splitRatios = parseSplitRatios(array, source);
+			splitRatiosTable = array.get(0) instanceof JSONArray;
+			splitRatiosSource = source;
+		}
+		return splitRatios;
+	}
+
+	/**
+	 * Checks whether splitEnergyRatio is an array of rows. A row is then picked at random on
+	 * every split, even when there is only one.
+	 *
+	 * @throws IllegalArgumentException if splitEnergyRatio is not a valid ratio array
+	 */
+	public boolean isSplitRatioTable() {
+		getSplitRatios();
+		return splitRatiosTable;
+	}
+
+	private static JSONArray parseRatioArray(String source) {
+		Object parsed;
+		try {
+			parsed = new JSONParser().parse(source);
+		} catch (ParseException ex) {
+			throw new IllegalArgumentException("Split energy ratio is not a valid array: " + source, ex);
+		}
+		if (!(parsed instanceof JSONArray) || ((JSONArray) parsed).isEmpty())
+			throw new IllegalArgumentException("Split energy ratio must be a non-empty array: " + source);
+		return (JSONArray) parsed;
+	}
+
+	private static double[][] parseSplitRatios(JSONArray array, String source) {
+		if (!(array.get(0) instanceof JSONArray))
+			return new double[][] { parseRatioRow(array, source) };
+
+		double[][] result = new double[array.size()][];
+		for (int i = 0; i < result.length; i++) {
+			if (!(array.get(i) instanceof JSONArray))
+				throw new IllegalArgumentException("Split energy ratio mixes numbers and arrays: " + source);
+			result[i] = parseRatioRow((JSONArray) array.get(i), source);
+		}
+		return result;
+	}
+
+	private static double[] parseRatioRow(JSONArray row, String source) {
+		if (row.isEmpty())
+			throw new IllegalArgumentException("Split energy ratio contains an empty array: " + source);
+
+		double[] result = new double[row.size()];
+		for (int i = 0; i < result.length; i++) {
+			Object value = row.get(i);
+			if (!(value instanceof Number))
+				throw new IllegalArgumentException("Split energy ratio contains something other than a number: " + source);
+			result[i] = ((Number) value).doubleValue();
+			if (Double.isNaN(result[i]) || Double.isInfinite(result[i]) || result[i] < 0)
+				throw new IllegalArgumentException("Split energy ratio contains a ratio that is not a positive number: " + source);
+		}
+		return result;
+	}
+
 	@Override
 	public void resize(AgentFoodCountable envParams) {
 		foodweb.resize(envParams);
@@ -57,6 +57,13 @@ public class ComplexEnvironment extends Environment {
 	public synchronized void setParams(ComplexEnvironmentParams envParams, AgentParams agentParams, boolean keepOldAgents, boolean keepOldArray, boolean keepOldDrops) throws IllegalArgumentException {
 		data = envParams;
 		agentData = agentParams.agentParams;
+		for (int i = 0; i < agentData.length; i++) {
+			try {
+				agentData[i].getSplitRatios();
+			} catch (IllegalArgumentException ex) {
+				throw new IllegalArgumentException("Agent type " + (i + 1) + ": " + ex.getMessage(), ex);
+			}
+		}
 
 		super.load(data.width, data.height, data.wrapMap, data.wrapMapX, data.wrapMapY, keepOldArray);
 
@@ -66,7 +73,7 @@ public class ComplexEnvironment extends Environment {
 			loadOldAgents();
 		} else {
 			// do not call clearAgents(), it invokes mutators, etc
-			agentTable.clear();
+			clearAgentGrid();
 		}
 
 		if (!keepOldDrops) {
@@ -130,15 +137,10 @@ public class ComplexEnvironment extends Environment {
 		// Add in-bounds old agents to the new scheduler and update new
 		// constants
 		// TODO: a way to keep old parameters for old agents?
-		for (int x = 0; x < topology.width; ++x) {
-			for (int y = 0; y < topology.height; ++y) {
-				Location currentPos = new Location(x, y);
-				ComplexAgent agent = (ComplexAgent) getAgent(currentPos);
-				if (agent != null) {
-					int theType = agent.getType();
-					agent.setParams(agentData[theType]);
-				}
-			}
+		for (Agent a : getAgents()) {
+			ComplexAgent agent = (ComplexAgent) a;
+			int theType = agent.getType();
+			agent.setParams(agentData[theType]);
 		}
 	}
 
@@ -174,14 +176,12 @@ public class ComplexEnvironment extends Environment {
 	 *
 	 */
 	private void updateDrops() {
-		for (int x = 0; x < topology.width; x++) {
-			for (int y = 0; y < topology.height; y++) {
-				Location l = new Location(x, y);
-				if (!hasDrop(l))
-					continue;
-				Drop d = getDrop(l);
-				d.update();
-			}
+		int cells = topology.width * topology.height;
+		for (int i = 0; i < cells; i++) {
+			if (!hasDrop(i))
+				continue;
+			Drop d = getDrop(i);
+			d.update();
 		}
 	}
 }
@@ -1,8 +1,11 @@
 package org.cobweb.cobweb2.impl.ai;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Random;
 
+import org.cobweb.io.CheckpointInput;
+import org.cobweb.io.CheckpointOutput;
 import org.cobweb.util.BitField;
 import org.cobweb.util.RandomNoGenerator;
 
@@ -129,21 +132,48 @@ public class BehaviorArray {
 	 * @return mutated copy of BehaviorArray
 	 */
 	public BehaviorArray copy(float mutationRate, Random rand) {
-		BehaviorArray newArray = new BehaviorArray(this);
+		return copy(mutationRate, rand, null);
+	}
+
+	/**
+	 * Same as copy(mutationRate, rand), but writes the copy into reuse when it has the same size.
+	 * @param reuse array that is no longer needed, or null
+	 * @return mutated copy of BehaviorArray
+	 */
+	public BehaviorArray copy(float mutationRate, Random rand, BehaviorArray reuse) {
+		BehaviorArray newArray;
+		if (hasSameShape(reuse)) {
+			newArray = reuse;
+			System.arraycopy(array, 0, newArray.array, 0, array.length);
+		} else {
+			newArray = new BehaviorArray(this);
+		}
+		newArray.mutate(mutationRate, rand);
+		return newArray;
+	}
 
-		double avgFlips = newArray.totalBits * mutationRate;
+	/**
+	 * Inverts mutationRate fraction of bits
+	 */
+	private void mutate(float mutationRate, Random rand) {
+		double avgFlips = totalBits * mutationRate;
 		int wantFlips = (int) (rand.nextGaussian() * 0.1 * avgFlips + avgFlips);
 		if (wantFlips < 0)
 			wantFlips = 0;
 
 		for (int i = 0; i < wantFlips; i++) {
-			int target = rand.nextInt(newArray.totalBits);
+			int target = rand.nextInt(totalBits);
 			int targetElement = target / 32;
 			int targetBit = target % 32;
-			newArray.array[targetElement] ^= (1 << targetBit);
+			array[targetElement] ^= (1 << targetBit);
 		}
+	}
 
-		return newArray;
+	/**
+	 * @return true if other stores the same number of input and output bits, so its bits can be replaced with these
+	 */
+	private boolean hasSameShape(BehaviorArray other) {
+		return other != null && other.inputSize == inputSize && Arrays.equals(other.outputSize, outputSize);
 	}
 
 	int get(int index) {
@@ -242,6 +272,20 @@ public class BehaviorArray {
 		array[base + 1] = (int) (buff >>> 32);
 	}
 
+	public void saveState(CheckpointOutput out) throws IOException {
+		out.writeIntArray(array);
+	}
+
+	/**
+	 * Loads the bits saved by saveState() from an array of the same size.
+	 */
+	public void loadState(CheckpointInput in) throws IOException {
+		int[] saved = in.readIntArray();
+		if (saved.length != array.length)
+			throw new IOException("Saved behavior array has a different size");
+		System.arraycopy(saved, 0, array, 0, array.length);
+	}
+
 	public double similarity(BehaviorArray other) {
 
 		double total = 0;
@@ -284,4 +328,28 @@ public class BehaviorArray {
 		return newBArray;
 	}
 
+	/**
+	 * Same as splice(first, BOther, random).copy(mutationRate, random, reuse), without the
+	 * intermediate array.
+	 *
+	 * @param reuse array that is no longer needed, or null
+	 * @return mutated splice of the two arrays
+	 */
+	public static BehaviorArray spliceCopy(BehaviorArray first, BehaviorArray BOther, float mutationRate, Random random, BehaviorArray reuse) {
+		BehaviorArray newBArray;
+		if (first.hasSameShape(reuse)) {
+			newBArray = reuse;
+			System.arraycopy(first.array, 0, newBArray.array, 0, first.array.length);
+		} else {
+			newBArray = new BehaviorArray(first);
+		}
+
+		for (int i = 0; i < first.size; ++i) {
+			newBArray.set(i, random.nextBoolean() ? BOther.get(i) : newBArray.get(i));
+		}
+
+		newBArray.mutate(mutationRate, random);
+		return newBArray;
+	}
+
 }
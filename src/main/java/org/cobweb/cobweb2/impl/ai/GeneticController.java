@@ -1,5 +1,6 @@
 package org.cobweb.cobweb2.impl.ai;
 
+import java.io.IOException;
 import java.util.Map.Entry;
 
 import org.cobweb.cobweb2.core.Agent;
@@ -12,6 +13,8 @@ import org.cobweb.cobweb2.core.Topology;
 import org.cobweb.cobweb2.impl.ComplexAgent;
 import org.cobweb.cobweb2.plugins.vision.SeeInfo;
 import org.cobweb.cobweb2.plugins.vision.VisionState;
+import org.cobweb.io.CheckpointInput;
+import org.cobweb.io.CheckpointOutput;
 import org.cobweb.util.BitField;
 
 /**
@@ -36,7 +39,7 @@ public class GeneticController implements Controller {
 
 	private static final int ENERGY_THRESHOLD = 160;
 
-	private final GeneticStateAgentParams params;
+	private GeneticStateAgentParams params;
 
 	private SimulationInternals simulation;
 
@@ -64,9 +67,19 @@ public class GeneticController implements Controller {
 	protected GeneticController(GeneticController parent1, GeneticController parent2) {
 		simulation = parent1.simulation;
 		params = parent1.params;
-		ga = BehaviorArray
-				.splice(parent1.ga, parent2.ga, simulation.getRandom())
-				.copy(params.mutationRate, simulation.getRandom());
+		ga = BehaviorArray.spliceCopy(parent1.ga, parent2.ga, params.mutationRate, simulation.getRandom(), null);
+	}
+
+	/**
+	 * @return recycled controller set up with the parameters of this one, or null if it cannot be reused
+	 */
+	private GeneticController reuse(Controller recycled) {
+		if (recycled == null || recycled.getClass() != GeneticController.class)
+			return null;
+		GeneticController child = (GeneticController) recycled;
+		child.simulation = simulation;
+		child.params = params;
+		return child;
 	}
 
 	/**
@@ -207,22 +220,40 @@ public class GeneticController implements Controller {
 	}
 
 	@Override
-	public GeneticController createChildAsexual() {
-		GeneticController child = new GeneticController(this);
+	public GeneticController createChildAsexual(Controller recycled) {
+		GeneticController child = reuse(recycled);
+		if (child == null)
+			return new GeneticController(this);
+
+		child.ga = ga.copy(params.mutationRate, simulation.getRandom(), child.ga);
 		return child;
 	}
 
 	@Override
-	public GeneticController createChildSexual(Controller parent2) {
+	public GeneticController createChildSexual(Controller parent2, Controller recycled) {
 		if (!(parent2 instanceof GeneticController)) {
 			throw new RuntimeException("Parent's controller type must match the child's");
 		}
 		GeneticController p2 = (GeneticController) parent2;
 
-		GeneticController child = new GeneticController(this, p2);
+		GeneticController child = reuse(recycled);
+		if (child == null)
+			return new GeneticController(this, p2);
+
+		child.ga = BehaviorArray.spliceCopy(ga, p2.ga, params.mutationRate, simulation.getRandom(), child.ga);
 		return child;
 	}
 
+	@Override
+	public void saveState(CheckpointOutput out) throws IOException {
+		ga.saveState(out);
+	}
+
+	@Override
+	public void loadState(CheckpointInput in) throws IOException {
+		ga.loadState(in);
+	}
+
 	/** return the measure of similiarity between this agent and the 'other'
 	 ranging from 0.0 to 1.0 (identical)
 
@@ -1,5 +1,7 @@
 package org.cobweb.cobweb2.impl.ai;
 
+import java.io.IOException;
+
 import org.cobweb.cobweb2.core.Agent;
 import org.cobweb.cobweb2.core.Controller;
 import org.cobweb.cobweb2.core.ControllerInput;
@@ -11,6 +13,8 @@ import org.cobweb.cobweb2.core.Topology;
 import org.cobweb.cobweb2.impl.ComplexAgent;
 import org.cobweb.cobweb2.plugins.vision.SeeInfo;
 import org.cobweb.cobweb2.plugins.vision.VisionState;
+import org.cobweb.io.CheckpointInput;
+import org.cobweb.io.CheckpointOutput;
 import org.cobweb.util.ArrayUtilities;
 
 public class LinearWeightsController implements Controller {
@@ -184,13 +188,13 @@ public class LinearWeightsController implements Controller {
 	}
 
 	@Override
-	public LinearWeightsController createChildAsexual() {
+	public LinearWeightsController createChildAsexual(Controller recycled) {
 		LinearWeightsController child = new LinearWeightsController(this);
 		return child;
 	}
 
 	@Override
-	public LinearWeightsController createChildSexual(Controller p2) {
+	public LinearWeightsController createChildSexual(Controller p2, Controller recycled) {
 		if (!(p2 instanceof LinearWeightsController)) {
 			throw new RuntimeException("Parent's controller type must match the child's");
 		}
@@ -200,6 +204,23 @@ public class LinearWeightsController implements Controller {
 		return child;
 	}
 
+	@Override
+	public void saveState(CheckpointOutput out) throws IOException {
+		out.writeInt(data.length);
+		for (double[] row : data)
+			out.writeDoubleArray(row);
+	}
+
+	@Override
+	public void loadState(CheckpointInput in) throws IOException {
+		double[][] saved = new double[in.readInt()][];
+		if (saved.length != data.length)
+			throw new IOException("Saved weights have a different size");
+		for (int i = 0; i < saved.length; i++)
+			saved[i] = in.readDoubleArray();
+		data = saved;
+	}
+
 	public double similarity(LinearWeightsController other) {
 		int diff = 0;
 		for (int i = 0; i < data.length; i++) {
@@ -1,5 +1,7 @@
 package org.cobweb.cobweb2.impl.ai;
 
+import java.io.IOException;
+
 import org.cobweb.cobweb2.Simulation;
 import org.cobweb.cobweb2.core.Agent;
 import org.cobweb.cobweb2.core.Controller;
@@ -12,6 +14,8 @@ import org.cobweb.cobweb2.core.Topology;
 import org.cobweb.cobweb2.impl.ComplexAgent;
 import org.cobweb.cobweb2.plugins.vision.SeeInfo;
 import org.cobweb.cobweb2.plugins.vision.VisionState;
+import org.cobweb.io.CheckpointInput;
+import org.cobweb.io.CheckpointOutput;
 import org.cobweb.util.BitField;
 
 /**
@@ -439,13 +443,13 @@ public class SwarmController implements Controller {
 	}
 
 	@Override
-	public SwarmController createChildAsexual() {
+	public SwarmController createChildAsexual(Controller recycled) {
 		SwarmController child = new SwarmController(this);
 		return child;
 	}
 
 	@Override
-	public SwarmController createChildSexual(Controller parent2) {
+	public SwarmController createChildSexual(Controller parent2, Controller recycled) {
 		if (!(parent2 instanceof SwarmController)) {
 			throw new RuntimeException("Parent's controller type must match the child's");
 		}
@@ -455,6 +459,16 @@ public class SwarmController implements Controller {
 		return child;
 	}
 
+	@Override
+	public void saveState(CheckpointOutput out) throws IOException {
+		ga.saveState(out);
+	}
+
+	@Override
+	public void loadState(CheckpointInput in) throws IOException {
+		ga.loadState(in);
+	}
+
 	/** return the measure of similiarity between this agent and the 'other'
 	 ranging from 0.0 to 1.0 (identical)
 
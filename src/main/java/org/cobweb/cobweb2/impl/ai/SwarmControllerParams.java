@@ -17,12 +17,9 @@ public class SwarmControllerParams extends PerAgentParams<SwarmStateAgentParams>
 
 	private final transient SimulationParams simParam;
 
-	public static int agent_type_count = 0;
-
 	public SwarmControllerParams(SimulationParams simParams) {
 		super(SwarmStateAgentParams.class);
 		this.simParam = simParams;
-		agent_type_count = simParam.getAgentTypes();
 		resize(simParams);
 	}
 
@@ -39,7 +36,7 @@ public class SwarmControllerParams extends PerAgentParams<SwarmStateAgentParams>
 
 	@Override
 	public Controller createController(SimulationInternals sim, int agent_type) {
-		SwarmController controller = new SwarmController(sim, agentParams[agent_type], agent_type_count);
+		SwarmController controller = new SwarmController(sim, agentParams[agent_type], simParam.getAgentTypes());
 		return controller;
 	}
 
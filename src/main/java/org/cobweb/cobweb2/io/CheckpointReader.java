@@ -0,0 +1,94 @@
+package org.cobweb.cobweb2.io;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.core.Direction;
+import org.cobweb.cobweb2.core.Location;
+import org.cobweb.cobweb2.core.LocationDirection;
+import org.cobweb.cobweb2.impl.ComplexAgent;
+import org.cobweb.io.BinaryParameterSerializer;
+import org.cobweb.io.CheckpointInput;
+
+/**
+ * Reads a checkpoint written by CheckpointWriter into a simulation.
+ */
+public class CheckpointReader extends CheckpointInput {
+
+	private final BinaryParameterSerializer parameters = new BinaryParameterSerializer(new Cobweb2Serializer().choiceCatalog);
+
+	private final List<ComplexAgent> agents = new ArrayList<>();
+
+	private Simulation simulation;
+
+	/**
+	 * @throws IOException when the checkpoint was written by a different version of the format
+	 */
+	public CheckpointReader(ReadableByteChannel channel) throws IOException {
+		super(channel);
+		if (getVersion() != CheckpointWriter.VERSION)
+			throw new IOException("Checkpoint version " + getVersion() + " is not supported, expected version " + CheckpointWriter.VERSION);
+	}
+
+	/**
+	 * Sets the simulation agents are restored into, once it is loaded with the configuration
+	 * stored at the start of the checkpoint.
+	 */
+	public void setSimulation(Simulation simulation) {
+		this.simulation = simulation;
+		parameters.addShared(simulation.simulationConfig);
+	}
+
+	public BinaryParameterSerializer getParameters() {
+		return parameters;
+	}
+
+	public Location readLocation() throws IOException {
+		int x = readInt();
+		int y = readInt();
+		return new Location(x, y);
+	}
+
+	public LocationDirection readLocationDirection() throws IOException {
+		Location location = readLocation();
+		int dx = readInt();
+		int dy = readInt();
+		return new LocationDirection(location, new Direction(dx, dy));
+	}
+
+	/**
+	 * Gives the agent the next reference number, see CheckpointWriter.addAgent().
+	 */
+	public void addAgent(ComplexAgent agent) {
+		agents.add(agent);
+	}
+
+	/**
+	 * Reads a reference written by CheckpointWriter.writeAgent(). Agents written in full are
+	 * created outside of the environment, as they were dead when the checkpoint was written.
+	 */
+	public ComplexAgent readAgent() throws IOException {
+		int index = readInt();
+		if (index == CheckpointWriter.NULL_AGENT)
+			return null;
+
+		if (index == CheckpointWriter.NEW_AGENT) {
+			int type = readInt();
+			if (type < 0 || type >= simulation.getAgentTypeCount())
+				throw new IOException("Corrupt checkpoint, bad agent type " + type);
+			ComplexAgent agent = new ComplexAgent(simulation, type);
+			agent.environment = simulation.theEnvironment;
+			agent.setController(simulation.simulationConfig.controllerParams.createController(simulation, type));
+			addAgent(agent);
+			agent.loadState(this);
+			return agent;
+		}
+
+		if (index < 0 || index >= agents.size())
+			throw new IOException("Corrupt checkpoint, unknown agent " + index);
+		return agents.get(index);
+	}
+}
@@ -0,0 +1,85 @@
+package org.cobweb.cobweb2.io;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.cobweb.cobweb2.SimulationConfig;
+import org.cobweb.cobweb2.core.Location;
+import org.cobweb.cobweb2.core.LocationDirection;
+import org.cobweb.cobweb2.impl.ComplexAgent;
+import org.cobweb.io.BinaryParameterSerializer;
+import org.cobweb.io.CheckpointOutput;
+
+/**
+ * Writes the state of a simulation, adding locations and references to agents to the values
+ * CheckpointOutput can write.
+ */
+public class CheckpointWriter extends CheckpointOutput {
+
+	/**
+	 * Version of the checkpoint format, changed whenever the state written changes.
+	 */
+	public static final int VERSION = 3;
+
+	static final int NULL_AGENT = -1;
+	static final int NEW_AGENT = -2;
+
+	private final BinaryParameterSerializer parameters = new BinaryParameterSerializer(new Cobweb2Serializer().choiceCatalog);
+
+	private final Map<ComplexAgent, Integer> agentIndex = new IdentityHashMap<>();
+
+	/**
+	 * @param config configuration of the simulation, parameters shared with it are written as references
+	 */
+	public CheckpointWriter(WritableByteChannel channel, SimulationConfig config, boolean compress) throws IOException {
+		super(channel, VERSION, compress);
+		parameters.addShared(config);
+	}
+
+	public BinaryParameterSerializer getParameters() {
+		return parameters;
+	}
+
+	public void writeLocation(Location location) throws IOException {
+		writeInt(location.x);
+		writeInt(location.y);
+	}
+
+	public void writeLocationDirection(LocationDirection location) throws IOException {
+		writeLocation(location);
+		writeInt(location.direction.x);
+		writeInt(location.direction.y);
+	}
+
+	/**
+	 * Gives the agent the next reference number, before its state is written by the caller.
+	 * CheckpointReader.addAgent() must be called at the same point when reading.
+	 */
+	public void addAgent(ComplexAgent agent) {
+		if (agentIndex.containsKey(agent))
+			throw new IllegalStateException("Agent already written");
+		agentIndex.put(agent, agentIndex.size());
+	}
+
+	/**
+	 * Writes a reference to an agent, which can be null. An agent that was not added before,
+	 * such as a dead agent a broadcast or product still refers to, is written in full.
+	 */
+	public void writeAgent(ComplexAgent agent) throws IOException {
+		if (agent == null) {
+			writeInt(NULL_AGENT);
+			return;
+		}
+		Integer index = agentIndex.get(agent);
+		if (index != null) {
+			writeInt(index);
+			return;
+		}
+		writeInt(NEW_AGENT);
+		writeInt(agent.getType());
+		addAgent(agent);
+		agent.saveState(this);
+	}
+}
@@ -0,0 +1,57 @@
+package org.cobweb.cobweb2.plugins;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns each type of AgentState a small index, so agents can keep plugin states in an array
+ * instead of a map. Slots are shared by all simulations and never change once assigned.
+ */
+public final class AgentStateSlots {
+
+	private static final Map<Class<?>, Integer> slots = new HashMap<>();
+
+	private static volatile Class<?>[] types = new Class<?>[0];
+
+	private static final ClassValue<Integer> slotCache = new ClassValue<Integer>() {
+		@Override
+		protected Integer computeValue(Class<?> type) {
+			return assign(type);
+		}
+	};
+
+	private AgentStateSlots() {
+	}
+
+	/**
+	 * @return slot of the state type, assigning the next free one if the type has none yet
+	 */
+	public static int getSlot(Class<? extends AgentState> type) {
+		return slotCache.get(type);
+	}
+
+	/**
+	 * @return number of slots assigned so far
+	 */
+	public static int count() {
+		return types.length;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static Class<? extends AgentState> getType(int slot) {
+		return (Class<? extends AgentState>) types[slot];
+	}
+
+	private static synchronized int assign(Class<?> type) {
+		Integer slot = slots.get(type);
+		if (slot == null) {
+			slot = types.length;
+			slots.put(type, slot);
+			Class<?>[] newTypes = Arrays.copyOf(types, slot + 1);
+			newTypes[slot] = type;
+			types = newTypes;
+		}
+		return slot;
+	}
+}
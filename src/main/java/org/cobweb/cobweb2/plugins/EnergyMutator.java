@@ -6,5 +6,10 @@ import org.cobweb.cobweb2.core.Cause;
 
 public interface EnergyMutator extends AgentMutator {
 
+	/**
+	 * Called by several threads at once when agents are updated in parallel, without the lock
+	 * other events share. Implementations may only change the state of the agent, which a
+	 * single thread updates at a time, and must guard any other state themselves.
+	 */
 	public void onEnergyChange(Agent agent, int delta, Cause cause);
 }
@@ -4,7 +4,6 @@ import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Random;
 import java.util.Set;
 
 import org.cobweb.cobweb2.core.Agent;
@@ -12,6 +11,7 @@ import org.cobweb.cobweb2.core.AgentListener;
 import org.cobweb.cobweb2.core.Cause;
 import org.cobweb.cobweb2.core.ControllerInput;
 import org.cobweb.cobweb2.core.LocationDirection;
+import org.cobweb.cobweb2.core.RandomSource;
 
 
 public class MutatorListener implements AgentListener {
@@ -28,6 +28,31 @@ public class MutatorListener implements AgentListener {
 	private Set<LocationMutator> locationMutators = new LinkedHashSet<>();
 	private Set<AgentMutator> allMutators = new HashSet<>();
 
+	/*
+	 * The sets above are copied into arrays whenever mutators are added or removed, which only
+	 * happens while a simulation is loading, so dispatching an event does not create iterators.
+	 */
+	private SpawnMutator[] spawnDispatch = new SpawnMutator[0];
+	private ContactMutator[] contactDispatch = new ContactMutator[0];
+	private StepMutator[] stepDispatch = new StepMutator[0];
+	private EnergyMutator[] energyDispatch = new EnergyMutator[0];
+	private UpdateMutator[] updateDispatch = new UpdateMutator[0];
+	private ConsumptionMutator[] consumptionDispatch = new ConsumptionMutator[0];
+	private ControllerInputMutator[] controllerDispatch = new ControllerInputMutator[0];
+	private MoveMutator[] moveDispatch = new MoveMutator[0];
+	private LocationMutator[] locationDispatch = new LocationMutator[0];
+
+	private LocationDirection[] possibleLocations = new LocationDirection[0];
+
+	private final RandomSource randomSource;
+
+	/**
+	 * @param randomSource source of random numbers for choosing between LocationMutators
+	 */
+	public MutatorListener(RandomSource randomSource) {
+		this.randomSource = randomSource;
+	}
+
 	public void addMutator(AgentMutator mutator) {
 		if (mutator instanceof SpawnMutator)
 			spawnMutators.add((SpawnMutator) mutator);
@@ -61,6 +86,7 @@ public class MutatorListener implements AgentListener {
 		}
 
 		allMutators.add(mutator);
+		updateDispatch();
 	}
 
 
@@ -77,6 +103,7 @@ public class MutatorListener implements AgentListener {
 		locationMutators.remove(mutator);
 
 		allMutators.remove(mutator);
+		updateDispatch();
 	}
 
 	public void clearMutators() {
@@ -92,6 +119,20 @@ public class MutatorListener implements AgentListener {
 		locationMutators.clear();
 
 		allMutators.clear();
+		updateDispatch();
+	}
+
+	private void updateDispatch() {
+		spawnDispatch = spawnMutators.toArray(new SpawnMutator[spawnMutators.size()]);
+		contactDispatch = contactMutators.toArray(new ContactMutator[contactMutators.size()]);
+		stepDispatch = stepMutators.toArray(new StepMutator[stepMutators.size()]);
+		energyDispatch = energyMutators.toArray(new EnergyMutator[energyMutators.size()]);
+		updateDispatch = updateMutators.toArray(new UpdateMutator[updateMutators.size()]);
+		consumptionDispatch = consumptionMutators.toArray(new ConsumptionMutator[consumptionMutators.size()]);
+		controllerDispatch = controllerMutators.toArray(new ControllerInputMutator[controllerMutators.size()]);
+		moveDispatch = moveMutators.toArray(new MoveMutator[moveMutators.size()]);
+		locationDispatch = locationMutators.toArray(new LocationMutator[locationMutators.size()]);
+		possibleLocations = new LocationDirection[locationDispatch.length];
 	}
 
 	public <T extends AgentState> boolean supportsState(Class<T> type, T value) {
@@ -105,10 +146,7 @@ public class MutatorListener implements AgentListener {
 
 	@Override
 	public boolean onNextMove(Agent agent) {
-		for (MoveMutator mut : moveMutators) {
-
-			//System.out.println("MoveMutator: " + mut.getClass());
-
+		for (MoveMutator mut : moveDispatch) {
 			if (mut.overrideMove(agent)) {
 				return true;
 			}
@@ -118,95 +156,106 @@ public class MutatorListener implements AgentListener {
 
 	@Override
 	public void onContact(Agent bumper, Agent bumpee) {
-		for (ContactMutator mut : contactMutators) {
+		for (ContactMutator mut : contactDispatch) {
 			mut.onContact(bumper, bumpee);
 		}
 	}
 
 	@Override
 	public void onStep(Agent agent, LocationDirection from, LocationDirection to) {
-		for (StepMutator m : stepMutators) {
-			//System.out.println("StepMutator: " + m.getClass());
+		for (StepMutator m : stepDispatch) {
 			m.onStep(agent, from, to);
 		}
 	}
 
 	@Override
 	public void onSpawn(Agent agent, Agent parent1, Agent parent2) {
-		for (SpawnMutator mutator : spawnMutators) {
+		for (SpawnMutator mutator : spawnDispatch) {
 			mutator.onSpawn(agent, parent1, parent2);
 		}
 	}
 
 	@Override
 	public void onSpawn(Agent agent, Agent parent) {
-		for (SpawnMutator mutator : spawnMutators) {
+		for (SpawnMutator mutator : spawnDispatch) {
 			mutator.onSpawn(agent, parent);
 		}
 	}
 
 	@Override
 	public void onSpawn(Agent agent) {
-		for (SpawnMutator mutator : spawnMutators) {
+		for (SpawnMutator mutator : spawnDispatch) {
 			mutator.onSpawn(agent);
 		}
 	}
 
 	@Override
 	public void onDeath(Agent agent) {
-		for (SpawnMutator mutator : spawnMutators) {
+		for (SpawnMutator mutator : spawnDispatch) {
 			mutator.onDeath(agent);
 		}
 	}
 
 	@Override
 	public void onConsumeAgent(Agent agent, Agent food) {
-		for(ConsumptionMutator mutator : consumptionMutators) {
+		for (ConsumptionMutator mutator : consumptionDispatch) {
 			mutator.onConsumeAgent(agent, food);
 		}
 	}
 
 	@Override
 	public void onConsumeFood(Agent agent, int foodType) {
-		for(ConsumptionMutator mutator : consumptionMutators) {
+		for (ConsumptionMutator mutator : consumptionDispatch) {
 			mutator.onConsumeFood(agent, foodType);
 		}
 	}
 
+	@Override
+	public boolean hasEnergyListeners() {
+		return energyDispatch.length > 0;
+	}
+
+	@Override
+	public boolean hasLocationListeners() {
+		return locationDispatch.length > 0;
+	}
+
 	@Override
 	public void onEnergyChange(Agent agent, int delta, Cause cause) {
-		for(EnergyMutator mutator : energyMutators) {
+		for (EnergyMutator mutator : energyDispatch) {
 			mutator.onEnergyChange(agent, delta, cause);
 		}
 	}
 
 	@Override
 	public void onUpdate(Agent agent) {
-		for(UpdateMutator mutator : updateMutators) {
+		for (UpdateMutator mutator : updateDispatch) {
 			mutator.onUpdate(agent);
 		}
 	}
 
 	@Override
 	public void beforeControl(Agent agent, ControllerInput cInput) {
-		for(ControllerInputMutator mutator : controllerMutators) {
+		for (ControllerInputMutator mutator : controllerDispatch) {
 			mutator.onControl(agent, cInput);
 		}
 	}
 
 	@Override
 	public LocationDirection onTryStep(Agent agent, LocationDirection from, LocationDirection originalTo) {
-		List<LocationDirection> possibles = new LinkedList<>();
-		for(LocationMutator mutator : locationMutators) {
+		int possibleCount = 0;
+		for (LocationMutator mutator : locationDispatch) {
 			LocationDirection newLoc = mutator.getNewLocation(agent, from, originalTo);
 			if (!newLoc.equals(originalTo)) {
-				possibles.add(newLoc);
+				possibleLocations[possibleCount++] = newLoc;
 			}
 		}
-		if (possibles.isEmpty()) {
+		if (possibleCount == 0) {
 			return originalTo;
+		} else if (possibleCount == 1) {
+			return possibleLocations[0];
 		} else {
-			return possibles.get(new Random().nextInt(possibles.size()));
+			return possibleLocations[randomSource.getRandom().nextInt(possibleCount)];
 		}
 	}
 
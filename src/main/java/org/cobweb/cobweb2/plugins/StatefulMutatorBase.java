@@ -11,13 +11,17 @@ public abstract class StatefulMutatorBase<T extends AgentState> implements State
 
 	private final Class<T> stateClass;
 
+	private final int stateSlot;
+
 	protected StatefulMutatorBase(Class<T> stateClass) {
 		this.stateClass = stateClass;
+		this.stateSlot = AgentStateSlots.getSlot(stateClass);
 	}
 
 	@Override
 	public T getAgentState(Agent agent) {
-		T result = ((ComplexAgent)agent).getState(getStateClass());
+		@SuppressWarnings("unchecked")
+		T result = (T) ((ComplexAgent)agent).getState(stateSlot);
 		return result;
 	}
 
@@ -26,12 +30,21 @@ public abstract class StatefulMutatorBase<T extends AgentState> implements State
 		return getAgentState(agent) != null;
 	}
 
+	@SuppressWarnings("unchecked")
 	protected T removeAgentState(Agent agent) {
-		return ((ComplexAgent)agent).removeState(getStateClass());
+		return (T) ((ComplexAgent)agent).removeState(stateSlot);
+	}
+
+	/**
+	 * @return state of this type the agent had before it was recycled, null if there is none
+	 */
+	protected T takeRecycledState(Agent agent) {
+		AgentState state = ((ComplexAgent)agent).takeRecycledState(stateSlot);
+		return stateClass.isInstance(state) ? stateClass.cast(state) : null;
 	}
 
 	protected void setAgentState(Agent agent, T state) {
-		((ComplexAgent)agent).setState(getStateClass(), state);
+		((ComplexAgent)agent).setState(stateSlot, state);
 	}
 
 	@Override
@@ -26,6 +26,13 @@ public abstract class AbioticFactor implements ParameterSerializable {
 		// nothing
 	}
 
+	/**
+	 * @return whether update() can change the values of this factor
+	 */
+	public boolean isDynamic() {
+		return false;
+	}
+
 	public abstract AbioticFactor copy();
 
 	private static final long serialVersionUID = 1L;
@@ -1,6 +1,7 @@
 package org.cobweb.cobweb2.plugins.abiotic;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.cobweb.cobweb2.Simulation;
@@ -26,6 +27,8 @@ import org.cobweb.cobweb2.plugins.StepMutator;
 public class AbioticMutator extends StatefulMutatorBase<AbioticState> implements StepMutator, StatePlugin,
 EnvironmentMutator, SpawnMutator, LocationMutator {
 
+	private static final BarrierCause BARRIER_CAUSE = new BarrierCause();
+
 	public AbioticMutator() {
 		super(AbioticState.class);
 	}
@@ -34,17 +37,102 @@ EnvironmentMutator, SpawnMutator, LocationMutator {
 
 	private SimulationTimeSpace sim;
 
+	/**
+	 * Value of each factor at each location, indexed by Topology.getIndex().
+	 * Factors that do not change are only rasterised once, others after every update.
+	 */
+	private float[][] rasters;
+
+	/**
+	 * Location indexes of each barrier factor, sorted by factor value, and the matching values.
+	 * Built from the factor's raster when an agent first needs them after it changes.
+	 */
+	private int[][] sortedCells;
+	private float[][] sortedValues;
+
+	/**
+	 * Whether sortedCells of each factor is out of date with its raster
+	 */
+	private boolean[] sortDirty;
+
 	/**
 	 * @param loc location.
 	 * @return The abiotic factor value at location
 	 */
 	public float getValue(int factor, Location loc) {
-		float x = (float) loc.x / sim.getTopology().width;
-		float y = (float) loc.y / sim.getTopology().height;
+		return rasters[factor][sim.getTopology().getIndex(loc)];
+	}
 
+	/**
+	 * @param index location index, see Topology.getIndex()
+	 * @return The abiotic factor value at location
+	 */
+	public float getValue(int factor, int index) {
+		return rasters[factor][index];
+	}
+
+	private void rasterise(int factor) {
 		AbioticFactor abioticFactor = params.factors.get(factor);
-		float value = abioticFactor.getValue(x, y);
-		return value;
+		int width = sim.getTopology().width;
+		int height = sim.getTopology().height;
+		float[] raster = rasters[factor];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				raster[y * width + x] = abioticFactor.getValue((float) x / width, (float) y / height);
+			}
+		}
+
+		sortDirty[factor] = true;
+	}
+
+	/**
+	 * Sorts the cells of a barrier factor if its raster changed since they were last sorted.
+	 * Synchronized as agents updated in parallel can need them at the same time.
+	 */
+	private synchronized void sortCellsIfDirty(int factor) {
+		if (sortDirty[factor]) {
+			sortCells(factor);
+			sortDirty[factor] = false;
+		}
+	}
+
+	private void sortCells(int factor) {
+		float[] raster = rasters[factor];
+		// Sort by value, then by index
+		long[] keys = new long[raster.length];
+		for (int i = 0; i < raster.length; i++) {
+			int bits = Float.floatToIntBits(raster[i]);
+			int sortableBits = bits ^ ((bits >> 31) & 0x7fffffff);
+			keys[i] = ((long) sortableBits << 32) | i;
+		}
+		Arrays.sort(keys);
+
+		if (sortedCells[factor] == null || sortedCells[factor].length != raster.length) {
+			sortedCells[factor] = new int[raster.length];
+			sortedValues[factor] = new float[raster.length];
+		}
+		for (int i = 0; i < keys.length; i++) {
+			int cell = (int) keys[i];
+			sortedCells[factor][i] = cell;
+			sortedValues[factor][i] = raster[cell];
+		}
+	}
+
+	/**
+	 * @return number of locations where the factor is lower than the energy
+	 */
+	private int countCellsBelow(int factor, int energy) {
+		float[] values = sortedValues[factor];
+		int low = 0;
+		int high = values.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (values[mid] < energy)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
 	}
 
 	/**
@@ -75,11 +163,15 @@ EnvironmentMutator, SpawnMutator, LocationMutator {
 		} else if (toValue > agent.getEnergy() && fromValue > agent.getEnergy()) {
 			// Case where agent in both locations are too high energy
 			if (params.factors.get(factor).getMin() > agent.getEnergy()) {
-				agent.changeEnergy(-agent.getEnergy() - 1, new BarrierCause()); // If there is no place that can support an agent of such energy
+				agent.changeEnergy(-agent.getEnergy() - 1, BARRIER_CAUSE); // If there is no place that can support an agent of such energy
 			} else {
-				for (int k = 0; k < Math.max(sim.getTopology().width, sim.getTopology().height); k++) {
-					LocationDirection newLoc = new LocationDirection(sim.getTopology().getRandomLocation(), sim.getTopology().getRandomDirection());
-					if (getValue(factor, newLoc) < agent.getEnergy() && !env.hasAgent(newLoc)) {
+				// Pick among the locations that can support the agent
+				sortCellsIfDirty(factor);
+				int compatible = countCellsBelow(factor, agent.getEnergy());
+				for (int k = 0; compatible > 0 && k < Math.max(sim.getTopology().width, sim.getTopology().height); k++) {
+					int cell = sortedCells[factor][sim.getRandom().nextInt(compatible)];
+					if (!env.hasAgent(cell)) {
+						LocationDirection newLoc = new LocationDirection(sim.getTopology().getLocation(cell), sim.getTopology().getRandomDirection());
 						env.setAgent(to, null);
 						env.setAgent(newLoc, agent);
 						return newLoc;
@@ -167,6 +259,21 @@ EnvironmentMutator, SpawnMutator, LocationMutator {
 		for (int i = 0 ; i < causeKeys.length; i++) {
 			causeKeys[i] = new CauseKey(i);
 		}
+
+		rasters = new float[params.factors.size()][sim.getTopology().width * sim.getTopology().height];
+		sortedCells = new int[params.factors.size()][];
+		sortedValues = new float[params.factors.size()][];
+		sortDirty = new boolean[params.factors.size()];
+		for (int i = 0; i < rasters.length; i++) {
+			rasterise(i);
+		}
+	}
+
+	/**
+	 * @return causes of the multipliers this applies, by factor index
+	 */
+	public Object[] getMultiplierCauses() {
+		return causeKeys;
 	}
 
 	private CauseKey[] causeKeys;
@@ -219,8 +326,11 @@ EnvironmentMutator, SpawnMutator, LocationMutator {
 
 	@Override
 	public void update() {
-		for (AbioticFactor f : params.factors) {
+		for (int i = 0; i < params.factors.size(); i++) {
+			AbioticFactor f = params.factors.get(i);
 			f.update(sim);
+			if (f.isDynamic())
+				rasterise(i);
 		}
 	}
 
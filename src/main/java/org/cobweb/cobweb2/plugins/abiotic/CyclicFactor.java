@@ -35,6 +35,11 @@ public abstract class CyclicFactor extends AbioticFactor {
 
 	protected float time = 0;
 
+	@Override
+	public boolean isDynamic() {
+		return true;
+	}
+
 	@Override
 	public void update(SimulationTimeSpace sim) {
 		super.update(sim);
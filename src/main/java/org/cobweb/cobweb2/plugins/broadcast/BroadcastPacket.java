@@ -32,16 +32,20 @@ public abstract class BroadcastPacket {
 			this.range = sender.params.broadcastFixedRange.getValue();
 	}
 
+	/**
+	 * Restores a packet saved in a checkpoint.
+	 */
+	BroadcastPacket(ComplexAgent sender, Location location, int range, int breedRange) {
+		this.sender = sender;
+		this.location = location;
+		this.range = range;
+		this.breedRange = breedRange;
+	}
+
 	private static int getRadius(int energy) {
 		return energy / 10 + 1; // limiting minimum to 1 unit of
 		// radius
 	}
 
 	public abstract void process(ComplexAgent receiver);
-
-	private int persistence = 1;
-
-	public boolean updateCheckActive() {
-		return persistence-- >= 0;
-	}
 }
\ No newline at end of file
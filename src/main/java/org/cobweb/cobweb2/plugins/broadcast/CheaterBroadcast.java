@@ -1,6 +1,7 @@
 package org.cobweb.cobweb2.plugins.broadcast;
 
 import org.cobweb.cobweb2.core.Agent;
+import org.cobweb.cobweb2.core.Location;
 import org.cobweb.cobweb2.impl.ComplexAgent;
 
 
@@ -13,6 +14,11 @@ public class CheaterBroadcast extends BroadcastPacket {
 		this.cheater = cheater;
 	}
 
+	CheaterBroadcast(Agent cheater, ComplexAgent sender, Location location, int range, int breedRange) {
+		super(sender, location, range, breedRange);
+		this.cheater = cheater;
+	}
+
 	@Override
 	public void process(ComplexAgent receiver) {
 		receiver.rememberBadAgent(cheater);
@@ -13,6 +13,11 @@ public class EnthusiasticBroadcast extends BroadcastPacket {
 		this.breedLocation = breedLocation;
 	}
 
+	EnthusiasticBroadcast(Location breedLocation, ComplexAgent sender, Location location, int range, int breedRange) {
+		super(sender, location, range, breedRange);
+		this.breedLocation = breedLocation;
+	}
+
 	@Override
 	public void process(ComplexAgent receiver) {
 		double closeness = 1;
@@ -13,6 +13,11 @@ public class FoodBroadcast extends BroadcastPacket {
 		this.foodLocation = foodLocation;
 	}
 
+	FoodBroadcast(Location foodLocation, ComplexAgent sender, Location location, int range, int breedRange) {
+		super(sender, location, range, breedRange);
+		this.foodLocation = foodLocation;
+	}
+
 	@Override
 	public void process(ComplexAgent receiver) {
 		double closeness = 1;
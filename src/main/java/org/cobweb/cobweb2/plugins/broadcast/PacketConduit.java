@@ -1,25 +1,85 @@
 package org.cobweb.cobweb2.plugins.broadcast;
 
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 
 import org.cobweb.cobweb2.core.Cause;
 import org.cobweb.cobweb2.core.Location;
 import org.cobweb.cobweb2.core.Topology;
 import org.cobweb.cobweb2.impl.ComplexAgent;
+import org.cobweb.cobweb2.io.CheckpointReader;
+import org.cobweb.cobweb2.io.CheckpointWriter;
 import org.cobweb.cobweb2.plugins.EnvironmentMutator;
 
 public class PacketConduit implements EnvironmentMutator {
 
+	/**
+	 * Width and height of the square areas packets are filed under.
+	 */
+	private static final int BUCKET_SIZE = 8;
+
+	/**
+	 * Number of updates a packet stays active for after it is sent.
+	 */
+	private static final int PERSISTENCE = 2;
+
+	/**
+	 * Kinds of packets in checkpoints.
+	 */
+	private static final byte FOOD_PACKET = 1;
+	private static final byte CHEATER_PACKET = 2;
+	private static final byte BREED_PACKET = 3;
+
 	private boolean broadcastBlocked = false;
 
-	private Collection<BroadcastPacket> currentPackets = new LinkedList<BroadcastPacket>();
+	/**
+	 * Active packets, oldest first. Every packet lasts the same number of updates,
+	 * so they also expire in this order.
+	 */
+	private Deque<FiledPacket> currentPackets = new ArrayDeque<FiledPacket>();
+
+	/**
+	 * Packets that can reach each area of the environment, oldest first.
+	 */
+	private List<Deque<FiledPacket>> buckets = new ArrayList<Deque<FiledPacket>>();
+
+	private int bucketsX;
+
+	private int bucketsY;
+
+	private long time = 0;
 
 	private Topology topology;
 
+	private static class FiledPacket {
+		final BroadcastPacket packet;
+		final long expiryTime;
+		final List<Deque<FiledPacket>> buckets = new ArrayList<Deque<FiledPacket>>();
+
+		FiledPacket(BroadcastPacket packet, long expiryTime) {
+			this.packet = packet;
+			this.expiryTime = expiryTime;
+		}
+	}
+
 	public void setParams(Topology topo) {
 		this.topology = topo;
+
+		bucketsX = (topo.width + BUCKET_SIZE - 1) / BUCKET_SIZE;
+		bucketsY = (topo.height + BUCKET_SIZE - 1) / BUCKET_SIZE;
+		buckets = new ArrayList<Deque<FiledPacket>>(bucketsX * bucketsY);
+		for (int i = 0; i < bucketsX * bucketsY; i++) {
+			buckets.add(new ArrayDeque<FiledPacket>());
+		}
+
+		// Re-file packets kept from before
+		for (FiledPacket filed : currentPackets) {
+			filed.buckets.clear();
+			file(filed);
+		}
 	}
 
 	/**
@@ -28,12 +88,45 @@ public class PacketConduit implements EnvironmentMutator {
 	 * @param packet packet
 	 */
 	public void addPacketToList(BroadcastPacket packet) {
-		if (!broadcastBlocked)
-			currentPackets.add(packet);
+		if (!broadcastBlocked) {
+			FiledPacket filed = new FiledPacket(packet, time + PERSISTENCE);
+			currentPackets.addLast(filed);
+			file(filed);
+		}
 		// TODO: allow more broadcasts?
 		blockBroadcast();
 	}
 
+	/**
+	 * Adds the packet to the buckets of every area it can reach. A location is in range if
+	 * one of the wrapped copies of the packet location is closer than the range, so the
+	 * packet covers a square around each copy.
+	 */
+	private void file(FiledPacket filed) {
+		BroadcastPacket packet = filed.packet;
+		int radius = packet.getClass() == EnthusiasticBroadcast.class ? packet.breedRange : packet.range;
+
+		for (Location virtual : topology.getWrapVirtualLocations(packet.location)) {
+			int x0 = Math.max(0, virtual.x - radius) / BUCKET_SIZE;
+			int x1 = Math.min(topology.width - 1, virtual.x + radius);
+			int y0 = Math.max(0, virtual.y - radius) / BUCKET_SIZE;
+			int y1 = Math.min(topology.height - 1, virtual.y + radius);
+			if (x1 < 0 || y1 < 0 || virtual.x - radius >= topology.width || virtual.y - radius >= topology.height)
+				continue;
+
+			for (int by = y0; by <= y1 / BUCKET_SIZE; by++) {
+				for (int bx = x0; bx <= x1 / BUCKET_SIZE; bx++) {
+					Deque<FiledPacket> bucket = buckets.get(by * bucketsX + bx);
+					// Copies can overlap, packets are filed in order so a duplicate is always last
+					if (bucket.peekLast() != filed) {
+						bucket.addLast(filed);
+						filed.buckets.add(bucket);
+					}
+				}
+			}
+		}
+	}
+
 	public void blockBroadcast() {
 		broadcastBlocked = true;
 	}
@@ -41,11 +134,13 @@ public class PacketConduit implements EnvironmentMutator {
 	// with every time step, the persistence of the packets should be
 	// decremented
 	public void decrementPersistence() {
-		Iterator<BroadcastPacket> i = currentPackets.iterator();
-		while (i.hasNext()) {
-			BroadcastPacket packet = i.next();
-			if (!packet.updateCheckActive())
-				i.remove();
+		time++;
+		while (!currentPackets.isEmpty() && currentPackets.peekFirst().expiryTime < time) {
+			FiledPacket expired = currentPackets.pollFirst();
+			for (Deque<FiledPacket> bucket : expired.buckets) {
+				// Oldest packet, so it is first in all its buckets
+				bucket.pollFirst();
+			}
 		}
 	}
 
@@ -54,16 +149,98 @@ public class PacketConduit implements EnvironmentMutator {
 	}
 
 	public void clearPackets() {
+		for (FiledPacket filed : currentPackets) {
+			for (Deque<FiledPacket> bucket : filed.buckets) {
+				bucket.clear();
+			}
+		}
 		currentPackets.clear();
 	}
 
+	/**
+	 * Writes the active packets to a checkpoint. Their senders are written as references.
+	 */
+	public void saveState(CheckpointWriter out) throws IOException {
+		out.writeLong(time);
+		out.writeBoolean(broadcastBlocked);
+		out.writeInt(currentPackets.size());
+		for (FiledPacket filed : currentPackets) {
+			BroadcastPacket packet = filed.packet;
+			if (packet instanceof FoodBroadcast) {
+				out.writeByte(FOOD_PACKET);
+				out.writeLocation(((FoodBroadcast) packet).foodLocation);
+			} else if (packet instanceof CheaterBroadcast) {
+				out.writeByte(CHEATER_PACKET);
+				out.writeAgent((ComplexAgent) ((CheaterBroadcast) packet).cheater);
+			} else if (packet instanceof EnthusiasticBroadcast) {
+				out.writeByte(BREED_PACKET);
+				out.writeLocation(((EnthusiasticBroadcast) packet).breedLocation);
+			} else {
+				throw new IllegalStateException("Cannot save packet type: " + packet.getClass().getName());
+			}
+			out.writeAgent(packet.sender);
+			out.writeLocation(packet.location);
+			out.writeInt(packet.range);
+			out.writeInt(packet.breedRange);
+			out.writeLong(filed.expiryTime);
+		}
+	}
+
+	/**
+	 * Replaces the active packets with the ones written by saveState().
+	 * setParams() must have been called first.
+	 */
+	public void loadState(CheckpointReader in) throws IOException {
+		clearPackets();
+		time = in.readLong();
+		broadcastBlocked = in.readBoolean();
+		for (int i = in.readInt(); i > 0; i--) {
+			byte kind = in.readByte();
+			Location foodLocation = null;
+			ComplexAgent cheater = null;
+			Location breedLocation = null;
+			if (kind == FOOD_PACKET)
+				foodLocation = in.readLocation();
+			else if (kind == CHEATER_PACKET)
+				cheater = in.readAgent();
+			else if (kind == BREED_PACKET)
+				breedLocation = in.readLocation();
+			else
+				throw new IOException("Corrupt checkpoint, unknown packet type " + kind);
+
+			ComplexAgent sender = in.readAgent();
+			Location location = in.readLocation();
+			int range = in.readInt();
+			int breedRange = in.readInt();
+
+			BroadcastPacket packet;
+			if (kind == FOOD_PACKET)
+				packet = new FoodBroadcast(foodLocation, sender, location, range, breedRange);
+			else if (kind == CHEATER_PACKET)
+				packet = new CheaterBroadcast(cheater, sender, location, range, breedRange);
+			else
+				packet = new EnthusiasticBroadcast(breedLocation, sender, location, range, breedRange);
+
+			FiledPacket filed = new FiledPacket(packet, in.readLong());
+			currentPackets.addLast(filed);
+			file(filed);
+		}
+	}
+
+	private Deque<FiledPacket> getBucket(Location position) {
+		return buckets.get(position.y / BUCKET_SIZE * bucketsX + position.x / BUCKET_SIZE);
+	}
+
 	public BroadcastPacket findBreedPacket(Location position, ComplexAgent receiver) {
-		for (BroadcastPacket commPacket : currentPackets) {
+		for (FiledPacket filed : getBucket(position)) {
+			BroadcastPacket commPacket = filed.packet;
+			if (commPacket.getClass() != EnthusiasticBroadcast.class)
+				continue;
+
 			double distance = topology.getDistance(position, commPacket.location);
 			ComplexAgent s = commPacket.sender;
 
-			if (commPacket.getClass() == EnthusiasticBroadcast.class
-					&& distance < commPacket.breedRange
+			if (distance < commPacket.breedRange
 					&& !s.equals(receiver)
 					&& (receiver.getType() == s.getType())
 					&& (s.params.breedSimMin.getValue() == 0f || s.calculateSimilarity(receiver) >= s.params.breedSimMin.getValue())
@@ -77,19 +254,20 @@ public class PacketConduit implements EnvironmentMutator {
 	public BroadcastPacket findPacket(Location position, ComplexAgent receiver) {
 		// TODO: return more than 1 packet?
 		// TODO: return closest packet?
-		for (BroadcastPacket commPacket : currentPackets) {
+		for (FiledPacket filed : getBucket(position)) {
+			BroadcastPacket commPacket = filed.packet;
+			if (commPacket.getClass() == EnthusiasticBroadcast.class)
+				continue;
+
 			double distance = topology.getDistance(position, commPacket.location);
 			ComplexAgent s = commPacket.sender;
 
-			if (commPacket.getClass() != EnthusiasticBroadcast.class) {
-				if (distance < commPacket.range
-						&& !s.equals(receiver)
-						&& (!s.params.broadcastSameTypeOnly || receiver.getType() == s.getType())
-						&& (s.params.broadcastMinSimilarity.getValue() == 0f || s.calculateSimilarity(receiver) >= s.params.broadcastMinSimilarity.getValue())
-						) {
-					return commPacket;
-				}
-
+			if (distance < commPacket.range
+					&& !s.equals(receiver)
+					&& (!s.params.broadcastSameTypeOnly || receiver.getType() == s.getType())
+					&& (s.params.broadcastMinSimilarity.getValue() == 0f || s.calculateSimilarity(receiver) >= s.params.broadcastMinSimilarity.getValue())
+					) {
+				return commPacket;
 			}
 		}
 		return null;
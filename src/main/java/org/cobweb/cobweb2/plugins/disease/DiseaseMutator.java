@@ -161,6 +161,13 @@ public class DiseaseMutator extends StatefulMutatorBase<DiseaseState> implements
 		sickCount = ArrayUtilities.resizeArray(sickCount, agentTypes);
 	}
 
+	/**
+	 * @return causes of the multipliers this applies
+	 */
+	public Object[] getMultiplierCauses() {
+		return new Object[] { this };
+	}
+
 	private void transmitBumpOneWay(Agent bumper, Agent bumpee) {
 		int tr = bumper.getType();
 		int te = bumpee.getType();
@@ -1,16 +1,19 @@
 package org.cobweb.cobweb2.plugins.food;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.io.IOException;
+import java.util.Arrays;
 
 import org.cobweb.cobweb2.core.Direction;
 import org.cobweb.cobweb2.core.Location;
 import org.cobweb.cobweb2.core.SimulationTimeSpace;
+import org.cobweb.cobweb2.core.Topology;
 import org.cobweb.cobweb2.impl.ComplexEnvironment;
 import org.cobweb.cobweb2.plugins.EnvironmentMutator;
 import org.cobweb.cobweb2.plugins.abiotic.AbioticMutator;
 import org.cobweb.cobweb2.plugins.abiotic.AbioticPreferenceParam;
+import org.cobweb.io.CheckpointInput;
+import org.cobweb.io.CheckpointOutput;
+import org.cobweb.util.RandomNoGenerator;
 
 
 public class FoodGrowth implements EnvironmentMutator {
@@ -23,6 +26,8 @@ public class FoodGrowth implements EnvironmentMutator {
 
 	private SimulationTimeSpace simulation;
 
+	private RandomNoGenerator random;
+
 	private ComplexEnvironment env;
 
 	private float sameFoodProb;
@@ -51,44 +56,21 @@ public class FoodGrowth implements EnvironmentMutator {
 	}
 
 	private void depleteFood(ComplexFoodParams food, int type) {
-		// the algorithm for randomly selecting the food cells to delete
-		// is as follows:
-		// We iterate through all of the cells and the location of each
-		// one containing food type i is added to
-		// a random position in our vector. We then calculate exactly
-		// how many food items we need to destroy, say N,
-		// and we destroy the food at the positions occupying the last N
-		// spots in our vector
-		List<Location> locations = new ArrayList<Location>();
-		for (int x = 0; x < simulation.getTopology().width; ++x) {
-			for (int y = 0; y < simulation.getTopology().height; ++y) {
-				Location currentPos = new Location(x, y);
-				if (env.hasFood(currentPos) && env.getFoodType(currentPos) == type)
-					locations.add(currentPos);
-			}
-		}
-
-		Collections.shuffle(locations, simulation.getRandom());
-
-		int foodToDeplete = (int) (locations.size() * food.depleteRate);
-
-		for (int j = 0; j < foodToDeplete; ++j) {
-			Location loc = locations.get(j);
-
-			env.removeFood(loc);
-		}
+		// destroy a random selection of the food of this type
+		int foodToDeplete = (int) (env.getFoodCount(type) * food.depleteRate);
+		env.removeRandomFood(type, foodToDeplete, random);
 		draughtdays[type] = food.draughtPeriod;
 	}
 
 	private void dropFood(int type) {
 		float foodDrop = foodData[type].dropRate;
-		while (simulation.getRandom().nextFloat() < foodDrop) {
+		while (random.nextFloat() < foodDrop) {
 			--foodDrop;
 			Location l;
 			int j = 0;
 			do {
 				++j;
-				l = simulation.getTopology().getRandomLocation();
+				l = simulation.getTopology().getRandomLocation(random);
 
 			} while (j < DROP_ATTEMPTS_MAX &&  env.hasAnythingAt(l));
 
@@ -99,67 +81,64 @@ public class FoodGrowth implements EnvironmentMutator {
 	}
 
 	private void growFood() {
-		// create a new ArrayEnvironment and a new food type array
-		// loop through all positions
+		// loop through positions that have food next to them
 
 		AbioticMutator abiotic = env.getPlugin(AbioticMutator.class);
+		Topology topology = simulation.getTopology();
+		int[] mostFood = new int[getTypeCount()];
+
+		for (int index = env.nextFoodFrontier(0); index != -1; index = env.nextFoodFrontier(index + 1)) {
+			if (!env.hasAnythingAt(index)) {
+				// we should grow food here
+				// the following code block tests all adjacent squares
+				// to this one and counts how many have food
+				// as well how many of each food type exist
+
+				double foodCount = 0;
+				Arrays.fill(mostFood, 0);
+
+				for (Direction dir : topology.ALL_4_WAY) {
+					int checkIndex = topology.getAdjacentIndex(index, dir);
+					if (checkIndex != -1 && env.hasFood(checkIndex)) {
+						foodCount++;
+						mostFood[env.getFoodType(checkIndex)]++;
+					}
+				}
+
+				// and if we have found any adjacent food, theres a
+				// chance we want to grow food here
+				if (foodCount > 0) {
+
+					int max = 0;
+					int growingType;
+
+					// find the food that exists in the largest quantity
+					for (int i = 1; i < mostFood.length; ++i)
+						if (mostFood[i] > mostFood[max])
+							max = i;
 
-		for (int y = 0; y < simulation.getTopology().height; ++y) {
-			for (int x = 0; x < simulation.getTopology().width; ++x) {
-				Location currentPos = new Location(x, y);
-
-				if (!env.hasAnythingAt(currentPos)) {
-					// we should grow food here
-					// the following code block tests all adjacent squares
-					// to this one and counts how many have food
-					// as well how many of each food type exist
-
-					double foodCount = 0;
-					int[] mostFood = new int[getTypeCount()];
-
-					for (Direction dir : simulation.getTopology().ALL_4_WAY) {
-						Location checkPos = simulation.getTopology().getAdjacent(currentPos, dir);
-						if (checkPos != null && env.hasFood(checkPos)) {
-							foodCount++;
-							mostFood[env.getFoodType(checkPos)]++;
-						}
+					// give the max food an extra chance to be chosen
+
+					if (sameFoodProb >= random.nextFloat()) {
+						growingType = max;
+					} else {
+						growingType = random.nextInt(getTypeCount());
+					}
+
+					// finally, we grow food according to a certain
+					// amount of random chance
+					ComplexFoodParams thisType = foodData[growingType];
+					float growRate = thisType.growRate;
+
+					for (int i = 0; i < thisType.abioticParams.factorParams.length; i++) {
+						AbioticPreferenceParam factorParams = thisType.abioticParams.factorParams[i].preference;
+						float factorValue = abiotic.getValue(i, index);
+						float discomfort = 1 + factorParams.score(factorValue);
+						growRate *= discomfort;
 					}
 
-					// and if we have found any adjacent food, theres a
-					// chance we want to grow food here
-					if (foodCount > 0) {
-
-						int max = 0;
-						int growingType;
-
-						// find the food that exists in the largest quantity
-						for (int i = 1; i < mostFood.length; ++i)
-							if (mostFood[i] > mostFood[max])
-								max = i;
-
-						// give the max food an extra chance to be chosen
-
-						if (sameFoodProb >= simulation.getRandom().nextFloat()) {
-							growingType = max;
-						} else {
-							growingType = simulation.getRandom().nextInt(getTypeCount());
-						}
-
-						// finally, we grow food according to a certain
-						// amount of random chance
-						ComplexFoodParams thisType = foodData[growingType];
-						float growRate = thisType.growRate;
-
-						for (int i = 0; i < thisType.abioticParams.factorParams.length; i++) {
-							AbioticPreferenceParam factorParams = thisType.abioticParams.factorParams[i].preference;
-							float factorValue = abiotic.getValue(i, currentPos);
-							float discomfort = 1 + factorParams.score(factorValue);
-							growRate *= discomfort;
-						}
-
-						if (foodCount * growRate > 100 * simulation.getRandom().nextFloat()) {
-							env.addFood(currentPos, growingType);
-						}
+					if (foodCount * growRate > 100 * random.nextFloat()) {
+						env.addFood(index, growingType);
 					}
 				}
 			}
@@ -177,9 +156,9 @@ public class FoodGrowth implements EnvironmentMutator {
 		for (int i = 0; i < getTypeCount(); ++i) {
 			draughtdays[i] = 0;
 			if (foodData[i].depleteRate < 0.0f || foodData[i].depleteRate > 1.0f)
-				foodData[i].depleteRate = simulation.getRandom().nextFloat();
+				foodData[i].depleteRate = random.nextFloat();
 			if (foodData[i].depleteTime <= 0)
-				foodData[i].depleteTime = simulation.getRandom().nextInt(100) + 1;
+				foodData[i].depleteTime = random.nextInt(100) + 1;
 		}
 	}
 
@@ -192,7 +171,7 @@ public class FoodGrowth implements EnvironmentMutator {
 				Location l;
 				int tries = 0;
 				do {
-					l = simulation.getTopology().getRandomLocation();
+					l = simulation.getTopology().getRandomLocation(random);
 				} while (tries++ < 100 && env.hasAnythingAt(l));
 				if (tries < 100) {
 					env.addFood(l, i);
@@ -232,7 +211,11 @@ public class FoodGrowth implements EnvironmentMutator {
 		}
 	}
 
-	public void setParams(ComplexEnvironment environment, FoodGrowthParams foodParams) {
+	/**
+	 * @param random generator food growth draws from, separate from the one agents use
+	 */
+	public void setParams(ComplexEnvironment environment, FoodGrowthParams foodParams, RandomNoGenerator random) {
+		this.random = random;
 		foodData = foodParams.foodParams;
 		this.sameFoodProb = foodParams.likeFoodProb;
 		dropNew = foodParams.dropNewFood;
@@ -240,6 +223,22 @@ public class FoodGrowth implements EnvironmentMutator {
 		env = environment;
 	}
 
+	/**
+	 * Writes the drought countdowns and the state of the food random stream.
+	 */
+	public void saveState(CheckpointOutput out) throws IOException {
+		out.writeIntArray(draughtdays);
+		random.saveState(out);
+	}
+
+	public void loadState(CheckpointInput in) throws IOException {
+		int[] saved = in.readIntArray();
+		if (saved.length != getTypeCount())
+			throw new IOException("Checkpoint has a different number of food types");
+		draughtdays = saved;
+		random.loadState(in);
+	}
+
 	@Override
 	public void loadNew() {
 		setupDraughtDeplete();
@@ -31,5 +31,10 @@ public class BuiltinPhenotype extends PropertyPhenotype {
 		return ((ComplexAgent) a).params;
 	}
 
+	@Override
+	protected Object modifiableRoot(Agent a) {
+		return ((ComplexAgent) a).getPrivateParams();
+	}
+
 	private static final long serialVersionUID = 2L;
-}
+}
@@ -164,6 +164,13 @@ public class GeneticsMutator extends StatefulMutatorBase<GeneticCode> implements
 		}
 	}
 
+	/**
+	 * @return causes of the multipliers this applies, by gene index
+	 */
+	public Object[] getMultiplierCauses() {
+		return causeKeys;
+	}
+
 	private CauseKey[] causeKeys;
 
 	private class CauseKey {
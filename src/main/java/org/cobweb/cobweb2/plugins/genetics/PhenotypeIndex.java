@@ -40,11 +40,7 @@ public class PhenotypeIndex {
 		}
 
 		// Plugin phenotypes
-		Reflections pluginsPackage = new Reflections("org.cobweb.cobweb2.plugins");
-		SortedSet<Class<? extends AgentState>> orderedClasses = new TreeSet<>(new PluginOrderComparator());
-		orderedClasses.addAll(pluginsPackage.getSubTypesOf(AgentState.class));
-
-		for (Class<? extends AgentState> stateClass : orderedClasses)
+		for (Class<? extends AgentState> stateClass : PluginStateClasses.ALL)
 		{
 			try {
 				PropertyAccessor stateAccessor = getAgentParamsAccessor(stateClass);
@@ -126,6 +122,21 @@ public class PhenotypeIndex {
 		}
 	}
 
+	/**
+	 * AgentState classes of the plugins, ordered by name. Scanning the class path is slow,
+	 * so it is done once, when first needed, and shared by every thread.
+	 */
+	private static class PluginStateClasses {
+		static final List<Class<? extends AgentState>> ALL;
+
+		static {
+			Reflections pluginsPackage = new Reflections("org.cobweb.cobweb2.plugins");
+			SortedSet<Class<? extends AgentState>> orderedClasses = new TreeSet<>(new PluginOrderComparator());
+			orderedClasses.addAll(pluginsPackage.getSubTypesOf(AgentState.class));
+			ALL = Collections.unmodifiableList(new ArrayList<>(orderedClasses));
+		}
+	}
+
 	private static class PluginOrderComparator implements Comparator<Class<?>> {
 		@Override
 		public int compare(Class<?> o1, Class<?> o2) {
@@ -46,10 +46,11 @@ public abstract class PropertyPhenotype extends Phenotype {
 
 	@Override
 	public void modifyValue(Object cause, Agent a, float m) {
-		if (rootAccessor(a) == null)
+		Object root = modifiableRoot(a);
+		if (root == null)
 			return;
 
-		MutatableField field = (MutatableField) propertyAccessor.get(rootAccessor(a));
+		MutatableField field = (MutatableField) propertyAccessor.get(root);
 		field.setMultiplier(cause, m);
 	}
 
@@ -64,5 +65,13 @@ public abstract class PropertyPhenotype extends Phenotype {
 
 	protected abstract Object rootAccessor(Agent a);
 
+	/**
+	 * Object that modifyValue() changes the property of, the same as rootAccessor() unless the agent
+	 * shares that object with other agents.
+	 */
+	protected Object modifiableRoot(Agent a) {
+		return rootAccessor(a);
+	}
+
 	private static final long serialVersionUID = 1L;
 }
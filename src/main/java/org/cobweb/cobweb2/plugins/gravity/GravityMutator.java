@@ -1,6 +1,6 @@
 package org.cobweb.cobweb2.plugins.gravity;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.cobweb.cobweb2.Simulation;
 import org.cobweb.cobweb2.core.Agent;
@@ -14,9 +14,11 @@ import org.cobweb.cobweb2.impl.ComplexEnvironment;
 import org.cobweb.cobweb2.plugins.AgentState;
 import org.cobweb.cobweb2.plugins.EnvironmentMutator;
 import org.cobweb.cobweb2.plugins.MoveMutator;
+import org.cobweb.cobweb2.plugins.StepMutator;
+import org.cobweb.util.IndexBitSet;
 import org.cobweb.util.Pair;
 
-public class GravityMutator implements MoveMutator, EnvironmentMutator {
+public class GravityMutator implements MoveMutator, StepMutator, EnvironmentMutator {
 
 	public GravityMutator() {
 	}
@@ -24,106 +26,259 @@ public class GravityMutator implements MoveMutator, EnvironmentMutator {
 	private GravityParams params;
 	private SimulationTimeSpace sim;
 
-	private int[][] massArray; // Array holding the positions of all the point masses
+	private PointMassTree massTree; // The point mass at the centre of each contiguous group of agents
+
+	/*
+	 * Contiguous groups of agents are labelled with union-find over the grid cells.
+	 * The label of an occupied cell leads to the lowest cell index of its group, which is
+	 * the same whichever order cells are joined in, so updating only the groups around the
+	 * cells agents stepped on or off gives the same groups as labelling the whole grid.
+	 */
+	private static final int EMPTY = -1;
+	private static final int PENDING = -2;
+
+	private int[] labels; // Parent cell of occupied cells, EMPTY or PENDING otherwise
+	private int[] groupMass; // Indexed by group root
+	private long[] groupSumX;
+	private long[] groupSumY;
+	private IndexBitSet groupRoots;
+
+	private int[] pendingCells; // Cells being labelled again
+	private int[] stack;
+	private final int[] neighbours = new int[4 + 4 * Topology.REVERSE_ADJACENT_CANDIDATES];
+	private final int[] dirtyNeighbours = new int[neighbours.length];
+
+	private int[] centreMass; // Total mass of the groups centred on each cell
+	private IndexBitSet centres;
+
+	private IndexBitSet dirtyCells; // Cells agents stepped on or off since the last update
+	private int dirtyCount;
+	private boolean relabelAll;
 
 	public void setParams(SimulationTimeSpace sim, GravityParams params) {
 		this.sim = sim;
 		this.params = params;
 
-		int w = sim.getTopology().width;
-		int h = sim.getTopology().height;
+		int cells = sim.getTopology().width * sim.getTopology().height;
 
-		massArray = new int[w][h];
+		labels = new int[cells];
+		Arrays.fill(labels, EMPTY);
+		groupMass = new int[cells];
+		groupSumX = new long[cells];
+		groupSumY = new long[cells];
+		groupRoots = new IndexBitSet(cells);
+		pendingCells = new int[cells];
+		stack = new int[cells];
+		centreMass = new int[cells];
+		centres = new IndexBitSet(cells);
+		dirtyCells = new IndexBitSet(cells);
+		dirtyCount = 0;
+		relabelAll = true;
 
+		massTree = new PointMassTree(sim.getTopology());
 	}
 
-	private int calculateContiguousArea(int a, int b, boolean[][] checked, ComplexEnvironment env, ArrayList<Location> result) {
-		Location thisLoc = new Location(a, b);
-		if (!checked[a][b] && env.hasAgent(thisLoc)) {
-			int total = params.gravityParams[env.getAgent(thisLoc).getType()].mass.getValue();
-			checked[a][b] = true;
-			for (int i = 0; i < total; i++) {
-				result.add(thisLoc);
+	private void calculateMasses() {
+		ComplexEnvironment env = ((Simulation) sim).theEnvironment;
+
+		int pendingCount;
+		synchronized (dirtyCells) {
+			if (relabelAll || dirtyCount > labels.length / 8) {
+				groupRoots.clear();
+				for (int i = 0; i < labels.length; i++) {
+					pendingCells[i] = i;
+				}
+				pendingCount = labels.length;
+			} else {
+				pendingCount = 0;
+				for (int i = dirtyCells.nextSetBit(0); i != -1; i = dirtyCells.nextSetBit(i + 1)) {
+					pendingCount = releaseGroup(i, pendingCount);
+					int n = getNeighbours(i, dirtyNeighbours);
+					for (int k = 0; k < n; k++) {
+						pendingCount = releaseGroup(dirtyNeighbours[k], pendingCount);
+					}
+					if (labels[i] == EMPTY) {
+						labels[i] = PENDING;
+						pendingCells[pendingCount++] = i;
+					}
+				}
 			}
+			dirtyCells.clear();
+			dirtyCount = 0;
+			relabelAll = false;
+		}
 
-			Location northLoc = env.topology.getAdjacent(thisLoc, Topology.NORTH);
-			Location eastLoc = env.topology.getAdjacent(thisLoc, Topology.EAST);
-			Location southLoc = env.topology.getAdjacent(thisLoc, Topology.SOUTH);
-			Location westLoc = env.topology.getAdjacent(thisLoc, Topology.WEST);
+		labelGroups(env, pendingCount);
 
-			if (northLoc != null && !checked[northLoc.x][northLoc.y] && env.hasAgent(northLoc)) {
-				total += calculateContiguousArea(northLoc.x, northLoc.y, checked, env, result);
-			}
-			if (eastLoc != null && !checked[eastLoc.x][eastLoc.y] && env.hasAgent(eastLoc)) {
-				total += calculateContiguousArea(eastLoc.x, eastLoc.y, checked, env, result);
-			}
-			if (southLoc != null && !checked[southLoc.x][southLoc.y] && env.hasAgent(southLoc)) {
-				total += calculateContiguousArea(southLoc.x, southLoc.y, checked, env, result);
-			}
-			if (westLoc != null && !checked[westLoc.x][westLoc.y] && env.hasAgent(westLoc)) {
-				total += calculateContiguousArea(westLoc.x, westLoc.y, checked, env, result);
+		for (int root = groupRoots.nextSetBit(0); root != -1; root = groupRoots.nextSetBit(root + 1)) {
+			int mass = groupMass[root];
+			if (mass == 0)
+				continue;
+			int centre = (int) (groupSumY[root] / mass) * env.topology.width + (int) (groupSumX[root] / mass);
+			centreMass[centre] += mass;
+			centres.set(centre);
+		}
+	}
+
+	/**
+	 * Marks every cell of the group containing the given cell as PENDING and adds them to pendingCells.
+	 *
+	 * @return new number of pending cells
+	 */
+	private int releaseGroup(int cell, int pendingCount) {
+		int root = labels[cell];
+		if (root < 0 || !groupRoots.get(root))
+			return pendingCount;
+		groupRoots.clear(root);
+
+		// Cells agents have left still carry the old label, so the old group is still connected
+		int top = 0;
+		labels[cell] = PENDING;
+		stack[top++] = cell;
+		while (top > 0) {
+			int c = stack[--top];
+			pendingCells[pendingCount++] = c;
+			int n = getNeighbours(c, neighbours);
+			for (int k = 0; k < n; k++) {
+				int next = neighbours[k];
+				if (labels[next] == root) {
+					labels[next] = PENDING;
+					stack[top++] = next;
+				}
 			}
-			return total;
 		}
-		return 0;
+		return pendingCount;
 	}
 
-	private Location centerOfMass(ArrayList<Location> locations) {
-		int centerX = 0;
-		int centerY = 0;
+	/**
+	 * Groups the pending cells and adds up the mass and centre of each new group.
+	 */
+	private void labelGroups(ComplexEnvironment env, int pendingCount) {
+		for (int k = 0; k < pendingCount; k++) {
+			int c = pendingCells[k];
+			labels[c] = env.hasAgent(c) ? c : EMPTY;
+		}
 
-		for (Location loc: locations) {
-			centerX += loc.x;
-			centerY += loc.y;
+		for (int k = 0; k < pendingCount; k++) {
+			int c = pendingCells[k];
+			if (labels[c] == EMPTY)
+				continue;
+			for (Direction dir : env.topology.ALL_4_WAY) {
+				int next = env.topology.getAdjacentIndex(c, dir);
+				if (next != -1 && labels[next] >= 0)
+					union(c, next);
+			}
 		}
 
-		return new Location(centerX / locations.size(), centerY / locations.size());
+		for (int k = 0; k < pendingCount; k++) {
+			int c = pendingCells[k];
+			if (labels[c] == EMPTY)
+				continue;
+			int root = find(c);
+			labels[c] = root;
+			groupMass[root] = 0;
+			groupSumX[root] = 0;
+			groupSumY[root] = 0;
+			groupRoots.set(root);
+		}
+
+		for (int k = 0; k < pendingCount; k++) {
+			int c = pendingCells[k];
+			if (labels[c] == EMPTY)
+				continue;
+			int root = labels[c];
+			int mass = params.gravityParams[env.getAgent(c).getType()].mass.getValue();
+			groupMass[root] += mass;
+			groupSumX[root] += (long) (c % env.topology.width) * mass;
+			groupSumY[root] += (long) (c / env.topology.width) * mass;
+		}
 	}
 
-	private void calculateMasses() {
-		ComplexEnvironment env = ((Simulation) sim).theEnvironment;
+	private int find(int cell) {
+		while (labels[cell] != cell) {
+			labels[cell] = labels[labels[cell]];
+			cell = labels[cell];
+		}
+		return cell;
+	}
 
-		boolean[][] checked = new boolean[env.data.width][env.data.height];
-
-		for (int i = 0; i < env.data.width; i++) {
-			for (int j = 0; j < env.data.height; j++) {
-				if (!checked[i][j]) {
-					ArrayList<Location> locations = new ArrayList<>(); // The locations where this mass occurs, weighted for each agent's mass
-					// i.e. if an agent has mass 4, its location will appear 4 times in <locations>
-					int mass = calculateContiguousArea(i, j, checked, env, locations);
-					if (mass == 0) {
-						massArray[i][j] = 0;
-					} else {
-						Location center = centerOfMass(locations);
-						for (Location loc : locations) {
-							massArray[loc.x][loc.y] = 0;
-						}
-						massArray[center.x][center.y] = mass;
-					}
-				}
+	private void union(int a, int b) {
+		a = find(a);
+		b = find(b);
+		if (a < b)
+			labels[b] = a;
+		else if (b < a)
+			labels[a] = b;
+	}
+
+	/**
+	 * Fills result with the cells next to the given cell, and the cells it is next to.
+	 *
+	 * @return number of neighbours found
+	 */
+	private int getNeighbours(int cell, int[] result) {
+		Topology topology = sim.getTopology();
+		int n = 0;
+		for (Direction dir : topology.ALL_4_WAY) {
+			int next = topology.getAdjacentIndex(cell, dir);
+			if (next != -1)
+				result[n++] = next;
+			for (int c = 0; c < Topology.REVERSE_ADJACENT_CANDIDATES; c++) {
+				int previous = topology.getReverseAdjacentIndex(cell, dir, c);
+				if (previous != -1)
+					result[n++] = previous;
 			}
 		}
+		return n;
 	}
 
-	private Pair<Double, Double> calculateGravityProbability(Agent agent) {
-		double forceX = 0; // + right, - left
-		double forceY = 0; // + down, - up
+	@Override
+	public void onStep(Agent agent, Location from, Location to) {
+		Topology topology = sim.getTopology();
+		synchronized (dirtyCells) {
+			if (from != null && topology.isValidLocation(from))
+				markDirty(topology.getIndex(from));
+			if (to != null && topology.isValidLocation(to))
+				markDirty(topology.getIndex(to));
+		}
+	}
 
-		Location agentLoc = agent.getPosition();
-		for (int a = 0; a < sim.getTopology().width; a++) {
-			for (int b = 0; b < sim.getTopology().height; b++) {
-				Location ab = new Location(a, b);
-				double dis = sim.getTopology().getDistanceSquared(agentLoc, ab);
-				if (!agentLoc.equals(ab)) {
-					double force = (params.gravitationalConstant * massArray[a][b] * params.gravityParams[agent.getType()].mass.getValue()) / dis;
-					Direction toPoint = sim.getTopology().getDirectionBetween8way(agentLoc, ab);
-					forceX += (toPoint.x / Math.sqrt(toPoint.x * toPoint.x + toPoint.y * toPoint.y)) * force;
-					forceY += (toPoint.y / Math.sqrt(toPoint.x * toPoint.x + toPoint.y * toPoint.y)) * force;
-				}
+	private void markDirty(int cell) {
+		if (!dirtyCells.get(cell)) {
+			dirtyCells.set(cell);
+			dirtyCount++;
+		}
+	}
+
+	/**
+	 * Collects the point masses found by calculateMasses(), column by column.
+	 * The exact sum adds them in this order, which is the order the original grid sum used.
+	 */
+	private void buildMassTree() {
+		Topology topology = sim.getTopology();
+		massTree.clear();
+		for (int x = 0; x < topology.width; x++) {
+			for (int y = 0; y < topology.height; y++) {
+				int i = y * topology.width + x;
+				if (!centres.get(i))
+					continue;
+				massTree.addPoint(topology.getLocation(i), centreMass[i]);
+				centreMass[i] = 0;
+				centres.clear(i);
 			}
 		}
+		if (params.barnesHutTheta > 0)
+			massTree.build();
+	}
 
-		return new Pair<>(forceX, forceY);
+	private Pair<Double, Double> calculateGravityProbability(Agent agent) {
+		// + right, - left; + down, - up
+		Location agentLoc = agent.getPosition();
+		int agentMass = params.gravityParams[agent.getType()].mass.getValue();
+		if (params.barnesHutTheta > 0)
+			return massTree.getForce(agentLoc, agentMass, params.gravitationalConstant, params.barnesHutTheta);
+		else
+			return massTree.getExactForce(agentLoc, agentMass, params.gravitationalConstant);
 	}
 
 	@Override
@@ -183,12 +338,20 @@ public class GravityMutator implements MoveMutator, EnvironmentMutator {
 
 	@Override
 	public void loadNew() {
-		calculateMasses(); // Create the initial array of point masses
+		update(); // Create the initial point masses
 	}
 
 	@Override
 	public void update() {
+		if (!params.gravityEnabled) {
+			// Label every group again once gravity is turned on
+			synchronized (dirtyCells) {
+				relabelAll = true;
+			}
+			return;
+		}
 		calculateMasses();
+		buildMassTree();
 	}
 
 	@Override
@@ -24,6 +24,15 @@ public class GravityParams implements PerTypeParam<GravityTypeParams> {
     @ConfXMLTag("gravityStrength")
     public float gravitationalConstant = 0.667f;
 
+    /*
+     * Barnes-Hut opening angle - groups of masses smaller than this fraction of their
+     * distance are pulled on as a single mass. 0, the default, adds up every mass exactly;
+     * around 0.5 is much faster with crowded grids
+     */
+    @ConfDisplayName("Gravity approximation")
+    @ConfXMLTag("gravityApproximation")
+    public float barnesHutTheta = 0;
+
     @ConfXMLTag("GravityParams")
     @ConfList(indexName = "Gravity", startAtOne = true)
     public GravityTypeParams[] gravityParams = new GravityTypeParams[0];
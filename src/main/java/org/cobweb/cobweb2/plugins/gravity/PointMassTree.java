@@ -0,0 +1,244 @@
+package org.cobweb.cobweb2.plugins.gravity;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.cobweb.cobweb2.core.Direction;
+import org.cobweb.cobweb2.core.Location;
+import org.cobweb.cobweb2.core.Topology;
+import org.cobweb.util.Pair;
+
+/**
+ * Barnes-Hut quadtree over the point masses of the environment.
+ *
+ * Each node knows the total mass and centre of mass of the point masses below it.
+ * When a node is small compared to its distance from an agent, its pull is approximated
+ * by a single mass at its centre of mass, so an agent only looks at O(log n) nodes.
+ * Distances to nodes are measured to the closest wrapped copy of the node, the same way
+ * Topology measures distances between locations.
+ */
+class PointMassTree {
+
+	/**
+	 * Most wrapped copies Topology.getWrapVirtualLocations() returns for a location.
+	 */
+	private static final int MAX_COPIES = 9;
+
+	private final Topology topology;
+
+	private int pointCount = 0;
+	private Location[] pointLocation = new Location[16];
+	private int[] pointMass = new int[16];
+
+	private int nodeCount = 0;
+	/** Indexes of the 4 children of each node, -1 where a quadrant is empty */
+	private int[] nodeChildren = new int[64];
+	/** Point of leaf nodes, -1 for inner nodes */
+	private int[] nodePoint = new int[16];
+	private int[] nodeMass = new int[16];
+	private Location[] nodeCentre = new Location[16];
+	/** Longest side of the bounding box of the points in each node */
+	private int[] nodeSize = new int[16];
+	/** Bounding box of each wrapped copy of a node: x0, y0, x1, y1 */
+	private int[] nodeCopies = new int[16 * MAX_COPIES * 4];
+	private int[] nodeCopyCount = new int[16];
+
+	PointMassTree(Topology topology) {
+		this.topology = topology;
+	}
+
+	void clear() {
+		pointCount = 0;
+		nodeCount = 0;
+	}
+
+	void addPoint(Location location, int mass) {
+		if (pointCount == pointMass.length) {
+			pointLocation = Arrays.copyOf(pointLocation, pointCount * 2);
+			pointMass = Arrays.copyOf(pointMass, pointCount * 2);
+		}
+		pointLocation[pointCount] = location;
+		pointMass[pointCount] = mass;
+		pointCount++;
+	}
+
+	/**
+	 * Builds the tree over the points added since clear().
+	 */
+	void build() {
+		nodeCount = 0;
+		if (pointCount > 0)
+			build(0, pointCount, 0, 0, topology.width, topology.height);
+	}
+
+	/**
+	 * Creates the node for points [from, to), which all lie in the region [x0, x1) x [y0, y1).
+	 */
+	private int build(int from, int to, int x0, int y0, int x1, int y1) {
+		int node = newNode();
+
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		int mass = 0;
+		double sumX = 0, sumY = 0;
+		for (int i = from; i < to; i++) {
+			Location l = pointLocation[i];
+			minX = Math.min(minX, l.x);
+			minY = Math.min(minY, l.y);
+			maxX = Math.max(maxX, l.x);
+			maxY = Math.max(maxY, l.y);
+			mass += pointMass[i];
+			sumX += (double) l.x * pointMass[i];
+			sumY += (double) l.y * pointMass[i];
+		}
+		nodeMass[node] = mass;
+		nodeSize[node] = Math.max(maxX - minX, maxY - minY) + 1;
+		nodeCentre[node] = mass > 0
+				? new Location((int) Math.round(sumX / mass), (int) Math.round(sumY / mass))
+				: null;
+		setCopies(node, minX, minY, maxX, maxY);
+
+		if (to - from == 1) {
+			nodePoint[node] = from;
+			return node;
+		}
+
+		int midX = (x0 + x1) / 2;
+		int midY = (y0 + y1) / 2;
+		int splitX = partition(from, to, midX, true);
+		int splitLeft = partition(from, splitX, midY, false);
+		int splitRight = partition(splitX, to, midY, false);
+
+		// Arrays may grow while building children, only index them afterwards
+		int nw = splitLeft > from ? build(from, splitLeft, x0, y0, midX, midY) : -1;
+		int sw = splitX > splitLeft ? build(splitLeft, splitX, x0, midY, midX, y1) : -1;
+		int ne = splitRight > splitX ? build(splitX, splitRight, midX, y0, x1, midY) : -1;
+		int se = to > splitRight ? build(splitRight, to, midX, midY, x1, y1) : -1;
+		nodeChildren[node * 4] = nw;
+		nodeChildren[node * 4 + 1] = sw;
+		nodeChildren[node * 4 + 2] = ne;
+		nodeChildren[node * 4 + 3] = se;
+		return node;
+	}
+
+	private int newNode() {
+		if (nodeCount == nodePoint.length) {
+			int size = nodeCount * 2;
+			nodeChildren = Arrays.copyOf(nodeChildren, size * 4);
+			nodePoint = Arrays.copyOf(nodePoint, size);
+			nodeMass = Arrays.copyOf(nodeMass, size);
+			nodeCentre = Arrays.copyOf(nodeCentre, size);
+			nodeSize = Arrays.copyOf(nodeSize, size);
+			nodeCopies = Arrays.copyOf(nodeCopies, size * MAX_COPIES * 4);
+			nodeCopyCount = Arrays.copyOf(nodeCopyCount, size);
+		}
+		nodePoint[nodeCount] = -1;
+		return nodeCount++;
+	}
+
+	private void setCopies(int node, int minX, int minY, int maxX, int maxY) {
+		// Every copy is a shift or a mirror of the original, so the corners stay corners
+		List<Location> low = topology.getWrapVirtualLocations(new Location(minX, minY));
+		List<Location> high = topology.getWrapVirtualLocations(new Location(maxX, maxY));
+		int base = node * MAX_COPIES * 4;
+		for (int i = 0; i < low.size(); i++) {
+			nodeCopies[base + i * 4] = Math.min(low.get(i).x, high.get(i).x);
+			nodeCopies[base + i * 4 + 1] = Math.min(low.get(i).y, high.get(i).y);
+			nodeCopies[base + i * 4 + 2] = Math.max(low.get(i).x, high.get(i).x);
+			nodeCopies[base + i * 4 + 3] = Math.max(low.get(i).y, high.get(i).y);
+		}
+		nodeCopyCount[node] = low.size();
+	}
+
+	/**
+	 * Moves points below the split value to the front of [from, to).
+	 *
+	 * @return index of the first point at or above the split value
+	 */
+	private int partition(int from, int to, int split, boolean byX) {
+		int i = from;
+		for (int j = from; j < to; j++) {
+			Location l = pointLocation[j];
+			if ((byX ? l.x : l.y) < split) {
+				Location tempLocation = pointLocation[i];
+				pointLocation[i] = l;
+				pointLocation[j] = tempLocation;
+				int tempMass = pointMass[i];
+				pointMass[i] = pointMass[j];
+				pointMass[j] = tempMass;
+				i++;
+			}
+		}
+		return i;
+	}
+
+	/**
+	 * Adds up the pull of every point mass exactly, in the order they were added.
+	 */
+	Pair<Double, Double> getExactForce(Location agentLoc, int agentMass, float gravitationalConstant) {
+		double[] force = new double[2];
+		for (int i = 0; i < pointCount; i++) {
+			addForce(agentLoc, pointLocation[i], pointMass[i], agentMass, gravitationalConstant, force);
+		}
+		return new Pair<>(force[0], force[1]);
+	}
+
+	/**
+	 * Adds up the pull of the point masses, treating nodes as a single mass when their
+	 * size is less than theta times their distance from the agent.
+	 */
+	Pair<Double, Double> getForce(Location agentLoc, int agentMass, float gravitationalConstant, float theta) {
+		double[] force = new double[2];
+		if (nodeCount > 0)
+			addForce(0, agentLoc, agentMass, gravitationalConstant, theta * theta, force);
+		return new Pair<>(force[0], force[1]);
+	}
+
+	private void addForce(int node, Location agentLoc, int agentMass, float gravitationalConstant, float thetaSquared, double[] force) {
+		int point = nodePoint[node];
+		if (point != -1) {
+			addForce(agentLoc, pointLocation[point], pointMass[point], agentMass, gravitationalConstant, force);
+			return;
+		}
+
+		if (nodeCentre[node] != null) {
+			double size = nodeSize[node];
+			if (size * size < thetaSquared * distanceSquared(node, agentLoc)) {
+				addForce(agentLoc, nodeCentre[node], nodeMass[node], agentMass, gravitationalConstant, force);
+				return;
+			}
+		}
+
+		for (int q = 0; q < 4; q++) {
+			int child = nodeChildren[node * 4 + q];
+			if (child != -1)
+				addForce(child, agentLoc, agentMass, gravitationalConstant, thetaSquared, force);
+		}
+	}
+
+	/**
+	 * @return squared distance from the location to the closest wrapped copy of the node's bounding box
+	 */
+	private double distanceSquared(int node, Location l) {
+		double best = Double.MAX_VALUE;
+		int base = node * MAX_COPIES * 4;
+		for (int i = 0; i < nodeCopyCount[node]; i++) {
+			int c = base + i * 4;
+			int dx = Math.max(0, Math.max(nodeCopies[c] - l.x, l.x - nodeCopies[c + 2]));
+			int dy = Math.max(0, Math.max(nodeCopies[c + 1] - l.y, l.y - nodeCopies[c + 3]));
+			best = Math.min(best, (double) dx * dx + (double) dy * dy);
+		}
+		return best;
+	}
+
+	private void addForce(Location agentLoc, Location massLoc, int mass, int agentMass, float gravitationalConstant, double[] force) {
+		if (agentLoc.equals(massLoc))
+			return;
+
+		double dis = topology.getDistanceSquared(agentLoc, massLoc);
+		double f = (gravitationalConstant * mass * agentMass) / dis;
+		Direction toPoint = topology.getDirectionBetween8way(agentLoc, massLoc);
+		force[0] += (toPoint.x / Math.sqrt(toPoint.x * toPoint.x + toPoint.y * toPoint.y)) * f;
+		force[1] += (toPoint.y / Math.sqrt(toPoint.x * toPoint.x + toPoint.y * toPoint.y)) * f;
+	}
+}
@@ -8,6 +8,7 @@ import org.cobweb.cobweb2.plugins.ControllerInputMutator;
 import org.cobweb.cobweb2.plugins.EnergyMutator;
 import org.cobweb.cobweb2.plugins.StatefulSpawnMutatorBase;
 import org.cobweb.cobweb2.plugins.UpdateMutator;
+import org.cobweb.util.CloneHelper;
 
 
 public class LearningMutator extends StatefulSpawnMutatorBase<LearningState>
@@ -26,12 +27,22 @@ implements EnergyMutator, ControllerInputMutator, UpdateMutator {
 	@Override
 	protected LearningState stateForNewAgent(Agent agent) {
 		LearningAgentParams typeParams = params.agentParams[agent.getType()];
-		return new LearningState(typeParams.clone());
+		return newState(agent, typeParams);
 	}
 
 	@Override
 	protected LearningState stateFromParent(Agent agent, LearningState parentState) {
-		return new LearningState(parentState.getAgentParams().clone());
+		return newState(agent, parentState.getAgentParams());
+	}
+
+	private LearningState newState(Agent agent, LearningAgentParams agentParams) {
+		LearningState state = takeRecycledState(agent);
+		if (state == null)
+			return new LearningState(agentParams.clone());
+
+		CloneHelper.copyInto(agentParams, state.getAgentParams());
+		state.setAgentParams(state.getAgentParams());
+		return state;
 	}
 
 	@Override
@@ -20,6 +20,9 @@ public class LearningState implements AgentState, Updatable {
 	}
 
 
+	/**
+	 * Sets the parameters and forgets everything recorded so far.
+	 */
 	@ConfXMLTag("AgentParams")
 	public void setAgentParams(LearningAgentParams agentParams) {
 		this.agentParams = agentParams;
@@ -27,12 +30,23 @@ public class LearningState implements AgentState, Updatable {
 		// Number of steps in learning cycle
 		cycleLength = agentParams.learningCycle.getValue();
 		// Remember input for every learning step
-		inputMemory = new CircularFifoQueue<>(cycleLength);
+		inputMemory = emptyQueue(inputMemory, cycleLength);
 
 		// Remember output for memorySteps steps after input step
 		memorySteps = agentParams.memorySteps.getValue();
-		consequences = new CircularFifoQueue<>(memorySteps + cycleLength);
+		consequences = emptyQueue(consequences, memorySteps + cycleLength);
 		cycleCounter = cycleLength;
+		currentConsequence.consequences.clear();
+	}
+
+	/**
+	 * @return queue emptied if it has the given size, otherwise a new queue
+	 */
+	private static <T> CircularFifoQueue<T> emptyQueue(CircularFifoQueue<T> queue, int size) {
+		if (queue == null || queue.maxSize() != size)
+			return new CircularFifoQueue<>(size);
+		queue.clear();
+		return queue;
 	}
 
 	int memorySteps;
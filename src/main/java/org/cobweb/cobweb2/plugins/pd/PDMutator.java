@@ -8,10 +8,17 @@ import org.cobweb.cobweb2.plugins.ContactMutator;
 import org.cobweb.cobweb2.plugins.StatefulSpawnMutatorBase;
 import org.cobweb.cobweb2.plugins.broadcast.CheaterBroadcast;
 import org.cobweb.cobweb2.plugins.broadcast.PacketConduit.BroadcastCause;
+import org.cobweb.util.CloneHelper;
 
 
 public class PDMutator extends StatefulSpawnMutatorBase<PDState> implements ContactMutator {
 
+	private static final PDRewardCause PD_REWARD_CAUSE = new PDRewardCause();
+	private static final PDSuckerCause PD_SUCKER_CAUSE = new PDSuckerCause();
+	private static final PDTemptationCause PD_TEMPTATION_CAUSE = new PDTemptationCause();
+	private static final PDPunishmentCause PD_PUNISHMENT_CAUSE = new PDPunishmentCause();
+	private static final BroadcastCheaterCause BROADCAST_CHEATER_CAUSE = new BroadcastCheaterCause();
+
 	SimulationInternals sim;
 	PDParams params;
 
@@ -29,7 +36,7 @@ public class PDMutator extends StatefulSpawnMutatorBase<PDState> implements Cont
 		if (!params.enable || !params.agentParams[agent.getType()].pdEnabled)
 			return null;
 
-		return new PDState(params.agentParams[agent.getType()].clone());
+		return newState(agent, params.agentParams[agent.getType()]);
 	}
 
 	@Override
@@ -37,7 +44,18 @@ public class PDMutator extends StatefulSpawnMutatorBase<PDState> implements Cont
 		if (!params.enable || !params.agentParams[agent.getType()].pdEnabled)
 			return null;
 
-		return new PDState(parentState.agentParams.clone());
+		return newState(agent, parentState.agentParams);
+	}
+
+	private PDState newState(Agent agent, PDAgentParams agentParams) {
+		PDState state = takeRecycledState(agent);
+		if (state == null)
+			return new PDState(agentParams.clone());
+
+		CloneHelper.copyInto(agentParams, state.agentParams);
+		state.pdCheater = false;
+		state.lastPDcheated = false;
+		return state;
 	}
 
 	@Override
@@ -154,23 +172,23 @@ public class PDMutator extends StatefulSpawnMutatorBase<PDState> implements Cont
 
 		if (!meState.pdCheater && !otherState.pdCheater) {
 			/* Both cooperate */
-			me.changeEnergy(+params.reward, new PDRewardCause());
-			adjacentAgent.changeEnergy(+params.reward, new PDRewardCause());
+			me.changeEnergy(+params.reward, PD_REWARD_CAUSE);
+			adjacentAgent.changeEnergy(+params.reward, PD_REWARD_CAUSE);
 
 		} else if (!meState.pdCheater && otherState.pdCheater) {
 			/* Only other agent cheats */
-			me.changeEnergy(+params.sucker, new PDSuckerCause());
-			adjacentAgent.changeEnergy(+params.temptation, new PDTemptationCause());
+			me.changeEnergy(+params.sucker, PD_SUCKER_CAUSE);
+			adjacentAgent.changeEnergy(+params.temptation, PD_TEMPTATION_CAUSE);
 
 		} else if (meState.pdCheater && !otherState.pdCheater) {
 			/* Only this agent cheats */
-			me.changeEnergy(+params.temptation, new PDTemptationCause());
-			adjacentAgent.changeEnergy(+params.sucker, new PDSuckerCause());
+			me.changeEnergy(+params.temptation, PD_TEMPTATION_CAUSE);
+			adjacentAgent.changeEnergy(+params.sucker, PD_SUCKER_CAUSE);
 
 		} else if (meState.pdCheater && otherState.pdCheater) {
 			/* Both cheat */
-			me.changeEnergy(+params.punishment, new PDPunishmentCause());
-			adjacentAgent.changeEnergy(+params.punishment, new PDPunishmentCause());
+			me.changeEnergy(+params.punishment, PD_PUNISHMENT_CAUSE);
+			adjacentAgent.changeEnergy(+params.punishment, PD_PUNISHMENT_CAUSE);
 		}
 
 		if (otherState.pdCheater)
@@ -184,7 +202,7 @@ public class PDMutator extends StatefulSpawnMutatorBase<PDState> implements Cont
 	 */
 	private static void iveBeenCheated(ComplexAgent me, Agent cheater) {
 		me.rememberBadAgent(cheater);
-		me.broadcast(new CheaterBroadcast(cheater, me), new BroadcastCheaterCause());
+		me.broadcast(new CheaterBroadcast(cheater, me), BROADCAST_CHEATER_CAUSE);
 	}
 
 	public static class PDCause implements Cause {
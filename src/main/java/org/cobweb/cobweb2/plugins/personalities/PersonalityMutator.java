@@ -16,6 +16,7 @@ import org.cobweb.cobweb2.plugins.pd.PDMutator.PDPunishmentCause;
 import org.cobweb.cobweb2.plugins.pd.PDMutator.PDRewardCause;
 import org.cobweb.cobweb2.plugins.pd.PDMutator.PDSuckerCause;
 import org.cobweb.cobweb2.plugins.pd.PDMutator.PDTemptationCause;
+import org.cobweb.util.CloneHelper;
 
 /*
  * So the mutator only controls the PD portion.
@@ -24,6 +25,11 @@ import org.cobweb.cobweb2.plugins.pd.PDMutator.PDTemptationCause;
  */
 public class PersonalityMutator extends StatefulSpawnMutatorBase<PersonalityState> implements ContactMutator, MoveMutator {
 
+	private static final PDRewardCause PD_REWARD_CAUSE = new PDRewardCause();
+	private static final PDSuckerCause PD_SUCKER_CAUSE = new PDSuckerCause();
+	private static final PDTemptationCause PD_TEMPTATION_CAUSE = new PDTemptationCause();
+	private static final PDPunishmentCause PD_PUNISHMENT_CAUSE = new PDPunishmentCause();
+
 	SimulationInternals sim;
 	PersonalityParams params;
 
@@ -127,7 +133,7 @@ public class PersonalityMutator extends StatefulSpawnMutatorBase<PersonalityStat
 		if (!params.personalitiesEnabled) {
 			return null;
 		}
-		return new PersonalityState(params.agentParams[agent.getType()].clone());
+		return newState(agent, params.agentParams[agent.getType()]);
 	}
 
 	@Override
@@ -136,7 +142,17 @@ public class PersonalityMutator extends StatefulSpawnMutatorBase<PersonalityStat
 			return null;
 		}
 
-		return new PersonalityState(parentState.agentParams.clone());
+		return newState(agent, parentState.agentParams);
+	}
+
+	private PersonalityState newState(Agent agent, PersonalityAgentParams agentParams) {
+		PersonalityState state = takeRecycledState(agent);
+		if (state == null)
+			return new PersonalityState(agentParams.clone());
+
+		CloneHelper.copyInto(agentParams, state.agentParams);
+		state.pdCheater = false;
+		return state;
 	}
 
 	@Override
@@ -206,23 +222,23 @@ public class PersonalityMutator extends StatefulSpawnMutatorBase<PersonalityStat
 
 		if (!meState.pdCheater && !otherState.pdCheater) {
 			/* Both cooperate */
-			me.changeEnergy(+params.reward, new PDRewardCause());
-			adjacentAgent.changeEnergy(+params.reward, new PDRewardCause());
+			me.changeEnergy(+params.reward, PD_REWARD_CAUSE);
+			adjacentAgent.changeEnergy(+params.reward, PD_REWARD_CAUSE);
 
 		} else if (!meState.pdCheater && otherState.pdCheater) {
 			/* Only other agent cheats */
-			me.changeEnergy(+params.sucker, new PDSuckerCause());
-			adjacentAgent.changeEnergy(+params.temptation, new PDTemptationCause());
+			me.changeEnergy(+params.sucker, PD_SUCKER_CAUSE);
+			adjacentAgent.changeEnergy(+params.temptation, PD_TEMPTATION_CAUSE);
 
 		} else if (meState.pdCheater && !otherState.pdCheater) {
 			/* Only this agent cheats */
-			me.changeEnergy(+params.temptation, new PDTemptationCause());
-			adjacentAgent.changeEnergy(+params.sucker, new PDSuckerCause());
+			me.changeEnergy(+params.temptation, PD_TEMPTATION_CAUSE);
+			adjacentAgent.changeEnergy(+params.sucker, PD_SUCKER_CAUSE);
 
 		} else if (meState.pdCheater && otherState.pdCheater) {
 			/* Both cheat */
-			me.changeEnergy(+params.punishment, new PDPunishmentCause());
-			adjacentAgent.changeEnergy(+params.punishment, new PDPunishmentCause());
+			me.changeEnergy(+params.punishment, PD_PUNISHMENT_CAUSE);
+			adjacentAgent.changeEnergy(+params.punishment, PD_PUNISHMENT_CAUSE);
 		}
 
 		if (otherState.pdCheater)
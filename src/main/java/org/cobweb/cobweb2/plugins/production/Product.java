@@ -7,6 +7,9 @@ import org.cobweb.cobweb2.plugins.TemporaryEffect;
 import org.cobweb.cobweb2.plugins.production.ProductionMapper.ProductionCause;
 
 public class Product implements Drop {
+	private static final ProductSoldCause PRODUCT_SOLD_CAUSE = new ProductSoldCause();
+	private static final ProductBoughtCause PRODUCT_BOUGHT_CAUSE = new ProductBoughtCause();
+
 	private final ProductionMapper productionMapper;
 	final Location loc;
 	private long expiryTime;
@@ -21,6 +24,27 @@ public class Product implements Drop {
 		productionMapper.getAgentState(producer).unsoldProducts++;
 	}
 
+	/**
+	 * Restores a product saved in a checkpoint. The production values it adds to are restored
+	 * separately, so they are not updated.
+	 */
+	Product(float value, Agent producer, ProductionMapper productionMapper, Location loc, long expiryTime) {
+		this.value = value;
+		this.producer = producer;
+		this.loc = loc;
+		this.productionMapper = productionMapper;
+		this.expiryTime = expiryTime;
+		productionMapper.getAgentState(producer).unsoldProducts++;
+	}
+
+	Agent getProducer() {
+		return producer;
+	}
+
+	long getExpiryTime() {
+		return expiryTime;
+	}
+
 	private Agent producer;
 	private float value;
 
@@ -59,8 +83,8 @@ public class Product implements Drop {
 			if (!buyer.enoughEnergy(price))
 				return;
 
-			producer.changeEnergy(+price, new ProductSoldCause());
-			buyer.changeEnergy(-price, new ProductBoughtCause());
+			producer.changeEnergy(+price, PRODUCT_SOLD_CAUSE);
+			buyer.changeEnergy(-price, PRODUCT_BOUGHT_CAUSE);
 
 			TemporaryEffect effect = new TemporaryEffect(
 					buyer,
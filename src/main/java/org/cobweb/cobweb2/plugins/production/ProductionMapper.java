@@ -1,5 +1,6 @@
 package org.cobweb.cobweb2.plugins.production;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
@@ -12,10 +13,14 @@ import org.cobweb.cobweb2.core.Drop;
 import org.cobweb.cobweb2.core.Environment;
 import org.cobweb.cobweb2.core.Location;
 import org.cobweb.cobweb2.core.LocationDirection;
+import org.cobweb.cobweb2.core.NullPhenotype;
 import org.cobweb.cobweb2.core.SimulationTimeSpace;
 import org.cobweb.cobweb2.core.StateParameter;
 import org.cobweb.cobweb2.core.StatePlugin;
+import org.cobweb.cobweb2.core.Topology;
 import org.cobweb.cobweb2.impl.ComplexAgent;
+import org.cobweb.cobweb2.io.CheckpointReader;
+import org.cobweb.cobweb2.io.CheckpointWriter;
 import org.cobweb.cobweb2.plugins.DropManager;
 import org.cobweb.cobweb2.plugins.EnvironmentMutator;
 import org.cobweb.cobweb2.plugins.LoggingMutator;
@@ -27,9 +32,27 @@ import org.cobweb.util.ArrayUtilities;
 public class ProductionMapper extends StatefulSpawnMutatorBase<ProductionState>
 implements StatePlugin, UpdateMutator, EnvironmentMutator, LoggingMutator, DropManager<Product> {
 
+	private static final ProduceProductCause PRODUCE_PRODUCT_CAUSE = new ProduceProductCause();
+
 	private Environment environment;
 	private float[][] vals;
 	private float maxValue;
+	private float demandEpsilon;
+
+	/**
+	 * Largest value in each BLOCK_SIZE x BLOCK_SIZE block of vals, recomputed when
+	 * getMax() is called after the block changed.
+	 */
+	private static final int BLOCK_SIZE = 8;
+	private float[][] blockMax;
+	private boolean[][] blockChanged;
+	private boolean maxChanged = false;
+
+	/**
+	 * Tiles already updated by the current updateValues() call are marked with updateStamp.
+	 */
+	private int[][] tileStamps;
+	private int updateStamp = 0;
 	SimulationTimeSpace simulation;
 	private ProductionAgentParams[] initialParams;
 
@@ -39,27 +62,52 @@ implements StatePlugin, UpdateMutator, EnvironmentMutator, LoggingMutator, DropM
 	}
 
 	public void updateValues(Product p, boolean addition) {
-		float newMax = 0;
-		for (int x = 0; x < vals.length; x++) {
-			for (int y = 0; y < vals[x].length; y++) {
+		Topology topology = simulation.getTopology();
+
+		if (++updateStamp == 0) {
+			for (int[] column : tileStamps)
+				Arrays.fill(column, 0);
+			updateStamp = 1;
+		}
+
+		// Tiles further than this from the product get less than demandEpsilon.
+		// Distances across the globe's poles can be off by one, so the area is widened by one tile.
+		int radius = demandEpsilon > 0
+				? (int) Math.ceil(Math.sqrt(Math.abs(p.getValue()) / demandEpsilon)) + 1
+				: Integer.MAX_VALUE;
+
+		if (radius >= topology.width && radius >= topology.height) {
+			updateArea(p, addition, 0, 0, topology.width - 1, topology.height - 1);
+		} else {
+			for (Location source : topology.getWrapVirtualLocations(p.getLocation())) {
+				updateArea(p, addition,
+						Math.max(0, source.x - radius), Math.max(0, source.y - radius),
+						Math.min(topology.width - 1, source.x + radius), Math.min(topology.height - 1, source.y + radius));
+			}
+		}
+
+		maxChanged = true;
+	}
+
+	private void updateArea(Product p, boolean addition, int x0, int y0, int x1, int y1) {
+		for (int x = x0; x <= x1; x++) {
+			for (int y = y0; y <= y1; y++) {
+				if (tileStamps[x][y] == updateStamp)
+					continue;
+				tileStamps[x][y] = updateStamp;
+
 				float value = getDifAtLoc(p, new Location(x, y));
+				if (demandEpsilon > 0 && value < demandEpsilon)
+					continue;
+
 				vals[x][y] += addition ? value : - value;
 
 				if (vals[x][y] < 0) {
 					vals[x][y] = 0;
 				}
-				if (vals[x][y] > newMax) {
-					newMax = vals[x][y];
-				}
+				blockChanged[x / BLOCK_SIZE][y / BLOCK_SIZE] = true;
 			}
 		}
-
-		// Accumulation errors could make this a very small number,
-		// and we only care about real values
-		if (newMax < 1)
-			newMax = 1;
-
-		maxValue = newMax;
 	}
 
 	private float getDifAtLoc(Product source, Location loc2) {
@@ -94,9 +142,45 @@ implements StatePlugin, UpdateMutator, EnvironmentMutator, LoggingMutator, DropM
 	}
 
 	public float getMax() {
+		if (maxChanged) {
+			float newMax = 0;
+			for (int bx = 0; bx < blockMax.length; bx++) {
+				for (int by = 0; by < blockMax[bx].length; by++) {
+					if (blockChanged[bx][by]) {
+						blockMax[bx][by] = getBlockMax(bx, by);
+						blockChanged[bx][by] = false;
+					}
+					if (blockMax[bx][by] > newMax) {
+						newMax = blockMax[bx][by];
+					}
+				}
+			}
+
+			// Accumulation errors could make this a very small number,
+			// and we only care about real values
+			if (newMax < 1)
+				newMax = 1;
+
+			maxValue = newMax;
+			maxChanged = false;
+		}
 		return maxValue;
 	}
 
+	private float getBlockMax(int bx, int by) {
+		float max = 0;
+		int x1 = Math.min(vals.length, (bx + 1) * BLOCK_SIZE);
+		int y1 = Math.min(vals[0].length, (by + 1) * BLOCK_SIZE);
+		for (int x = bx * BLOCK_SIZE; x < x1; x++) {
+			for (int y = by * BLOCK_SIZE; y < y1; y++) {
+				if (vals[x][y] > max) {
+					max = vals[x][y];
+				}
+			}
+		}
+		return max;
+	}
+
 	private class ProductHunt implements StateParameter {
 
 		@Override
@@ -134,7 +218,7 @@ implements StatePlugin, UpdateMutator, EnvironmentMutator, LoggingMutator, DropM
 		ProductionState agentState = getAgentState(owner);
 		Product prod = new Product(value, owner, this, agentState.agentParams.productExpiry.getValue());
 
-		owner.changeEnergy(-agentState.agentParams.productionCost.getValue(), new ProduceProductCause());
+		owner.changeEnergy(-agentState.agentParams.productionCost.getValue(), PRODUCE_PRODUCT_CAUSE);
 
 		environment.addDrop(prod.loc, prod);
 	}
@@ -144,6 +228,53 @@ implements StatePlugin, UpdateMutator, EnvironmentMutator, LoggingMutator, DropM
 		environment.removeDrop(p.loc);
 	}
 
+	public void saveDrop(Product p, CheckpointWriter out) throws IOException {
+		out.writeFloat(p.getValue());
+		out.writeAgent((ComplexAgent) p.getProducer());
+		out.writeLong(p.getExpiryTime());
+	}
+
+	/**
+	 * Drops a product saved by saveDrop() at the given location.
+	 * The production values are restored by loadState().
+	 */
+	public void loadDrop(Location loc, CheckpointReader in) throws IOException {
+		float value = in.readFloat();
+		ComplexAgent producer = in.readAgent();
+		long expiryTime = in.readLong();
+		environment.addDrop(loc, new Product(value, producer, this, loc, expiryTime));
+	}
+
+	/**
+	 * Writes the production values of every location. Active effects of sold products are not
+	 * written, they are only allowed when they do not change anything.
+	 *
+	 * @throws IllegalStateException when effects of sold products change agents, they cannot be saved
+	 */
+	public void saveState(CheckpointWriter out) throws IOException {
+		for (TemporaryEffect effect : effects) {
+			if (!(effect.parameter instanceof NullPhenotype))
+				throw new IllegalStateException("Effects of sold products are active, they cannot be saved");
+		}
+		out.writeInt(vals.length);
+		for (float[] column : vals)
+			out.writeFloatArray(column);
+	}
+
+	public void loadState(CheckpointReader in) throws IOException {
+		if (in.readInt() != vals.length)
+			throw new IOException("Checkpoint environment has a different size");
+		for (int x = 0; x < vals.length; x++) {
+			float[] column = in.readFloatArray();
+			if (column.length != vals[x].length)
+				throw new IOException("Checkpoint environment has a different size");
+			vals[x] = column;
+		}
+		for (boolean[] column : blockChanged)
+			Arrays.fill(column, true);
+		maxChanged = true;
+	}
+
 	private boolean roll(float chance) {
 		return chance > simulation.getRandom().nextFloat();
 	}
@@ -275,13 +406,26 @@ implements StatePlugin, UpdateMutator, EnvironmentMutator, LoggingMutator, DropM
 
 	public void setParams(ProductionParams productionParams, Environment env, boolean keepOldProducts) {
 		initialParams = productionParams.agentParams;
+		demandEpsilon = productionParams.demandEpsilon;
 		environment = env;
 
+		int width = simulation.getTopology().width;
+		int height = simulation.getTopology().height;
 		if (vals == null || !keepOldProducts) {
-			vals = new float[simulation.getTopology().width][simulation.getTopology().height];
+			vals = new float[width][height];
 		} else {
-			vals = ArrayUtilities.resizeArray(vals, simulation.getTopology().width, simulation.getTopology().height);
+			vals = ArrayUtilities.resizeArray(vals, width, height);
+			maxChanged = true;
 		}
+
+		int blocksX = (width + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		int blocksY = (height + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		blockMax = new float[blocksX][blocksY];
+		blockChanged = new boolean[blocksX][blocksY];
+		for (boolean[] column : blockChanged)
+			Arrays.fill(column, true);
+		tileStamps = new int[width][height];
+		updateStamp = 0;
 	}
 
 	public static class ProductionCause implements Cause {
@@ -6,6 +6,8 @@ import java.util.List;
 import org.cobweb.cobweb2.core.AgentFoodCountable;
 import org.cobweb.cobweb2.core.StatePluginSource;
 import org.cobweb.cobweb2.plugins.PerAgentParams;
+import org.cobweb.io.ConfDisplayName;
+import org.cobweb.io.ConfXMLTag;
 
 
 public class ProductionParams extends PerAgentParams<ProductionAgentParams> implements StatePluginSource {
@@ -14,6 +16,14 @@ public class ProductionParams extends PerAgentParams<ProductionAgentParams> impl
 		super(ProductionAgentParams.class, envParams);
 	}
 
+	/**
+	 * Products only raise the prodVal of tiles where they would raise it by at least this much.
+	 * 0 spreads every product over the whole map, exactly as before this setting existed.
+	 */
+	@ConfXMLTag("DemandEpsilon")
+	@ConfDisplayName("Smallest prodVal a product adds to a tile")
+	public float demandEpsilon = 0;
+
 	@Override
 	protected ProductionAgentParams newAgentParam() {
 		return new ProductionAgentParams();
@@ -1,6 +1,6 @@
 package org.cobweb.cobweb2.plugins.stats;
 
-import java.util.LinkedList;
+import java.util.AbstractList;
 import java.util.List;
 
 import org.cobweb.cobweb2.core.Agent;
@@ -10,7 +10,10 @@ import org.cobweb.cobweb2.plugins.AgentState;
 
 public class AgentStatistics implements AgentState, Comparable<AgentStatistics> {
 
-	public final int id;
+	/**
+	 * Agent id, only known once the agent has been added to the simulation, see updateId()
+	 */
+	public int id;
 	public final int type;
 
 	public final long birthTick;
@@ -24,7 +27,15 @@ public class AgentStatistics implements AgentState, Comparable<AgentStatistics>
 	public int countTurns;
 
 	private static final int MAX_PATH_HISTORY = 32;
-	public List<Location> path = new LinkedList<Location>();
+
+	/**
+	 * Ring buffer of the last locations the agent moved to, with x and y packed into one int.
+	 * null while the path is not tracked.
+	 */
+	private int[] pathCells;
+	private int pathStart;
+	private int pathLength;
+	private transient PathView pathView;
 
 	public int countAgentBumps;
 
@@ -48,10 +59,25 @@ public class AgentStatistics implements AgentState, Comparable<AgentStatistics>
 	public int energyLossMovement = 0;
 	public int energyLossReproduction = 0;
 
+	/**
+	 * Position in StatsMutator's list of living agents, -1 once the agent is dead
+	 */
+	int liveIndex = -1;
+
+	/**
+	 * The agent while it is alive
+	 */
+	private transient Agent agent;
+
 	public AgentStatistics(Agent agent, long time, int parent1id, int parent2id) {
-		id = agent.id;
-		type = agent.getType();
-		birthTick = time;
+		this(agent.id, agent.getType(), time, parent1id, parent2id);
+		this.agent = agent;
+	}
+
+	AgentStatistics(int id, int type, long birthTick, int parent1id, int parent2id) {
+		this.id = id;
+		this.type = type;
+		this.birthTick = birthTick;
 		this.parent1id = parent1id;
 		this.parent2id = parent2id;
 	}
@@ -85,12 +111,77 @@ public class AgentStatistics implements AgentState, Comparable<AgentStatistics>
 		if (loc.y < boundNorth)
 			boundNorth = loc.y;
 
-		path.add(loc);
-		if (path.size() > MAX_PATH_HISTORY) {
-			path.remove(0);
+		if (pathCells == null)
+			return;
+
+		int end = pathStart + pathLength;
+		if (end >= MAX_PATH_HISTORY)
+			end -= MAX_PATH_HISTORY;
+		pathCells[end] = (loc.x << 16) | loc.y;
+		if (pathLength < MAX_PATH_HISTORY) {
+			pathLength++;
+		} else if (++pathStart == MAX_PATH_HISTORY) {
+			pathStart = 0;
+		}
+	}
+
+	/**
+	 * Starts or stops keeping the last locations of the agent. Stopping forgets the path.
+	 */
+	public void setPathTracked(boolean tracked) {
+		if (tracked && pathCells == null) {
+			pathCells = new int[MAX_PATH_HISTORY];
+			pathStart = 0;
+			pathLength = 0;
+		} else if (!tracked) {
+			pathCells = null;
+			pathView = null;
+		}
+	}
+
+	public boolean isPathTracked() {
+		return pathCells != null;
+	}
+
+	/**
+	 * @return read-only view of the last locations of the agent, oldest first,
+	 * null if the path is not tracked
+	 */
+	public List<Location> getPath() {
+		if (pathCells == null)
+			return null;
+		if (pathView == null)
+			pathView = new PathView();
+		return pathView;
+	}
+
+	private class PathView extends AbstractList<Location> {
+		@Override
+		public Location get(int index) {
+			if (index < 0 || index >= pathLength)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + pathLength);
+			int cell = pathCells[(pathStart + index) % MAX_PATH_HISTORY];
+			return new Location(cell >>> 16, cell & 0xFFFF);
+		}
+
+		@Override
+		public int size() {
+			return pathLength;
 		}
 	}
 
+	/**
+	 * Copies the id of the agent, which is assigned after the agent spawns.
+	 *
+	 * @param alive false to stop tracking the agent, when it dies
+	 */
+	void updateId(boolean alive) {
+		if (agent != null)
+			id = agent.id;
+		if (!alive)
+			agent = null;
+	}
+
 	public void addSexPreg() {
 		sexualPregs++;
 	}
@@ -7,7 +7,6 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
-import java.util.Set;
 
 import org.cobweb.cobweb2.core.Cause;
 import org.cobweb.cobweb2.plugins.stats.CauseTree.CauseTreeNode;
@@ -17,14 +16,41 @@ public class CauseTree implements Iterable<CauseTreeNode> {
 
 	public CauseTreeNode root = new CauseTreeNode(null, Cause.class);
 
-	public CauseTree() {
-		Reflections reflections = new Reflections("org.cobweb.cobweb2");
-		Set<Class<? extends Cause>> causeTypes = reflections.getSubTypesOf(Cause.class);
+	private CauseTreeNode[] nodes;
 
-		for (Class<? extends Cause> ct : causeTypes) {
-			if (ct.isInterface() || Modifier.isAbstract(ct.getModifiers()))
-				continue;
+	/**
+	 * Id of the parent of each node, -1 for the root
+	 */
+	private int[] parentIds;
 
+	private final ClassValue<Integer> causeIds = new ClassValue<Integer>() {
+		@Override
+		protected Integer computeValue(Class<?> type) {
+			return findNode(root, type).id;
+		}
+	};
+
+	/**
+	 * Cause classes found on the class path. Every simulation builds its own tree, but scanning
+	 * the class path is slow, so it is done once and shared by every thread.
+	 */
+	private static class CauseTypes {
+		static final List<Class<? extends Cause>> ALL;
+
+		static {
+			Reflections reflections = new Reflections("org.cobweb.cobweb2");
+			List<Class<? extends Cause>> causeTypes = new ArrayList<>();
+			for (Class<? extends Cause> ct : reflections.getSubTypesOf(Cause.class)) {
+				if (ct.isInterface() || Modifier.isAbstract(ct.getModifiers()))
+					continue;
+				causeTypes.add(ct);
+			}
+			ALL = Collections.unmodifiableList(causeTypes);
+		}
+	}
+
+	public CauseTree() {
+		for (Class<? extends Cause> ct : CauseTypes.ALL) {
 			try {
 				Cause instance = ct.newInstance();
 				CauseTreeNode thisNode = new CauseTreeNode(instance, ct);
@@ -33,6 +59,52 @@ public class CauseTree implements Iterable<CauseTreeNode> {
 				throw new RuntimeException(ex);
 			}
 		}
+
+		// Number nodes breadth first, so the root is 0 and parents come before their children
+		List<CauseTreeNode> list = new ArrayList<>();
+		for (CauseTreeNode node : this) {
+			node.id = list.size();
+			list.add(node);
+		}
+		nodes = list.toArray(new CauseTreeNode[list.size()]);
+		parentIds = new int[nodes.length];
+		for (CauseTreeNode node : nodes) {
+			parentIds[node.id] = node.parent == null ? -1 : node.parent.id;
+		}
+	}
+
+	/**
+	 * @return number of nodes, ids are 0 to size() - 1
+	 */
+	public int size() {
+		return nodes.length;
+	}
+
+	public CauseTreeNode getNode(int id) {
+		return nodes[id];
+	}
+
+	/**
+	 * @return id of the parent of the node, -1 for the root
+	 */
+	public int getParentId(int id) {
+		return parentIds[id];
+	}
+
+	/**
+	 * Gets the id of the node of a Cause type. Types the tree was not built with get the id
+	 * of the most specific node that accepts them.
+	 */
+	public int getId(Class<? extends Cause> type) {
+		return causeIds.get(type);
+	}
+
+	private static CauseTreeNode findNode(CauseTreeNode node, Class<?> type) {
+		for (CauseTreeNode child : node.children) {
+			if (child.type.isAssignableFrom(type))
+				return findNode(child, type);
+		}
+		return node;
 	}
 
 	@Override
@@ -70,6 +142,8 @@ public class CauseTree implements Iterable<CauseTreeNode> {
 		public Cause cause;
 		public CauseTreeNode parent;
 		public List<CauseTreeNode> children = new ArrayList<>();
+		/** Index of the node in the tree, assigned once the tree is built */
+		public int id;
 
 		public CauseTreeNode(Cause cause, Class<? extends Cause> type) {
 			this.cause = cause;
@@ -1,10 +1,11 @@
 package org.cobweb.cobweb2.plugins.stats;
 
-import java.util.HashMap;
+import java.util.BitSet;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.cobweb.cobweb2.core.Agent;
 import org.cobweb.cobweb2.core.Cause;
@@ -18,43 +19,30 @@ import org.cobweb.cobweb2.plugins.stats.CauseTree.CauseTreeNode;
 
 public class EnergyStats implements EnergyMutator, EnvironmentMutator {
 
-	public Map<Location, LocationStats> locationStats = new HashMap<>();
+	/**
+	 * Energy changes at each location since the last update. Agents updated in parallel add to
+	 * it from several threads, each LocationStats is updated while holding its lock.
+	 */
+	public ConcurrentMap<Location, LocationStats> locationStats = new ConcurrentHashMap<>();
 
 	public static class LocationStats {
 		public int count;
 		public float total;
 	}
 
-	public static class CauseStats {
-		public CauseStats(CauseTreeNode node) {
-			this.node = node;
-		}
-		public int count = 0;
-		public double totalDelta = 0;
-		public CauseTreeNode node;
-
-		@Override
-		public String toString() {
-			return node.getName() + " count: " + count + " total: " + totalDelta;
-		}
-
-		public void reset() {
-			count = 0;
-			totalDelta = 0;
-		}
-	}
+	public CauseTree causeTree = new CauseTree();
 
-	public Map<Class<? extends Cause>, CauseStats> causeStats = new HashMap<>();
+	// Indexed by CauseTree node id
+	private final AtomicLongArray causeCounts = new AtomicLongArray(causeTree.size());
+	private final AtomicLongArray causeTotals = new AtomicLongArray(causeTree.size());
 
-	public CauseTree causeTree = new CauseTree();
+	/**
+	 * Node ids of the causes that pass the white and black lists
+	 */
+	private volatile BitSet watching = new BitSet(causeTree.size());
 
 	public EnergyStats() {
-		Iterator<CauseTreeNode> iterator = causeTree.iterator();
-		while (iterator.hasNext()) {
-			CauseTreeNode node = iterator.next();
-			CauseStats stats = new CauseStats(node);
-			causeStats.put(node.type, stats);
-		}
+		updateWatching();
 	}
 
 	@Override
@@ -63,12 +51,12 @@ public class EnergyStats implements EnergyMutator, EnvironmentMutator {
 		if (loc == null)
 			return;
 
-		Class<? extends Cause> causeClass = cause.getClass();
+		int causeId = causeTree.getId(cause.getClass());
 
-		if (!isWatching(causeClass))
+		if (!watching.get(causeId))
 			return;
 
-		updateCauseStats(delta, causeClass);
+		updateCauseStats(delta, causeId);
 
 		updateLocationStats(delta, loc);
 	}
@@ -76,33 +64,49 @@ public class EnergyStats implements EnergyMutator, EnvironmentMutator {
 	private void updateLocationStats(int delta, LocationDirection loc) {
 		LocationStats stats = locationStats.get(loc);
 		if (stats == null) {
-			stats = new LocationStats();
-			locationStats.put(loc, stats);
+			LocationStats created = new LocationStats();
+			stats = locationStats.putIfAbsent(loc, created);
+			if (stats == null)
+				stats = created;
 		}
 
-		stats.count++;
-		stats.total += delta;
+		synchronized (stats) {
+			stats.count++;
+			stats.total += delta;
+		}
 	}
 
-	private void updateCauseStats(int delta, Class<? extends Cause> causeClass) {
-		CauseStats stats = causeStats.get(causeClass);
-		do {
-			stats.count++;
-			stats.totalDelta += delta;
-			if (stats.node.parent == null)
-				break;
-			stats = causeStats.get(stats.node.parent.type);
-		} while (stats != null);
+	private void updateCauseStats(int delta, int causeId) {
+		for (int id = causeId; id != -1; id = causeTree.getParentId(id)) {
+			causeCounts.incrementAndGet(id);
+			causeTotals.addAndGet(id, delta);
+		}
+	}
+
+	/**
+	 * @return number of energy changes caused by the node's Cause type or its subtypes
+	 */
+	public long getCount(CauseTreeNode node) {
+		return causeCounts.get(node.id);
+	}
+
+	/**
+	 * @return total energy change caused by the node's Cause type or its subtypes
+	 */
+	public long getTotalDelta(CauseTreeNode node) {
+		return causeTotals.get(node.id);
 	}
 
 	public void resetStats() {
-		for (CauseStats v : causeStats.values())
-			v.reset();
+		for (int id = 0; id < causeCounts.length(); id++) {
+			causeCounts.set(id, 0);
+			causeTotals.set(id, 0);
+		}
 	}
 
 	@Override
 	public void update() {
-		locationStats = new HashMap<>();
+		locationStats = new ConcurrentHashMap<>();
 	}
 
 	@Override
@@ -113,16 +117,28 @@ public class EnergyStats implements EnergyMutator, EnvironmentMutator {
 	public void whitelist(Class<? extends Cause> type) {
 		blackList.remove(type);
 		whiteList.add(type);
+		updateWatching();
 	}
 
 	public void blacklist(Class<? extends Cause> type) {
 		whiteList.remove(type);
 		blackList.add(type);
+		updateWatching();
 	}
 
 	public void unlist(Class<? extends Cause> type) {
 		whiteList.remove(type);
 		blackList.remove(type);
+		updateWatching();
+	}
+
+	private void updateWatching() {
+		BitSet result = new BitSet(causeTree.size());
+		for (int id = 0; id < causeTree.size(); id++) {
+			if (isWatching(causeTree.getNode(id).type))
+				result.set(id);
+		}
+		watching = result;
 	}
 
 	public Set<Class<? extends Cause>> whiteList = new HashSet<>();
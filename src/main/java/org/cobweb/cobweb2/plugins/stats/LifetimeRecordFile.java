@@ -0,0 +1,241 @@
+package org.cobweb.cobweb2.plugins.stats;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Temporary file holding the AgentStatistics of dead agents.
+ *
+ * Records have a fixed size and are appended in the order agents die. The id of each record is
+ * kept in memory, so the records can be read back sorted by id, and a record can be written again
+ * when a dead agent's statistics change, such as when it is the other parent of a child born after
+ * its death.
+ */
+class LifetimeRecordFile {
+
+	private static final int RECORD_SIZE = 2 * 8 + 23 * 4;
+
+	private static final int RECORDS_PER_READ = 1024;
+
+	private final File file;
+
+	private final FileChannel channel;
+
+	private final ByteBuffer writeBuffer = ByteBuffer.allocate(RECORD_SIZE);
+
+	private int recordCount = 0;
+
+	/**
+	 * Agent id of each record, in the order they are in the file.
+	 */
+	private int[] recordIds = new int[RECORDS_PER_READ];
+
+	LifetimeRecordFile() {
+		try {
+			file = File.createTempFile("cobweb2-agents", ".bin");
+			file.deleteOnExit();
+			channel = new RandomAccessFile(file, "rw").getChannel();
+		} catch (IOException ex) {
+			throw new RuntimeException("Cannot create agent statistics file", ex);
+		}
+	}
+
+	/**
+	 * Writes the record of an agent, replacing the previous one if the agent already has one.
+	 */
+	synchronized void write(AgentStatistics stats, boolean replace) {
+		ByteBuffer b = writeBuffer;
+		b.clear();
+		b.putInt(stats.id);
+		b.putInt(stats.type);
+		b.putLong(stats.birthTick);
+		b.putLong(stats.deathTick);
+		b.putInt(stats.parent1id);
+		b.putInt(stats.parent2id);
+		b.putInt(stats.directChildren);
+		b.putInt(stats.sexualPregs);
+		b.putInt(stats.countSteps);
+		b.putInt(stats.countTurns);
+		b.putInt(stats.countAgentBumps);
+		b.putInt(stats.countRockBumps);
+		b.putInt(stats.pdReward);
+		b.putInt(stats.pdTemptation);
+		b.putInt(stats.pdSucker);
+		b.putInt(stats.pdPunishment);
+		b.putInt(stats.boundNorth);
+		b.putInt(stats.boundEast);
+		b.putInt(stats.boundSouth);
+		b.putInt(stats.boundWest);
+		b.putInt(stats.energyGainFoodMine);
+		b.putInt(stats.energyGainFoodOther);
+		b.putInt(stats.energyGainFoodAgents);
+		b.putInt(stats.energyLossMovement);
+		b.putInt(stats.energyLossReproduction);
+		b.flip();
+
+		int record = replace ? findRecord(stats.id) : -1;
+		if (record == -1) {
+			if (recordCount == recordIds.length)
+				recordIds = Arrays.copyOf(recordIds, recordIds.length * 2);
+			record = recordCount++;
+			recordIds[record] = stats.id;
+		}
+		try {
+			long position = (long) record * RECORD_SIZE;
+			while (b.hasRemaining())
+				position += channel.write(b, position);
+		} catch (IOException ex) {
+			throw new RuntimeException("Cannot write agent statistics file", ex);
+		}
+	}
+
+	/**
+	 * Finds the record of an agent, starting from the last one written: records are only written
+	 * again shortly after the agent died.
+	 *
+	 * @return position of the record in the file, -1 if the agent has none
+	 */
+	private int findRecord(int id) {
+		for (int record = recordCount - 1; record >= 0; record--) {
+			if (recordIds[record] == id)
+				return record;
+		}
+		return -1;
+	}
+
+	private static AgentStatistics read(ByteBuffer b) {
+		int id = b.getInt();
+		int type = b.getInt();
+		long birthTick = b.getLong();
+		long deathTick = b.getLong();
+		int parent1id = b.getInt();
+		int parent2id = b.getInt();
+		AgentStatistics stats = new AgentStatistics(id, type, birthTick, parent1id, parent2id);
+		stats.deathTick = deathTick;
+		stats.directChildren = b.getInt();
+		stats.sexualPregs = b.getInt();
+		stats.countSteps = b.getInt();
+		stats.countTurns = b.getInt();
+		stats.countAgentBumps = b.getInt();
+		stats.countRockBumps = b.getInt();
+		stats.pdReward = b.getInt();
+		stats.pdTemptation = b.getInt();
+		stats.pdSucker = b.getInt();
+		stats.pdPunishment = b.getInt();
+		stats.boundNorth = b.getInt();
+		stats.boundEast = b.getInt();
+		stats.boundSouth = b.getInt();
+		stats.boundWest = b.getInt();
+		stats.energyGainFoodMine = b.getInt();
+		stats.energyGainFoodOther = b.getInt();
+		stats.energyGainFoodAgents = b.getInt();
+		stats.energyLossMovement = b.getInt();
+		stats.energyLossReproduction = b.getInt();
+		return stats;
+	}
+
+	/**
+	 * @return number of agents with a record
+	 */
+	synchronized int size() {
+		return recordCount;
+	}
+
+	/**
+	 * Reads the records in order of agent id. Records next to each other in the file are read a
+	 * block at a time. The file must not be written to while the records are read.
+	 */
+	synchronized Iterator<AgentStatistics> iterator() {
+		// Agent id in the high half, position of the record in the low half
+		final long[] order = new long[recordCount];
+		for (int record = 0; record < recordCount; record++) {
+			order[record] = (long) recordIds[record] << 32 | record;
+		}
+		Arrays.sort(order);
+
+		return new Iterator<AgentStatistics>() {
+			private final ByteBuffer readBuffer = ByteBuffer.allocate(RECORD_SIZE * RECORDS_PER_READ);
+			private int nextOrder = 0;
+			private AgentStatistics next = null;
+
+			{
+				readBuffer.flip();
+				advance();
+			}
+
+			private void advance() {
+				next = null;
+				if (!readBuffer.hasRemaining()) {
+					if (nextOrder == order.length)
+						return;
+					fill();
+				}
+				next = read(readBuffer);
+			}
+
+			/**
+			 * Reads the next records in id order that follow each other in the file.
+			 */
+			private void fill() {
+				int first = (int) order[nextOrder];
+				int count = 1;
+				while (count < RECORDS_PER_READ && nextOrder + count < order.length
+						&& (int) order[nextOrder + count] == first + count)
+					count++;
+				nextOrder += count;
+
+				readBuffer.clear();
+				readBuffer.limit(count * RECORD_SIZE);
+				try {
+					long position = (long) first * RECORD_SIZE;
+					while (readBuffer.hasRemaining()) {
+						int read = channel.read(readBuffer, position);
+						if (read < 0)
+							throw new IOException("Agent statistics file is shorter than expected");
+						position += read;
+					}
+				} catch (IOException ex) {
+					throw new RuntimeException("Cannot read agent statistics file", ex);
+				}
+				readBuffer.flip();
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public AgentStatistics next() {
+				if (next == null)
+					throw new NoSuchElementException();
+				AgentStatistics result = next;
+				advance();
+				return result;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Closes and deletes the file.
+	 */
+	synchronized void delete() {
+		try {
+			channel.close();
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+		file.delete();
+	}
+}
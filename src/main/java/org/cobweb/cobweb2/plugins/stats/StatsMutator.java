@@ -1,8 +1,10 @@
 package org.cobweb.cobweb2.plugins.stats;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.cobweb.cobweb2.core.Agent;
 import org.cobweb.cobweb2.core.Cause;
@@ -43,48 +45,104 @@ implements EnergyMutator, SpawnMutator, StepMutator {
 		if (stats == null) // Agent is dead
 			return;
 
-		// movement
-		if (cause instanceof StepForwardCause) {
-			stats.countSteps++;
-			stats.energyLossMovement -= delta;
-		} else if (cause instanceof TurnCause) {
-			stats.countTurns++;
-			stats.energyLossMovement -= delta;
-		} else if (cause instanceof BumpWallCause) {
-			stats.countRockBumps++;
-			stats.energyLossMovement -= delta;
-		} else if (cause instanceof BumpAgentCause) {
-			stats.countAgentBumps++;
-			stats.energyLossMovement -= delta;
-		}
-		// food
-		else if (cause instanceof EatFavoriteFoodCause) {
-			stats.energyGainFoodMine +=delta;
-		} else if (cause instanceof EatFoodCause) {
-			stats.energyGainFoodOther += delta;
-		} else if (cause instanceof EatAgentCause) {
-			stats.energyGainFoodAgents += delta;
-		}
-		// PD
-		else if (cause instanceof PDRewardCause) {
-			stats.pdReward++;
-		} else if (cause instanceof PDSuckerCause) {
-			stats.pdSucker++;
-		} else if (cause instanceof PDTemptationCause) {
-			stats.pdTemptation++;
-		} else if (cause instanceof PDPunishmentCause) {
-			stats.pdPunishment++;
-		}
-		// reproduction
-		else if (cause instanceof ReproductionCause) {
-			stats.energyLossReproduction -= delta;
-			if (cause instanceof SexualReproductionCause)
+		switch (CAUSE_KINDS.get(cause.getClass())) {
+			// movement
+			case STEP:
+				stats.countSteps++;
+				stats.energyLossMovement -= delta;
+				break;
+			case TURN:
+				stats.countTurns++;
+				stats.energyLossMovement -= delta;
+				break;
+			case BUMP_WALL:
+				stats.countRockBumps++;
+				stats.energyLossMovement -= delta;
+				break;
+			case BUMP_AGENT:
+				stats.countAgentBumps++;
+				stats.energyLossMovement -= delta;
+				break;
+			// food
+			case EAT_FAVORITE_FOOD:
+				stats.energyGainFoodMine += delta;
+				break;
+			case EAT_FOOD:
+				stats.energyGainFoodOther += delta;
+				break;
+			case EAT_AGENT:
+				stats.energyGainFoodAgents += delta;
+				break;
+			// PD
+			case PD_REWARD:
+				stats.pdReward++;
+				break;
+			case PD_SUCKER:
+				stats.pdSucker++;
+				break;
+			case PD_TEMPTATION:
+				stats.pdTemptation++;
+				break;
+			case PD_PUNISHMENT:
+				stats.pdPunishment++;
+				break;
+			// reproduction
+			case SEXUAL_REPRODUCTION:
+				stats.energyLossReproduction -= delta;
 				stats.sexualPregs++;
+				break;
+			case REPRODUCTION:
+				stats.energyLossReproduction -= delta;
+				break;
+			case OTHER:
+				break;
 		}
+	}
 
-
+	private enum CauseKind {
+		STEP, TURN, BUMP_WALL, BUMP_AGENT,
+		EAT_FAVORITE_FOOD, EAT_FOOD, EAT_AGENT,
+		PD_REWARD, PD_SUCKER, PD_TEMPTATION, PD_PUNISHMENT,
+		SEXUAL_REPRODUCTION, REPRODUCTION,
+		OTHER
 	}
 
+	/**
+	 * Which statistic each Cause type counts towards, worked out once per type.
+	 */
+	private static final ClassValue<CauseKind> CAUSE_KINDS = new ClassValue<CauseKind>() {
+		@Override
+		protected CauseKind computeValue(Class<?> type) {
+			if (StepForwardCause.class.isAssignableFrom(type))
+				return CauseKind.STEP;
+			if (TurnCause.class.isAssignableFrom(type))
+				return CauseKind.TURN;
+			if (BumpWallCause.class.isAssignableFrom(type))
+				return CauseKind.BUMP_WALL;
+			if (BumpAgentCause.class.isAssignableFrom(type))
+				return CauseKind.BUMP_AGENT;
+			if (EatFavoriteFoodCause.class.isAssignableFrom(type))
+				return CauseKind.EAT_FAVORITE_FOOD;
+			if (EatFoodCause.class.isAssignableFrom(type))
+				return CauseKind.EAT_FOOD;
+			if (EatAgentCause.class.isAssignableFrom(type))
+				return CauseKind.EAT_AGENT;
+			if (PDRewardCause.class.isAssignableFrom(type))
+				return CauseKind.PD_REWARD;
+			if (PDSuckerCause.class.isAssignableFrom(type))
+				return CauseKind.PD_SUCKER;
+			if (PDTemptationCause.class.isAssignableFrom(type))
+				return CauseKind.PD_TEMPTATION;
+			if (PDPunishmentCause.class.isAssignableFrom(type))
+				return CauseKind.PD_PUNISHMENT;
+			if (SexualReproductionCause.class.isAssignableFrom(type))
+				return CauseKind.SEXUAL_REPRODUCTION;
+			if (ReproductionCause.class.isAssignableFrom(type))
+				return CauseKind.REPRODUCTION;
+			return CauseKind.OTHER;
+		}
+	};
+
 	@Override
 	public void onStep(Agent agent, Location from, Location to) {
 		if (to == null)
@@ -101,7 +159,25 @@ implements EnergyMutator, SpawnMutator, StepMutator {
 		if (stats == null)
 			return;
 		stats.deathTick = sim.getTime();
-		stats.path = null;
+		stats.setPathTracked(false);
+
+		stats.updateId(false);
+		removeLive(stats);
+		// Agents born during a parallel update get their id after it, see onNumbered()
+		if (stats.id != 0)
+			getRecordFile().write(stats, false);
+	}
+
+	/**
+	 * Called when an agent born during a parallel update gets its id, writes its statistics if it
+	 * already died.
+	 */
+	public void onNumbered(Agent agent) {
+		AgentStatistics stats = getAgentState(agent);
+		if (stats == null || stats.deathTick == -1)
+			return;
+		stats.id = agent.id;
+		getRecordFile().write(stats, false);
 	}
 
 	@Override
@@ -130,8 +206,12 @@ implements EnergyMutator, SpawnMutator, StepMutator {
 		parent1stats.directChildren++;
 
 		AgentStatistics parent2stats = getAgentState(parent2);
-		if (parent2stats != null)
+		if (parent2stats != null) {
 			parent2stats.directChildren++;
+			// The other parent may have died during the pregnancy, unless it has no id yet
+			if (parent2stats.deathTick != -1 && parent2stats.id != 0)
+				getRecordFile().write(parent2stats, true);
+		}
 
 		setAgentState(agent, new AgentStatistics(
 				agent,
@@ -144,13 +224,133 @@ implements EnergyMutator, SpawnMutator, StepMutator {
 	@Override
 	protected void setAgentState(Agent agent, AgentStatistics state) {
 		super.setAgentState(agent, state);
-		allStats.add(state);
+		state.setPathTracked(trackAllPaths);
+		state.liveIndex = liveStats.size();
+		liveStats.add(state);
+	}
+
+	private boolean trackAllPaths = true;
+
+	/**
+	 * Sets whether every agent keeps its recent path, or only agents passed to setPathTracked().
+	 * Applies to agents born from now on.
+	 */
+	public void setTrackAllPaths(boolean trackAllPaths) {
+		this.trackAllPaths = trackAllPaths;
+	}
+
+	/**
+	 * Starts or stops keeping the recent path of an agent, for agents observed in the UI.
+	 */
+	public void setPathTracked(Agent agent, boolean tracked) {
+		AgentStatistics stats = getAgentState(agent);
+		if (stats != null && stats.deathTick == -1)
+			stats.setPathTracked(tracked || trackAllPaths);
+	}
+
+	/**
+	 * Statistics of living agents. Statistics of dead agents are moved to recordFile.
+	 */
+	private final List<AgentStatistics> liveStats = new ArrayList<>();
+
+	private LifetimeRecordFile recordFile;
+
+	private void removeLive(AgentStatistics stats) {
+		if (stats.liveIndex == -1)
+			return;
+		AgentStatistics last = liveStats.remove(liveStats.size() - 1);
+		if (last != stats) {
+			liveStats.set(stats.liveIndex, last);
+			last.liveIndex = stats.liveIndex;
+		}
+		stats.liveIndex = -1;
+	}
+
+	private LifetimeRecordFile getRecordFile() {
+		if (recordFile == null)
+			recordFile = new LifetimeRecordFile();
+		return recordFile;
+	}
+
+	/**
+	 * @return number of agents that have lived in the simulation, including living agents
+	 */
+	public int getAgentCount() {
+		return liveStats.size() + (recordFile == null ? 0 : recordFile.size());
+	}
+
+	/**
+	 * Gets the statistics of every agent that has lived in the simulation, sorted by id.
+	 * Statistics of dead agents are read from disk as the result is iterated,
+	 * the simulation must not run in the meantime.
+	 */
+	public Iterable<AgentStatistics> getAllStats() {
+		final List<AgentStatistics> live = new ArrayList<>(liveStats);
+		for (AgentStatistics stats : live) {
+			stats.updateId(true);
+		}
+		Collections.sort(live);
+		return new Iterable<AgentStatistics>() {
+			@Override
+			public Iterator<AgentStatistics> iterator() {
+				Iterator<AgentStatistics> dead = recordFile == null
+						? Collections.<AgentStatistics>emptyIterator()
+						: recordFile.iterator();
+				return new MergingIterator(live.iterator(), dead);
+			}
+		};
 	}
 
-	List<AgentStatistics> allStats = new ArrayList<>();
+	/**
+	 * Merges two iterators sorted by agent id.
+	 */
+	private static class MergingIterator implements Iterator<AgentStatistics> {
+		private final Iterator<AgentStatistics> a;
+		private final Iterator<AgentStatistics> b;
+		private AgentStatistics nextA;
+		private AgentStatistics nextB;
 
-	public Collection<AgentStatistics> getAllStats() {
-		return allStats;
+		MergingIterator(Iterator<AgentStatistics> a, Iterator<AgentStatistics> b) {
+			this.a = a;
+			this.b = b;
+			nextA = a.hasNext() ? a.next() : null;
+			nextB = b.hasNext() ? b.next() : null;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return nextA != null || nextB != null;
+		}
+
+		@Override
+		public AgentStatistics next() {
+			AgentStatistics result;
+			if (nextA == null && nextB == null) {
+				throw new NoSuchElementException();
+			} else if (nextB == null || (nextA != null && nextA.id < nextB.id)) {
+				result = nextA;
+				nextA = a.hasNext() ? a.next() : null;
+			} else {
+				result = nextB;
+				nextB = b.hasNext() ? b.next() : null;
+			}
+			return result;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Deletes the statistics of dead agents from disk, called when the simulation is discarded.
+	 */
+	public void close() {
+		if (recordFile != null) {
+			recordFile.delete();
+			recordFile = null;
+		}
 	}
 
 	@Override
@@ -7,6 +7,7 @@ import org.cobweb.cobweb2.plugins.ResizableParam;
 import org.cobweb.io.ConfDisplayName;
 import org.cobweb.io.ConfList;
 import org.cobweb.io.ConfXMLTag;
+import org.cobweb.util.CloneHelper;
 
 
 public class SwarmAgentParams implements ResizableParam {
@@ -52,5 +53,18 @@ public class SwarmAgentParams implements ResizableParam {
 		}
 	}
 
+	/**
+	 * Makes target the same as a clone() of these parameters, reusing its effects.
+	 */
+	void copyInto(SwarmAgentParams target) {
+		if (target.effects.length != effects.length) {
+			target.effects = clone().effects;
+			return;
+		}
+		for (int i = 0; i < effects.length; i++) {
+			CloneHelper.copyInto(effects[i], target.effects[i]);
+		}
+	}
+
 	private static final long serialVersionUID = 1L;
 }
@@ -1,7 +1,6 @@
 package org.cobweb.cobweb2.plugins.swarm;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 
 import org.cobweb.cobweb2.core.Agent;
@@ -10,22 +9,36 @@ import org.cobweb.cobweb2.core.Location;
 import org.cobweb.cobweb2.core.SimulationTimeSpace;
 import org.cobweb.cobweb2.core.StateParameter;
 import org.cobweb.cobweb2.core.StatePlugin;
+import org.cobweb.cobweb2.core.Topology;
 import org.cobweb.cobweb2.plugins.MoveMutator;
 import org.cobweb.cobweb2.plugins.SpawnMutator;
 import org.cobweb.cobweb2.plugins.StatefulMutatorBase;
+import org.cobweb.cobweb2.plugins.StepMutator;
 import org.cobweb.cobweb2.plugins.UpdateMutator;
 
 
-public class SwarmMutator extends StatefulMutatorBase<SwarmState> implements UpdateMutator, StatePlugin, SpawnMutator, MoveMutator {
+public class SwarmMutator extends StatefulMutatorBase<SwarmState> implements UpdateMutator, StatePlugin, SpawnMutator, MoveMutator, StepMutator {
 
 	public SwarmMutator() {
 		super(SwarmState.class);
 	}
 
+	/**
+	 * Width and height of the square areas agents are counted in.
+	 */
+	private static final int BUCKET_SIZE = 8;
+
 	public SwarmParams params;
 	private SimulationTimeSpace sim;
 	private Environment env;
 
+	/**
+	 * Number of agents of each type in each area, kept up to date by onStep().
+	 */
+	private int[][] bucketCounts = new int[0][];
+
+	private int bucketsX;
+
 	/**
 	 * Sets the parameters according to the simulation configuration.
 	 * @param sim simulation sim
@@ -40,6 +53,38 @@ public class SwarmMutator extends StatefulMutatorBase<SwarmState> implements Upd
 		for (int i = 0 ; i < causeKeys.length; i++) {
 			causeKeys[i] = new CauseKey(i);
 		}
+
+		Topology topology = sim.getTopology();
+		bucketsX = (topology.width + BUCKET_SIZE - 1) / BUCKET_SIZE;
+		int bucketsY = (topology.height + BUCKET_SIZE - 1) / BUCKET_SIZE;
+		int[][] counts = new int[bucketsX * bucketsY][params.agentParams.length];
+		for (Agent agent : env.getAgents()) {
+			if (topology.isValidLocation(agent.getPosition()))
+				counts[getBucket(agent.getPosition())][agent.getType()]++;
+		}
+		bucketCounts = counts;
+	}
+
+	/**
+	 * @return causes of the multipliers this applies, by agent type index
+	 */
+	public Object[] getMultiplierCauses() {
+		return causeKeys;
+	}
+
+	private int getBucket(Location l) {
+		return l.y / BUCKET_SIZE * bucketsX + l.x / BUCKET_SIZE;
+	}
+
+	@Override
+	public void onStep(Agent agent, Location from, Location to) {
+		Topology topology = sim.getTopology();
+		synchronized (bucketCounts) {
+			if (from != null && topology.isValidLocation(from))
+				bucketCounts[getBucket(from)][agent.getType()]--;
+			if (to != null && topology.isValidLocation(to))
+				bucketCounts[getBucket(to)][agent.getType()]++;
+		}
 	}
 
 	private CauseKey[] causeKeys;
@@ -62,13 +107,21 @@ public class SwarmMutator extends StatefulMutatorBase<SwarmState> implements Upd
 
 	@Override
 	public void onSpawn(Agent agent) {
-		SwarmAgentParams aPar = params.agentParams[agent.getType()].clone();
-		setAgentState(agent, new SwarmState(aPar));
+		setAgentState(agent, newState(agent, params.agentParams[agent.getType()]));
 	}
 
 	@Override
 	public void onSpawn(Agent agent, Agent parent) {
-		setAgentState(agent, getAgentState(parent).clone());
+		setAgentState(agent, newState(agent, getAgentState(parent).agentParams));
+	}
+
+	private SwarmState newState(Agent agent, SwarmAgentParams agentParams) {
+		SwarmState state = takeRecycledState(agent);
+		if (state == null)
+			return new SwarmState(agentParams.clone());
+
+		agentParams.copyInto(state.agentParams);
+		return state;
 	}
 
 	@Override
@@ -132,22 +185,74 @@ public class SwarmMutator extends StatefulMutatorBase<SwarmState> implements Upd
 		if (effect.radius <= 0)
 			return 1;
 
-		Collection<Location> locations = sim.getTopology().getArea(agent.getPosition(), effect.radius);
-		int count = 0;
-		for (Location location : locations) {
-			if (location.equals(agent.getPosition()))
-				continue;
-
-			Agent neighbor = env.getAgent(location);
-			if (neighbor != null && neighbor.getType() == type)
-				count++;
-		}
+		int count = countNearby(agent, type, effect.radius);
 
 		//System.out.println("Swarm radius in effect. Score: " + effect.score(count));
 
 		return effect.score(count);
 	}
 
+	/**
+	 * @return how many cells away from an agent countNearby() looks for agents within the radius
+	 */
+	public static int getSearchReach(float radius) {
+		// Distances across the globe's poles can be off by one, so the search is widened by one tile
+		return (int) Math.ceil(radius) + 1;
+	}
+
+	/**
+	 * Counts the agents of the given type within the radius of the agent, not counting the agent itself.
+	 * Only areas that have agents of that type are searched.
+	 */
+	private int countNearby(Agent agent, int type, float radius) {
+		Topology topology = sim.getTopology();
+		Location position = agent.getPosition();
+		float rSquared = radius * radius;
+		int reach = getSearchReach(radius);
+
+		List<Location> copies = topology.getWrapVirtualLocations(position);
+		int count = 0;
+		for (int k = 0; k < copies.size(); k++) {
+			Location copy = copies.get(k);
+			int x0 = Math.max(0, copy.x - reach);
+			int x1 = Math.min(topology.width - 1, copy.x + reach);
+			int y0 = Math.max(0, copy.y - reach);
+			int y1 = Math.min(topology.height - 1, copy.y + reach);
+
+			for (int by = y0 / BUCKET_SIZE; by <= y1 / BUCKET_SIZE; by++) {
+				for (int bx = x0 / BUCKET_SIZE; bx <= x1 / BUCKET_SIZE; bx++) {
+					if (bucketCounts[by * bucketsX + bx][type] == 0)
+						continue;
+
+					for (int y = Math.max(y0, by * BUCKET_SIZE); y <= Math.min(y1, by * BUCKET_SIZE + BUCKET_SIZE - 1); y++) {
+						for (int x = Math.max(x0, bx * BUCKET_SIZE); x <= Math.min(x1, bx * BUCKET_SIZE + BUCKET_SIZE - 1); x++) {
+							Agent neighbor = env.getAgent(y * topology.width + x);
+							if (neighbor == null || neighbor == agent || neighbor.getType() != type)
+								continue;
+							if (isNearEarlierCopy(copies, k, x, y, reach))
+								continue;
+							if (topology.getDistanceSquared(position, neighbor.getPosition()) <= rSquared)
+								count++;
+						}
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return whether the tile was already searched around one of the copies before copies[k]
+	 */
+	private static boolean isNearEarlierCopy(List<Location> copies, int k, int x, int y, int reach) {
+		for (int i = 0; i < k; i++) {
+			Location copy = copies.get(i);
+			if (Math.abs(copy.x - x) <= reach && Math.abs(copy.y - y) <= reach)
+				return true;
+		}
+		return false;
+	}
+
 	@Override
 	protected boolean validState(SwarmState value) {
 		return value.agentParams.effects.length == this.params.agentParams.length;
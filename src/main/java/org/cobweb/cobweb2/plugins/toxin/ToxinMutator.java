@@ -10,6 +10,7 @@ import org.cobweb.cobweb2.plugins.EnvironmentMutator;
 import org.cobweb.cobweb2.plugins.LoggingMutator;
 import org.cobweb.cobweb2.plugins.StatefulSpawnMutatorBase;
 import org.cobweb.cobweb2.plugins.UpdateMutator;
+import org.cobweb.util.CloneHelper;
 
 
 public class ToxinMutator extends StatefulSpawnMutatorBase<ToxinState> implements LoggingMutator, UpdateMutator, ConsumptionMutator, EnvironmentMutator {
@@ -29,6 +30,13 @@ public class ToxinMutator extends StatefulSpawnMutatorBase<ToxinState> implement
 		agentTypePoisoned = new int[agentTypes];
 	}
 
+	/**
+	 * @return causes of the multipliers this applies
+	 */
+	public Object[] getMultiplierCauses() {
+		return new Object[] { this };
+	}
+
 	@Override
 	public void onUpdate(Agent agent) {
 		ToxinState state = getAgentState(agent);
@@ -85,11 +93,21 @@ public class ToxinMutator extends StatefulSpawnMutatorBase<ToxinState> implement
 	@Override
 	protected ToxinState stateForNewAgent(Agent agent) {
 		ToxinAgentParams agentParams = params.agentParams[agent.getType()];
-		ToxinState state = new ToxinState(agentParams.clone(), agentParams.initialToxicity);
+		ToxinState state = newState(agent, agentParams, agentParams.initialToxicity);
 		updateStats(agent, state);
 		return state;
 	}
 
+	private ToxinState newState(Agent agent, ToxinAgentParams agentParams, float toxicity) {
+		ToxinState state = takeRecycledState(agent);
+		if (state == null)
+			return new ToxinState(agentParams.clone(), toxicity);
+
+		CloneHelper.copyInto(agentParams, state.agentParams);
+		state.toxicity = toxicity;
+		return state;
+	}
+
 	private void updateStats(Agent agent, ToxinState state) {
 		agentCount[agent.getType()]++;
 		agentTypeToxin[agent.getType()] += state.toxicity;
@@ -101,7 +119,7 @@ public class ToxinMutator extends StatefulSpawnMutatorBase<ToxinState> implement
 	@Override
 	protected ToxinState stateFromParent(Agent agent, ToxinState parentState) {
 		ToxinAgentParams agentParams = params.agentParams[agent.getType()];
-		return new ToxinState(agentParams.clone(), parentState.toxicity * parentState.agentParams.childTransfer);
+		return newState(agent, agentParams, parentState.toxicity * parentState.agentParams.childTransfer);
 	}
 
 	@Override
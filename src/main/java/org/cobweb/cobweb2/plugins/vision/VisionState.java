@@ -1,8 +1,10 @@
 package org.cobweb.cobweb2.plugins.vision;
 
 import org.cobweb.cobweb2.core.Agent;
+import org.cobweb.cobweb2.core.Direction;
 import org.cobweb.cobweb2.core.Environment;
 import org.cobweb.cobweb2.core.LocationDirection;
+import org.cobweb.cobweb2.core.Topology;
 import org.cobweb.cobweb2.plugins.AgentState;
 
 
@@ -24,30 +26,35 @@ public class VisionState implements AgentState {
 	 * @return What the agent sees and at what distance.
 	 */
 	public SeeInfo distanceLook() {
-		LocationDirection destPos = environment.topology.getAdjacent(agent.getPosition());
+		Topology topology = environment.topology;
+		LocationDirection position = agent.getPosition();
+		int index = topology.getIndex(position);
+		Direction direction = position.direction;
 
 		for (int dist = 1; dist <= LOOK_DISTANCE; ++dist) {
+			int destIndex = topology.getAdjacentIndex(index, direction);
 
 			// We are looking at the wall
-			if (destPos == null)
+			if (destIndex == -1)
 				return new SeeInfo(dist, Environment.FLAG_STONE, LOOK_DISTANCE);
 
 			// Check for stone...
-			if (environment.hasStone(destPos))
+			if (environment.hasStone(destIndex))
 				return new SeeInfo(dist, Environment.FLAG_STONE, LOOK_DISTANCE);
 
 			// If there's another agent there, then return that it's a stone...
-			if (environment.hasAgent(destPos) && environment.getAgent(destPos) != agent)
+			if (environment.hasAgent(destIndex) && environment.getAgent(destIndex) != agent)
 				return new SeeInfo(dist, Environment.FLAG_AGENT, LOOK_DISTANCE);
 
 			// If there's food there, return the food...
-			if (environment.hasFood(destPos))
+			if (environment.hasFood(destIndex))
 				return new SeeInfo(dist, Environment.FLAG_FOOD, LOOK_DISTANCE);
 
-			if (environment.hasDrop(destPos))
+			if (environment.hasDrop(destIndex))
 				return new SeeInfo(dist, Environment.FLAG_DROP, LOOK_DISTANCE);
 
-			destPos = environment.topology.getAdjacent(destPos);
+			direction = topology.getAdjacentDirection(index, direction);
+			index = destIndex;
 		}
 		return new SeeInfo(LOOK_DISTANCE);
 	}
@@ -1,13 +1,18 @@
 package org.cobweb.cobweb2.plugins.waste;
 
+import java.io.IOException;
+
 import org.cobweb.cobweb2.core.Agent;
 import org.cobweb.cobweb2.core.Cause;
 import org.cobweb.cobweb2.core.Drop;
 import org.cobweb.cobweb2.core.Location;
+import org.cobweb.io.CheckpointOutput;
 
 
 public class Waste implements Drop {
 
+	private static final WasteConsumptionCause WASTE_CONSUMPTION_CAUSE = new WasteConsumptionCause();
+
 	private int initialWeight;
 
 	private float rate;
@@ -24,15 +29,32 @@ public class Waste implements Drop {
 	private int type;
 
 	public Waste(Location loc, int weight, float rate, WasteMutator wasteManager, int type) {
+		this(loc, weight, rate, wasteManager, type, wasteManager.sim.getTime());
+	}
+
+	/**
+	 * @param birthTick time the waste was dropped at
+	 */
+	Waste(Location loc, int weight, float rate, WasteMutator wasteManager, int type, long birthTick) {
 		this.location = loc;
 		this.initialWeight = weight;
 		this.rate = rate;
 		this.wasteManager = wasteManager;
 		this.type = type;
-		this.birthTick = wasteManager.sim.getTime();
+		this.birthTick = birthTick;
 		this.expireTick = birthTick + (long)Math.ceil(Math.log(threshold / initialWeight)/-rate);
 	}
 
+	/**
+	 * Writes what the Waste(..., birthTick) constructor needs, except for the location.
+	 */
+	void saveState(CheckpointOutput out) throws IOException {
+		out.writeInt(initialWeight);
+		out.writeFloat(rate);
+		out.writeInt(type);
+		out.writeLong(birthTick);
+	}
+
 	public double getAmount() {
 		return initialWeight * Math.exp(-rate * (wasteManager.sim.getTime() - birthTick));
 	}
@@ -58,7 +80,7 @@ public class Waste implements Drop {
 	@Override
 	public void onStep(Agent agent) {
 		WasteAgentParams agentParams = wasteManager.getAgentState(agent).agentParams;
-		agent.changeEnergy(agentParams.consumeEnergy.getValue(), new WasteConsumptionCause());
+		agent.changeEnergy(agentParams.consumeEnergy.getValue(), WASTE_CONSUMPTION_CAUSE);
 		wasteManager.remove(this);
 	}
 
@@ -97,5 +97,19 @@ public class WasteAgentParams implements ResizableParam {
 		}
 	}
 
+	/**
+	 * Makes target the same as a clone() of these parameters, reusing its Mutatable fields.
+	 */
+	void copyInto(WasteAgentParams target) {
+		boolean[] targetConsume = target.canConsume;
+		CloneHelper.copyInto(this, target);
+		if (targetConsume.length == canConsume.length) {
+			System.arraycopy(canConsume, 0, targetConsume, 0, canConsume.length);
+			target.canConsume = targetConsume;
+		} else {
+			target.canConsume = Arrays.copyOf(canConsume, canConsume.length);
+		}
+	}
+
 	private static final long serialVersionUID = 1L;
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package org.cobweb.cobweb2.plugins.waste;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 
@@ -14,6 +15,8 @@ import org.cobweb.cobweb2.plugins.EnergyMutator;
 import org.cobweb.cobweb2.plugins.LoggingMutator;
 import org.cobweb.cobweb2.plugins.StatefulSpawnMutatorBase;
 import org.cobweb.cobweb2.plugins.UpdateMutator;
+import org.cobweb.io.CheckpointInput;
+import org.cobweb.io.CheckpointOutput;
 
 
 public class WasteMutator extends StatefulSpawnMutatorBase<WasteState> implements EnergyMutator, UpdateMutator, LoggingMutator,
@@ -68,12 +71,23 @@ DropManager<Waste>{
 	public WasteState stateForNewAgent(Agent agent) {
 		WasteAgentParams agentParams = params.agentParams[agent.getType()];
 
-		return new WasteState(agentParams.clone());
+		return newState(agent, agentParams);
 	}
 
 	@Override
 	protected WasteState stateFromParent(Agent agent, WasteState parentState) {
-		return new WasteState(parentState.agentParams.clone());
+		return newState(agent, parentState.agentParams);
+	}
+
+	private WasteState newState(Agent agent, WasteAgentParams agentParams) {
+		WasteState state = takeRecycledState(agent);
+		if (state == null)
+			return new WasteState(agentParams.clone());
+
+		agentParams.copyInto(state.agentParams);
+		state.energyLost = 0;
+		state.energyGained = 0;
+		return state;
 	}
 
 	private boolean tryPoop(Agent agent, WasteAgentParams agentParams) {
@@ -118,6 +132,21 @@ DropManager<Waste>{
 		environment.removeDrop(waste.location);
 	}
 
+	public void saveDrop(Waste waste, CheckpointOutput out) throws IOException {
+		waste.saveState(out);
+	}
+
+	/**
+	 * Drops waste saved by saveDrop() at the given location.
+	 */
+	public void loadDrop(Location loc, CheckpointInput in) throws IOException {
+		int weight = in.readInt();
+		float rate = in.readFloat();
+		int type = in.readInt();
+		long birthTick = in.readLong();
+		environment.addDrop(loc, new Waste(loc, weight, rate, this, type, birthTick));
+	}
+
 	public int countTotalWaste()
 	{
 		int count = 0;
@@ -2,9 +2,6 @@ package org.cobweb.cobweb2.ui;
 
 import java.io.PrintWriter;
 import java.io.Writer;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 
 import org.cobweb.cobweb2.Simulation;
 import org.cobweb.cobweb2.plugins.stats.AgentStatistics;
@@ -17,10 +14,8 @@ public class AgentReporter {
 
 		printAgentHeaders(pw);
 
-		List<AgentStatistics> allStats = new ArrayList<>(simulation.statsMutator.getAllStats());
-		Collections.sort(allStats);
-
-		for (AgentStatistics info : allStats) {
+		// Sorted by id, dead agents are read from disk one at a time
+		for (AgentStatistics info : simulation.statsMutator.getAllStats()) {
 			printInfo(pw, info);
 		}
 		pw.flush();
@@ -0,0 +1,184 @@
+package org.cobweb.cobweb2.ui;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.cobweb.cobweb2.SimulationConfig;
+import org.cobweb.cobweb2.io.Cobweb2Serializer;
+import org.cobweb.cobweb2.io.CobwebXmlHelper;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Set of simulation runs made by giving parameters of a config file every combination of
+ * a list of values, each combination run once with every seed.
+ *
+ * <p>Sweep files have one setting per line, blank lines and lines starting with # are skipped:
+ * <pre>
+ * ticks = 5000
+ * seeds = 1, 2, 3
+ * Agents/AgentParams/Agend[1]/InitEnergy = 50, 100, 200
+ * Environment/Width = 40, 80
+ * </pre>
+ * ticks is how long each run lasts, seeds are the random seeds to run each combination with,
+ * the config's own seed is used when there are none. Other lines give the path to a parameter
+ * in the config file, made of XML element names separated by /, with [n] picking the element
+ * with id="n", followed by the values to try. Element names are the ones in the config file
+ * as the simulator saves it.
+ */
+public class ParameterSweep {
+
+	private long ticks = 0;
+
+	private long[] seeds = null;
+
+	private final List<String> paths = new ArrayList<>();
+
+	private final List<String[]> values = new ArrayList<>();
+
+	public static ParameterSweep load(String fileName) {
+		try (Reader reader = new FileReader(fileName)) {
+			return parse(reader);
+		} catch (IOException ex) {
+			throw new UserInputException("Cannot read sweep file " + fileName, ex);
+		}
+	}
+
+	public static ParameterSweep parse(Reader reader) throws IOException {
+		ParameterSweep sweep = new ParameterSweep();
+		BufferedReader lines = new BufferedReader(reader);
+		int lineNumber = 0;
+		for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+			lineNumber++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+
+			int equals = line.indexOf('=');
+			if (equals == -1)
+				throw new UserInputException("Line " + lineNumber + " of sweep file has no '='");
+			String key = line.substring(0, equals).trim();
+			String[] keyValues = line.substring(equals + 1).split(",");
+			for (int i = 0; i < keyValues.length; i++) {
+				keyValues[i] = keyValues[i].trim();
+				if (keyValues[i].isEmpty())
+					throw new UserInputException("Line " + lineNumber + " of sweep file has an empty value");
+			}
+
+			try {
+				if (key.equals("ticks")) {
+					sweep.ticks = Long.parseLong(keyValues[0]);
+				} else if (key.equals("seeds")) {
+					sweep.seeds = new long[keyValues.length];
+					for (int i = 0; i < keyValues.length; i++)
+						sweep.seeds[i] = Long.parseLong(keyValues[i]);
+				} else {
+					sweep.paths.add(key);
+					sweep.values.add(keyValues);
+				}
+			} catch (NumberFormatException ex) {
+				throw new UserInputException("Line " + lineNumber + " of sweep file needs a whole number", ex);
+			}
+		}
+
+		if (sweep.ticks <= 0)
+			throw new UserInputException("Sweep file must give the number of ticks to run");
+		return sweep;
+	}
+
+	public long getTicks() {
+		return ticks;
+	}
+
+	public List<String> getPaths() {
+		return Collections.unmodifiableList(paths);
+	}
+
+	/**
+	 * @return number of runs, every combination of values times every seed
+	 */
+	public int size() {
+		int size = seeds == null ? 1 : seeds.length;
+		for (String[] v : values)
+			size *= v.length;
+		return size;
+	}
+
+	/**
+	 * @return value of each parameter in the given run, in the order of getPaths()
+	 */
+	public List<String> getValues(int run) {
+		String[] result = new String[paths.size()];
+		int combination = seeds == null ? run : run / seeds.length;
+		// The last parameter changes fastest
+		for (int p = values.size() - 1; p >= 0; p--) {
+			String[] v = values.get(p);
+			result[p] = v[combination % v.length];
+			combination /= v.length;
+		}
+		return Arrays.asList(result);
+	}
+
+	/**
+	 * @return seed of the given run, 0 when the config's own seed is used
+	 */
+	public long getSeed(int run) {
+		return seeds == null ? 0 : seeds[run % seeds.length];
+	}
+
+	/**
+	 * Creates the config of one run.
+	 *
+	 * @param baseConfig contents of the config file the sweep changes
+	 * @param run index of the run, 0 to size() - 1
+	 */
+	public SimulationConfig createConfig(byte[] baseConfig, int run) {
+		Element root = CobwebXmlHelper.openDocument(new ByteArrayInputStream(baseConfig));
+		List<String> runValues = getValues(run);
+		for (int p = 0; p < paths.size(); p++) {
+			findElement(root, paths.get(p)).setTextContent(runValues.get(p));
+		}
+
+		ByteArrayOutputStream modified = new ByteArrayOutputStream(baseConfig.length);
+		CobwebXmlHelper.writeDocument(modified, root.getOwnerDocument());
+		SimulationConfig config = new Cobweb2Serializer().loadConfig(new ByteArrayInputStream(modified.toByteArray()));
+
+		if (seeds != null)
+			config.randomSeed = getSeed(run);
+		return config;
+	}
+
+	private static Element findElement(Element root, String path) {
+		Element current = root;
+		for (String step : path.split("/")) {
+			String name = step;
+			String id = null;
+			int bracket = step.indexOf('[');
+			if (bracket != -1 && step.endsWith("]")) {
+				name = step.substring(0, bracket);
+				id = step.substring(bracket + 1, step.length() - 1);
+			}
+
+			Element next = null;
+			for (Node child = current.getFirstChild(); child != null; child = child.getNextSibling()) {
+				if (child instanceof Element && child.getNodeName().equals(name)
+						&& (id == null || id.equals(((Element) child).getAttribute("id")))) {
+					next = (Element) child;
+					break;
+				}
+			}
+			if (next == null)
+				throw new UserInputException("Config file has no parameter " + path);
+			current = next;
+		}
+		return current;
+	}
+}
@@ -0,0 +1,235 @@
+package org.cobweb.cobweb2.ui;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.SimulationConfig;
+import org.cobweb.cobweb2.io.Cobweb2Serializer;
+
+/**
+ * Runs every simulation of a ParameterSweep without a user interface, several at a time in
+ * the same JVM, so class loading and compilation only happen once for the whole sweep.
+ *
+ * <p>Each run writes the StatsLogger log to run-[n].tsv in the output directory, and
+ * summary.tsv lists the parameters and final population of every run.
+ * <pre>ParameterSweepRunner [-threads N] SettingsFile.xml SweepFile.txt OutputDirectory</pre>
+ */
+public class ParameterSweepRunner {
+
+	private final byte[] baseConfig;
+
+	private final ParameterSweep sweep;
+
+	private final File outputDirectory;
+
+	private final AtomicInteger finished = new AtomicInteger();
+
+	public ParameterSweepRunner(String configFileName, ParameterSweep sweep, File outputDirectory) {
+		this.sweep = sweep;
+		this.outputDirectory = outputDirectory;
+
+		try {
+			// Runs start from the config as it was loaded, after old files have been upgraded
+			Cobweb2Serializer serializer = new Cobweb2Serializer();
+			SimulationConfig config = serializer.loadConfig(configFileName);
+			ByteArrayOutputStream saved = new ByteArrayOutputStream();
+			serializer.saveConfig(config, saved);
+			baseConfig = saved.toByteArray();
+		} catch (FileNotFoundException ex) {
+			throw new UserInputException("Config file " + configFileName + " does not exist", ex);
+		}
+
+		if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs())
+			throw new UserInputException("Cannot create output directory " + outputDirectory);
+	}
+
+	/**
+	 * Final state of a run, one line of the summary.
+	 */
+	private static class RunResult {
+		long time;
+		long foodCount;
+		long[] agentCounts;
+		long agentCount;
+		String error;
+	}
+
+	/**
+	 * Runs the whole sweep and writes the summary once every run has finished.
+	 *
+	 * @param threads number of simulations to run at the same time
+	 */
+	public void run(int threads) {
+		int runs = sweep.size();
+		System.out.println(String.format("Running %1$d simulations, %2$d at a time", runs, threads));
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<RunResult>> results = new ArrayList<>(runs);
+		for (int i = 0; i < runs; i++) {
+			final int run = i;
+			results.add(executor.submit(new Callable<RunResult>() {
+				@Override
+				public RunResult call() {
+					return runSafely(run);
+				}
+			}));
+		}
+		executor.shutdown();
+
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			writeSummary(results);
+		} catch (InterruptedException ex) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private RunResult runSafely(int run) {
+		RunResult result;
+		try {
+			result = simulate(run);
+		} catch (RuntimeException ex) {
+			System.err.println("Run " + run + " failed:");
+			ex.printStackTrace();
+			result = new RunResult();
+			result.error = ex.toString();
+		}
+		System.out.println(String.format("Run %1$d done (%2$d / %3$d)", run, finished.incrementAndGet(), sweep.size()));
+		return result;
+	}
+
+	private RunResult simulate(int run) {
+		SimulationConfig config = sweep.createConfig(baseConfig, run);
+		config.fileName = "Sweep run " + run;
+		// Runs already use every thread between them
+		config.parallelThreads = 0;
+
+		Simulation simulation = new Simulation();
+		try {
+			simulation.load(config);
+
+			SimulationRunnerBase runner = new SimulationRunnerBase(simulation);
+			runner.setPrintProgress(false);
+			runner.setAutoStopTime(sweep.getTicks());
+			try {
+				runner.setLog(new FileWriter(new File(outputDirectory, "run-" + run + ".tsv")));
+			} catch (IOException ex) {
+				throw new UserInputException("Can't create log file!", ex);
+			}
+			runner.run();
+			runner.setLog(null);
+
+			StatsTracker stats = new StatsTracker(simulation);
+			RunResult result = new RunResult();
+			result.time = stats.getTime();
+			result.foodCount = stats.countFoodTiles();
+			result.agentCount = stats.getAgentCount();
+			result.agentCounts = new long[stats.getAgentTypeCount()];
+			for (int i = 0; i < result.agentCounts.length; i++)
+				result.agentCounts[i] = stats.countAgents(i);
+			return result;
+		} finally {
+			simulation.dispose();
+		}
+	}
+
+	private void writeSummary(List<Future<RunResult>> results) throws InterruptedException {
+		File summaryFile = new File(outputDirectory, "summary.tsv");
+		try (PrintWriter summary = new PrintWriter(new FileWriter(summaryFile))) {
+			int agentTypes = 0;
+			for (Future<RunResult> future : results) {
+				RunResult result = getResult(future);
+				if (result.agentCounts != null)
+					agentTypes = Math.max(agentTypes, result.agentCounts.length);
+			}
+
+			summary.print("Run\tSeed\t");
+			for (String path : sweep.getPaths()) {
+				summary.print(path);
+				summary.print('\t');
+			}
+			summary.print("Tick\tFoodCount T\tAgentCount T\t");
+			for (int i = 1; i <= agentTypes; i++) {
+				summary.print("AgentCount " + i + "\t");
+			}
+			summary.println("Error");
+
+			for (int run = 0; run < results.size(); run++) {
+				RunResult result = getResult(results.get(run));
+				summary.print(run);
+				summary.print('\t');
+				summary.print(sweep.getSeed(run));
+				summary.print('\t');
+				for (String value : sweep.getValues(run)) {
+					summary.print(value);
+					summary.print('\t');
+				}
+				if (result.error == null) {
+					summary.print(result.time + "\t" + result.foodCount + "\t" + result.agentCount + "\t");
+					for (int i = 0; i < agentTypes; i++) {
+						summary.print(i < result.agentCounts.length ? Long.toString(result.agentCounts[i]) : "");
+						summary.print('\t');
+					}
+				} else {
+					for (int i = 0; i < agentTypes + 3; i++)
+						summary.print('\t');
+					summary.print(result.error);
+				}
+				summary.println();
+			}
+		} catch (IOException ex) {
+			throw new UserInputException("Cannot write summary file " + summaryFile, ex);
+		}
+		System.out.println("Summary: " + summaryFile);
+	}
+
+	private static RunResult getResult(Future<RunResult> future) throws InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException ex) {
+			// runSafely() catches the exceptions of runs
+			throw new RuntimeException(ex.getCause());
+		}
+	}
+
+	public static void main(String[] args) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		List<String> files = new ArrayList<>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equalsIgnoreCase("-threads") && i + 1 < args.length) {
+				try {
+					threads = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException ex) {
+					System.out.println("-threads argument must be integer");
+					System.exit(1);
+				}
+			} else {
+				files.add(args[i]);
+			}
+		}
+		if (files.size() != 3 || threads < 1) {
+			System.out.println("Syntax: " + Syntax);
+			System.exit(1);
+		}
+
+		ParameterSweep sweep = ParameterSweep.load(files.get(1));
+		new ParameterSweepRunner(files.get(0), sweep, new File(files.get(2))).run(threads);
+	}
+
+	public static final String Syntax = "ParameterSweepRunner [-threads N] SettingsFile.xml SweepFile.txt OutputDirectory";
+}
@@ -1,5 +1,6 @@
 package org.cobweb.cobweb2.ui;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
@@ -7,6 +8,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.SimulationCheckpoint;
 
 public class SimulationRunnerBase implements SimulationRunner {
 
@@ -20,6 +22,12 @@ public class SimulationRunnerBase implements SimulationRunner {
 
 	private String populationFile = null;
 
+	private boolean printProgress = true;
+
+	private File checkpointFile = null;
+
+	private long checkpointInterval = 0;
+
 	public SimulationRunnerBase(Simulation simulation) {
 		this.simulation = simulation;
 	}
@@ -42,11 +50,12 @@ public class SimulationRunnerBase implements SimulationRunner {
 		running = true;
 		notifyStarted();
 
-		System.out.println(String.format(
-				"Running '%1$s' for %2$d steps. Log: %3$s",
-				simulation.simulationConfig.fileName,
-				getAutoStopTime(),
-				statsLogger == null ? "No": "Yes"));
+		if (printProgress)
+			System.out.println(String.format(
+					"Running '%1$s' for %2$d steps. Log: %3$s",
+					simulation.simulationConfig.fileName,
+					getAutoStopTime(),
+					statsLogger == null ? "No": "Yes"));
 
 		long increment = getAutoStopTime() / 100;
 		if (increment > 1000)
@@ -59,7 +68,7 @@ public class SimulationRunnerBase implements SimulationRunner {
 			updateUI(true);
 
 			long time = getSimulation().getTime();
-			if (time % increment == 0) {
+			if (printProgress && time % increment == 0) {
 				if (getAutoStopTime() != 0) {
 					System.out.println(String.format(
 							"Step: %1$d / %2$d (%3$d%%)",
@@ -75,6 +84,9 @@ public class SimulationRunnerBase implements SimulationRunner {
 				}
 			}
 
+			if (checkpointFile != null && time % checkpointInterval == 0)
+				saveCheckpoint();
+
 			// Stop at target time
 			if (getAutoStopTime() != 0 && simulation.getTime() >= getAutoStopTime()) {
 				int saveNum = getSimulation().theEnvironment.getAgentCount();
@@ -84,7 +96,8 @@ public class SimulationRunnerBase implements SimulationRunner {
 				stop();
 			}
 		}
-		System.out.println("Done!");
+		if (printProgress)
+			System.out.println("Done!");
 	}
 
 	@Override
@@ -133,6 +146,34 @@ public class SimulationRunnerBase implements SimulationRunner {
 		this.populationFile = fileName;
 	}
 
+	/**
+	 * Sets where run() saves a checkpoint of the simulation, every given number of steps.
+	 * null to disable.
+	 * @see SimulationCheckpoint
+	 */
+	public void setCheckpoint(File file, long interval) {
+		if (file != null && interval <= 0)
+			throw new IllegalArgumentException("Checkpoint interval must be positive");
+		this.checkpointFile = file;
+		this.checkpointInterval = interval;
+	}
+
+	private void saveCheckpoint() {
+		try {
+			SimulationCheckpoint.save(simulation, checkpointFile, true);
+		} catch (IOException ex) {
+			// Keep running, the previous checkpoint is still there
+			System.err.println("Could not save checkpoint " + checkpointFile + ": " + ex);
+		}
+	}
+
+	/**
+	 * Sets whether run() prints its progress to the console, true by default.
+	 */
+	public void setPrintProgress(boolean printProgress) {
+		this.printProgress = printProgress;
+	}
+
 	/**
 	 * Writes simulation report to writer.
 	 * @param writer where to write report.
@@ -7,6 +7,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 
 import org.cobweb.cobweb2.Simulation;
+import org.cobweb.cobweb2.SimulationCheckpoint;
 import org.cobweb.cobweb2.SimulationConfig;
 import org.cobweb.cobweb2.io.Cobweb2Serializer;
 import org.cobweb.cobweb2.ui.LoggingExceptionHandler;
@@ -56,6 +57,16 @@ public class CobwebApplicationRunner {
 	 * <p> --load-pop
 	 * <br>Specify the file in which a population of agents will be loaded.
 	 *
+	 * <p> --checkpoint [must specify]
+	 * <br>Specify the file in which the state of the simulation is saved while it runs,
+	 * so it can be resumed. Needs -hide.
+	 *
+	 * <p> --checkpoint-every [specify integer > 0]
+	 * <br>Number of steps between checkpoints, 10000 by default.
+	 *
+	 * <p> --resume [must specify]
+	 * <br>Specify a checkpoint to resume instead of opening a settings file. Needs -hide.
+	 *
 	 * <p> -autorun [specify integer >= -1]
 	 *
 	 * @param args command line arguments
@@ -74,6 +85,9 @@ public class CobwebApplicationRunner {
 		boolean visible = true;
 		String populationFileName = "";
 		String loadPopulationFile = "";
+		String checkpointFile = "";
+		long checkpointInterval = 10000;
+		String resumeFile = "";
 
 		if (args.length > 0) {
 			for (int arg_pos = 0; arg_pos < args.length; ++arg_pos){
@@ -126,6 +140,33 @@ public class CobwebApplicationRunner {
 					} else {
 						loadPopulationFile = args[++arg_pos];
 					}
+				} else if (args[arg_pos].equalsIgnoreCase("--checkpoint")) {
+					if (args.length - arg_pos == 1) {
+						System.out.println("No value attached to '--checkpoint' argument\n" +
+								"Correct syntax is: " + CobwebApplicationRunner.Syntax);
+						System.exit(1);
+					} else {
+						checkpointFile = args[++arg_pos];
+					}
+				} else if (args[arg_pos].equalsIgnoreCase("--checkpoint-every")) {
+					try{
+						checkpointInterval = Long.parseLong(args[++arg_pos]);
+					} catch (NumberFormatException | ArrayIndexOutOfBoundsException ex){
+						System.out.println("--checkpoint-every argument must be integer");
+						System.exit(1);
+					}
+					if (checkpointInterval <= 0) {
+						System.out.println("--checkpoint-every argument must > 0");
+						System.exit(1);
+					}
+				} else if (args[arg_pos].equalsIgnoreCase("--resume")) {
+					if (args.length - arg_pos == 1) {
+						System.out.println("No value attached to '--resume' argument\n" +
+								"Correct syntax is: " + CobwebApplicationRunner.Syntax);
+						System.exit(1);
+					} else {
+						resumeFile = args[++arg_pos];
+					}
 				} else {
 					inputFileName = args[arg_pos];
 				}
@@ -137,11 +178,29 @@ public class CobwebApplicationRunner {
 			System.exit(1);
 		}
 
-		main(inputFileName, logFileName, populationFileName, loadPopulationFile, autostart, finalstep, visible);
+		if (visible && (!checkpointFile.isEmpty() || !resumeFile.isEmpty())) {
+			System.out.println("'--checkpoint' and '--resume' need the '-hide' argument");
+			System.exit(1);
+		}
+
+		if (!resumeFile.isEmpty() && ! new File(resumeFile).exists()){
+			System.out.println("Invalid checkpoint value: '" + resumeFile + "' does not exist" );
+			System.exit(1);
+		}
+
+		main(inputFileName, logFileName, populationFileName, loadPopulationFile, autostart, finalstep, visible,
+				checkpointFile, checkpointInterval, resumeFile);
 	}
 
 	public static void main(String inputFileName, String logFileName, String populationFileName, String loadPopulationFile,
 			boolean autostart, int finalstep, boolean visible) {
+		main(inputFileName, logFileName, populationFileName, loadPopulationFile, autostart, finalstep, visible,
+				"", 0, "");
+	}
+
+	public static void main(String inputFileName, String logFileName, String populationFileName, String loadPopulationFile,
+			boolean autostart, int finalstep, boolean visible,
+			String checkpointFile, long checkpointInterval, String resumeFile) {
 		if (!logFileName.isEmpty() && new File(logFileName).exists()){
 			System.out.println("WARNING: log '" + logFileName + "' already exists, overwriting it!" );
 		}
@@ -156,6 +215,20 @@ public class CobwebApplicationRunner {
 			Thread.setDefaultUncaughtExceptionHandler(handler);
 		}
 
+		if (!resumeFile.isEmpty()) {
+			Simulation simulation;
+			try {
+				simulation = SimulationCheckpoint.load(new File(resumeFile));
+			} catch (IOException ex) {
+				System.err.println("Cannot resume " + resumeFile);
+				throw new RuntimeException(ex);
+			}
+			System.out.println("Resuming '" + simulation.simulationConfig.fileName + "' at step " + simulation.getTime());
+			startRunner(new SimulationRunnerBase(simulation), logFileName, populationFileName, "",
+					autostart, finalstep, checkpointFile, checkpointInterval);
+			return;
+		}
+
 		//Set up inputFile
 
 		if (inputFileName.equals("")) {
@@ -226,6 +299,12 @@ public class CobwebApplicationRunner {
 			simulation.load(defaultconf);
 			simRunner = new SimulationRunnerBase(simulation);
 		}
+		startRunner(simRunner, logFileName, populationFileName, loadPopulationFile,
+				autostart, finalstep, checkpointFile, checkpointInterval);
+	}
+
+	private static void startRunner(SimulationRunnerBase simRunner, String logFileName, String populationFileName,
+			String loadPopulationFile, boolean autostart, int finalstep, String checkpointFile, long checkpointInterval) {
 		simRunner.setAutoStopTime(finalstep);
 
 		if (!logFileName.isEmpty()){
@@ -244,13 +323,19 @@ public class CobwebApplicationRunner {
 			simRunner.setPopulationLog(populationFileName);
 		}
 
+		if (!checkpointFile.isEmpty()) {
+			simRunner.setCheckpoint(new File(checkpointFile), checkpointInterval);
+		}
+
 		if (autostart) {
 			simRunner.run();
 		}
 	}
 
 	public static final String Syntax = "cobweb2 [--help] [-hide] [-autorun finalstep] [-log LogFile.tsv] " +
-			"[--save-pop PopulationFile.xml] [--load-pop PopulationFile.xml] [[[-open] SettingsFile.xml]";
+			"[--save-pop PopulationFile.xml] [--load-pop PopulationFile.xml] " +
+			"[--checkpoint Checkpoint.bin] [--checkpoint-every steps] [--resume Checkpoint.bin] " +
+			"[[[-open] SettingsFile.xml]";
 
 
 
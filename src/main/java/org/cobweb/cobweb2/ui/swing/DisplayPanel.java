@@ -176,8 +176,10 @@ public class DisplayPanel extends WaitableJComponent implements ComponentListene
 		void setOn(Location loc) {
 			synchronized(simulation.theEnvironment) {
 				ComplexAgent agent = (ComplexAgent)simulation.theEnvironment.getAgent(loc);
-				if (agent != null)
+				if (agent != null) {
 					observedAgents.add(agent);
+					simulation.statsMutator.setPathTracked(agent, true);
+				}
 			}
 		}
 
@@ -185,8 +187,10 @@ public class DisplayPanel extends WaitableJComponent implements ComponentListene
 		void setOff(Location loc) {
 			synchronized(simulation.theEnvironment) {
 				ComplexAgent agent = (ComplexAgent)simulation.theEnvironment.getAgent(loc);
-				if (agent != null)
+				if (agent != null) {
 					observedAgents.remove(agent);
+					simulation.statsMutator.setPathTracked(agent, false);
+				}
 			}
 		}
 
@@ -407,12 +411,16 @@ public class DisplayPanel extends WaitableJComponent implements ComponentListene
 
 		@Override
 		void setOn(Location loc) {
-			simulation.theEnvironment.addFood(loc, mytype);
+			synchronized(simulation.theEnvironment) {
+				simulation.theEnvironment.addFood(loc, mytype);
+			}
 		}
 
 		@Override
 		void setOff(Location loc) {
-			simulation.theEnvironment.removeFood(loc);
+			synchronized(simulation.theEnvironment) {
+				simulation.theEnvironment.removeFood(loc);
+			}
 		}
 
 	}
@@ -83,8 +83,8 @@ class DrawInfo {
 
 		for (ComplexAgent observedAgent: observedAgents) {
 			AgentStatistics stats = observedAgent.getState(AgentStatistics.class);
-			if (stats.path != null)
-				paths.add(new PathDrawInfo(stats.path));
+			if (stats.getPath() != null)
+				paths.add(new PathDrawInfo(stats.getPath()));
 		}
 
 		for (int y = 0; y < topology.height; ++y) {
@@ -3,7 +3,6 @@ package org.cobweb.cobweb2.ui.swing.energy;
 import org.cobweb.cobweb2.plugins.stats.CauseTree;
 import org.cobweb.cobweb2.plugins.stats.CauseTree.CauseTreeNode;
 import org.cobweb.cobweb2.plugins.stats.EnergyStats;
-import org.cobweb.cobweb2.plugins.stats.EnergyStats.CauseStats;
 import org.jdesktop.swingx.treetable.TreeTableModel;
 
 
@@ -24,9 +23,9 @@ public class CauseStatsTreeTableModel extends CauseTreeModel implements TreeTabl
 	@Override
 	public Class<?> getColumnClass(int col) {
 		if (col == 1)
-			return int.class;
+			return long.class;
 		if (col == 2)
-			return double.class;
+			return long.class;
 
 		return null;
 	}
@@ -50,11 +49,10 @@ public class CauseStatsTreeTableModel extends CauseTreeModel implements TreeTabl
 	public Object getValueAt(Object row, int col) {
 		assert col != 0;
 		CauseTreeNode node = (CauseTreeNode) row;
-		CauseStats nodeStats = stats.causeStats.get(node.type);
 		if (col == 1)
-			return nodeStats.count;
+			return stats.getCount(node);
 		if (col == 2)
-			return nodeStats.totalDelta;
+			return stats.getTotalDelta(node);
 
 		return null;
 	}
@@ -0,0 +1,536 @@
+package org.cobweb.io;
+
+import java.io.IOException;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.cobweb.util.MutatableField;
+import org.cobweb.util.MutatableFloat;
+import org.cobweb.util.MutatableInt;
+
+/**
+ * Saves the same fields and setters as ParameterSerializer does, to a checkpoint instead of XML.
+ *
+ * Values are written without their names, in the order of their tag names. Objects can only be
+ * read back by the same version of their class.
+ *
+ * <p>Objects registered with addShared(), and the objects inside them, are written as a reference.
+ * The reader must register equivalent objects in the same order, such as the same configuration
+ * loaded again, to get them back.
+ *
+ * <p>Multipliers of Mutatable fields are written as references to their cause, which must be
+ * registered with addMultiplierCauses() the same way.
+ */
+public class BinaryParameterSerializer {
+
+	private static final byte NULL_OBJECT = 0;
+	private static final byte DECLARED_CLASS = 1;
+	private static final byte OTHER_CLASS = 2;
+	private static final byte SHARED_OBJECT = 3;
+
+	private final ChoiceCatalog parts;
+
+	private final List<ParameterSerializable> shared = new ArrayList<>();
+
+	private final Map<ParameterSerializable, Integer> sharedIndex = new IdentityHashMap<>();
+
+	private final List<Object[]> causeSources = new ArrayList<>();
+
+	/**
+	 * Index in causeSources and index in the source array of each multiplier cause.
+	 */
+	private final Map<Object, int[]> causeIndex = new IdentityHashMap<>();
+
+	public BinaryParameterSerializer(ChoiceCatalog parts) {
+		this.parts = parts;
+	}
+
+	/**
+	 * A @ConfXMLTag field, or setter and getter pair, of a ParameterSerializable class.
+	 */
+	private static class Property {
+		final String name;
+		final Class<?> type;
+		final AnnotatedElement annotations;
+		final Field field;
+		final Method getter;
+		final Method setter;
+
+		Property(String name, Field field) {
+			this.name = name;
+			this.type = field.getType();
+			this.annotations = field;
+			this.field = field;
+			this.getter = null;
+			this.setter = null;
+		}
+
+		Property(String name, Method setter, Method getter) {
+			this.name = name;
+			this.type = setter.getParameterTypes()[0];
+			this.annotations = setter;
+			this.field = null;
+			this.getter = getter;
+			this.setter = setter;
+		}
+
+		Object get(Object obj) throws IllegalAccessException, InvocationTargetException {
+			return field != null ? field.get(obj) : getter.invoke(obj);
+		}
+
+		void set(Object obj, Object value) throws IllegalAccessException, InvocationTargetException {
+			if (field != null)
+				field.set(obj, value);
+			else
+				setter.invoke(obj, value);
+		}
+	}
+
+	private static final ClassValue<Property[]> properties = new ClassValue<Property[]>() {
+		@Override
+		protected Property[] computeValue(Class<?> type) {
+			List<Property> result = new ArrayList<>();
+			for (Method m : type.getMethods()) {
+				ConfXMLTag tagname = m.getAnnotation(ConfXMLTag.class);
+				if (tagname == null)
+					continue;
+				try {
+					Method getter = type.getMethod(m.getName().replaceFirst("^set", "get"));
+					result.add(new Property(tagname.value(), m, getter));
+				} catch (NoSuchMethodException ex) {
+					throw new IllegalArgumentException("No getter for config setter: " + m.getName(), ex);
+				}
+			}
+			for (Field f : type.getFields()) {
+				ConfXMLTag tagname = f.getAnnotation(ConfXMLTag.class);
+				if (f.isAnnotationPresent(ConfSquishParent.class))
+					result.add(new Property(f.getName(), f));
+				else if (tagname != null)
+					result.add(new Property(tagname.value(), f));
+			}
+			// Reflection does not list members in a fixed order
+			Collections.sort(result, new Comparator<Property>() {
+				@Override
+				public int compare(Property o1, Property o2) {
+					return o1.name.compareTo(o2.name);
+				}
+			});
+			return result.toArray(new Property[result.size()]);
+		}
+	};
+
+	/**
+	 * Registers an object and all the objects in its parameters as shared, so they are
+	 * written as references instead of copies.
+	 */
+	public void addShared(ParameterSerializable root) {
+		if (sharedIndex.containsKey(root))
+			return;
+		sharedIndex.put(root, shared.size());
+		shared.add(root);
+
+		for (Property p : properties.get(root.getClass())) {
+			try {
+				addSharedValue(p.type, p.annotations, p.get(root));
+			} catch (IllegalAccessException | InvocationTargetException ex) {
+				throw new RuntimeException("Cannot read configuration field: " + p.name, ex);
+			}
+		}
+	}
+
+	/**
+	 * Registers the objects a mutator gives as the cause of the multipliers it applies.
+	 * A multiplier is written as the position of its mutator among the ones registered and the
+	 * index of its cause, the reader must register the causes of the same mutators in the same order.
+	 */
+	public void addMultiplierCauses(Object[] causes) {
+		for (int i = 0; i < causes.length; i++) {
+			causeIndex.put(causes[i], new int[] { causeSources.size(), i });
+		}
+		causeSources.add(causes);
+	}
+
+	/**
+	 * Writes the multipliers applied to the Mutatable fields of shared objects, which write() only
+	 * writes a reference to.
+	 */
+	public void writeSharedMultipliers(CheckpointOutput out) throws IOException {
+		for (ParameterSerializable obj : shared) {
+			for (Property p : properties.get(obj.getClass())) {
+				if (!MutatableField.class.isAssignableFrom(p.type))
+					continue;
+				try {
+					writeMultipliers((MutatableField) p.get(obj), out);
+				} catch (IllegalAccessException | InvocationTargetException ex) {
+					throw new RuntimeException("Cannot save configuration field: " + p.name, ex);
+				} catch (IllegalStateException ex) {
+					throw new IllegalStateException(p.name + ": " + ex.getMessage(), ex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replaces the multipliers of the shared objects with the ones written by writeSharedMultipliers().
+	 */
+	public void readSharedMultipliers(CheckpointInput in) throws IOException {
+		for (ParameterSerializable obj : shared) {
+			for (Property p : properties.get(obj.getClass())) {
+				if (!MutatableField.class.isAssignableFrom(p.type))
+					continue;
+				try {
+					readMultipliers((MutatableField) p.get(obj), in);
+				} catch (IllegalAccessException | InvocationTargetException ex) {
+					throw new RuntimeException("Cannot load configuration field: " + p.name, ex);
+				}
+			}
+		}
+	}
+
+	private void addSharedValue(Class<?> type, AnnotatedElement annotationSource, Object value) {
+		if (value == null || ParameterChoice.class.isAssignableFrom(type)) {
+			return;
+		} else if (ParameterSerializable.class.isAssignableFrom(type)) {
+			addShared((ParameterSerializable) value);
+		} else if (type.isArray()) {
+			for (int i = 0; i < Array.getLength(value); i++) {
+				addSharedValue(type.getComponentType(), annotationSource, Array.get(value, i));
+			}
+		} else if (List.class.isAssignableFrom(type)) {
+			Class<?> componentType = getListComponentType(annotationSource);
+			for (Object item : (List<?>) value) {
+				addSharedValue(componentType, annotationSource, item);
+			}
+		} else if (Map.class.isAssignableFrom(type)) {
+			ConfMap mapOptions = getMapOptions(annotationSource);
+			@SuppressWarnings("unchecked")
+			Map<String, Object> map = (Map<String, Object>) value;
+			// Map order depends on how the configuration was made
+			List<String> keys = new ArrayList<>(map.keySet());
+			Collections.sort(keys);
+			for (String key : keys) {
+				addSharedValue(mapOptions.valueClass(), annotationSource, map.get(key));
+			}
+		}
+	}
+
+	/**
+	 * Writes an object, which can be null or shared, along with its class.
+	 */
+	public void writeInstance(ParameterSerializable value, CheckpointOutput out) throws IOException {
+		writeObject(ParameterSerializable.class, null, value, out);
+	}
+
+	/**
+	 * Reads an object written by writeInstance().
+	 *
+	 * @param type class the object must be an instance of
+	 */
+	public <T extends ParameterSerializable> T readInstance(Class<T> type, CheckpointInput in) throws IOException {
+		Object value = readObject(ParameterSerializable.class, null, null, in);
+		if (value != null && !type.isInstance(value))
+			throw new IOException("Corrupt checkpoint, expected " + type.getName() + " but found " + value.getClass().getName());
+		return type.cast(value);
+	}
+
+	/**
+	 * Writes the parameters of an object.
+	 *
+	 * @throws IllegalStateException when a parameter has a multiplier whose cause is not registered,
+	 * it cannot be saved
+	 */
+	public void write(ParameterSerializable obj, CheckpointOutput out) throws IOException {
+		for (Property p : properties.get(obj.getClass())) {
+			try {
+				writeObject(p.type, p.annotations, p.get(obj), out);
+			} catch (IllegalAccessException | InvocationTargetException ex) {
+				throw new RuntimeException("Cannot save configuration field: " + p.name, ex);
+			} catch (IllegalStateException ex) {
+				throw new IllegalStateException(p.name + ": " + ex.getMessage(), ex);
+			}
+		}
+	}
+
+	/**
+	 * Reads the parameters written by write() into an object of the same class.
+	 * Nested objects are loaded into the ones obj already has, like ParameterSerializer.load() does.
+	 *
+	 * @return obj
+	 */
+	public <T extends ParameterSerializable> T read(T obj, CheckpointInput in) throws IOException {
+		for (Property p : properties.get(obj.getClass())) {
+			try {
+				Object currentValue = p.field != null ? p.field.get(obj) : null;
+				p.set(obj, readObject(p.type, p.annotations, currentValue, in));
+			} catch (IllegalAccessException | InvocationTargetException ex) {
+				throw new RuntimeException("Cannot load configuration field: " + p.name, ex);
+			}
+		}
+		return obj;
+	}
+
+	private void writeObject(Class<?> type, AnnotatedElement annotationSource, Object value, CheckpointOutput out) throws IOException {
+		if (type == boolean.class || type == Boolean.class) {
+			out.writeBoolean((Boolean) value);
+		} else if (type == byte.class || type == Byte.class) {
+			out.writeByte((Byte) value);
+		} else if (type == char.class || type == Character.class) {
+			out.writeChar((Character) value);
+		} else if (type == short.class || type == Short.class) {
+			out.writeShort((Short) value);
+		} else if (type == int.class || type == Integer.class) {
+			out.writeInt((Integer) value);
+		} else if (type == long.class || type == Long.class) {
+			out.writeLong((Long) value);
+		} else if (type == float.class || type == Float.class) {
+			out.writeFloat((Float) value);
+		} else if (type == double.class || type == Double.class) {
+			out.writeDouble((Double) value);
+		} else if (type == String.class) {
+			out.writeString((String) value);
+
+		} else if (MutatableFloat.class.isAssignableFrom(type)) {
+			out.writeFloat(((MutatableFloat) value).getRawValue());
+			writeMultipliers((MutatableField) value, out);
+
+		} else if (MutatableInt.class.isAssignableFrom(type)) {
+			out.writeInt(((MutatableInt) value).getRawValue());
+			writeMultipliers((MutatableField) value, out);
+
+		} else if (type.isEnum()) {
+			out.writeInt(((Enum<?>) value).ordinal());
+
+		} else if (ParameterChoice.class.isAssignableFrom(type)) {
+			out.writeString(((ParameterChoice) value).getIdentifier());
+
+		} else if (ParameterSerializable.class.isAssignableFrom(type)) {
+			if (value == null) {
+				out.writeByte(NULL_OBJECT);
+				return;
+			}
+			Integer index = sharedIndex.get(value);
+			if (index != null) {
+				out.writeByte(SHARED_OBJECT);
+				out.writeInt(index);
+				return;
+			}
+			if (value.getClass() == type) {
+				out.writeByte(DECLARED_CLASS);
+			} else {
+				out.writeByte(OTHER_CLASS);
+				out.writeString(value.getClass().getName());
+			}
+			write((ParameterSerializable) value, out);
+
+		} else if (type.isArray()) {
+			out.writeInt(Array.getLength(value));
+			for (int i = 0; i < Array.getLength(value); i++) {
+				writeObject(type.getComponentType(), annotationSource, Array.get(value, i), out);
+			}
+
+		} else if (List.class.isAssignableFrom(type)) {
+			Class<?> componentType = getListComponentType(annotationSource);
+			List<?> list = (List<?>) value;
+			out.writeInt(list.size());
+			for (Object item : list) {
+				writeObject(componentType, annotationSource, item, out);
+			}
+
+		} else if (Map.class.isAssignableFrom(type)) {
+			ConfMap mapOptions = getMapOptions(annotationSource);
+			@SuppressWarnings("unchecked")
+			Map<String, Object> map = (Map<String, Object>) value;
+			out.writeInt(map.size());
+			for (Entry<String, Object> e : map.entrySet()) {
+				out.writeString(e.getKey());
+				writeObject(mapOptions.valueClass(), annotationSource, e.getValue(), out);
+			}
+
+		} else {
+			throw new IllegalArgumentException("Unknown field type");
+		}
+	}
+
+	private Object readObject(Class<?> type, AnnotatedElement annotationSource, Object currentValue, CheckpointInput in) throws IOException {
+		if (type == boolean.class || type == Boolean.class) {
+			return in.readBoolean();
+		} else if (type == byte.class || type == Byte.class) {
+			return in.readByte();
+		} else if (type == char.class || type == Character.class) {
+			return in.readChar();
+		} else if (type == short.class || type == Short.class) {
+			return in.readShort();
+		} else if (type == int.class || type == Integer.class) {
+			return in.readInt();
+		} else if (type == long.class || type == Long.class) {
+			return in.readLong();
+		} else if (type == float.class || type == Float.class) {
+			return in.readFloat();
+		} else if (type == double.class || type == Double.class) {
+			return in.readDouble();
+		} else if (type == String.class) {
+			return in.readString();
+
+		} else if (MutatableFloat.class.isAssignableFrom(type)) {
+			MutatableFloat result = new MutatableFloat(in.readFloat());
+			readMultipliers(result, in);
+			return result;
+
+		} else if (MutatableInt.class.isAssignableFrom(type)) {
+			MutatableInt result = new MutatableInt(in.readInt());
+			readMultipliers(result, in);
+			return result;
+
+		} else if (type.isEnum()) {
+			int ordinal = in.readInt();
+			Object[] constants = type.getEnumConstants();
+			if (ordinal < 0 || ordinal >= constants.length)
+				throw new IOException("Corrupt checkpoint, no value " + ordinal + " in " + type.getName());
+			return constants[ordinal];
+
+		} else if (ParameterChoice.class.isAssignableFrom(type)) {
+			@SuppressWarnings("unchecked")
+			Class<? extends ParameterChoice> choiceType = (Class<? extends ParameterChoice>) type;
+			return loadChoice(choiceType, in.readString());
+
+		} else if (ParameterSerializable.class.isAssignableFrom(type)) {
+			byte marker = in.readByte();
+			if (marker == NULL_OBJECT)
+				return null;
+			if (marker == SHARED_OBJECT) {
+				int index = in.readInt();
+				if (index < 0 || index >= shared.size())
+					throw new IOException("Corrupt checkpoint, unknown shared object " + index);
+				return shared.get(index);
+			}
+
+			Class<?> instanceClass = type;
+			if (marker == OTHER_CLASS) {
+				try {
+					instanceClass = Class.forName(in.readString());
+				} catch (ClassNotFoundException ex) {
+					throw new IOException("Checkpoint uses an unknown class", ex);
+				}
+				if (!type.isAssignableFrom(instanceClass))
+					throw new IOException("Corrupt checkpoint, " + instanceClass.getName() + " is not a " + type.getName());
+			} else if (marker != DECLARED_CLASS) {
+				throw new IOException("Corrupt checkpoint, bad object marker " + marker);
+			}
+
+			ParameterSerializable inner = (ParameterSerializable) currentValue;
+			// Shared objects must not change, a copy of one is read into a new object
+			if (inner == null || inner.getClass() != instanceClass || sharedIndex.containsKey(inner)) {
+				try {
+					inner = (ParameterSerializable) instanceClass.getDeclaredConstructor().newInstance();
+				} catch (InstantiationException | IllegalAccessException | NoSuchMethodException | InvocationTargetException ex) {
+					throw new RuntimeException(ex);
+				}
+			}
+			return read(inner, in);
+
+		} else if (type.isArray()) {
+			// Generic T[] arrays are erased, an existing array has the right component type
+			Class<?> componentType = currentValue != null
+					? currentValue.getClass().getComponentType()
+					: type.getComponentType();
+			int length = CheckpointInput.checkLength(in.readInt());
+			Object array = Array.newInstance(componentType, length);
+			for (int i = 0; i < length; i++) {
+				Object currentItem = null;
+				if (currentValue != null && i < Array.getLength(currentValue))
+					currentItem = Array.get(currentValue, i);
+				Array.set(array, i, readObject(componentType, annotationSource, currentItem, in));
+			}
+			return array;
+
+		} else if (List.class.isAssignableFrom(type)) {
+			Class<?> componentType = getListComponentType(annotationSource);
+			List<?> currentList = (List<?>) currentValue;
+			int size = CheckpointInput.checkLength(in.readInt());
+			List<Object> result = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				Object currentItem = null;
+				if (currentList != null && i < currentList.size())
+					currentItem = currentList.get(i);
+				result.add(readObject(componentType, annotationSource, currentItem, in));
+			}
+			return result;
+
+		} else if (Map.class.isAssignableFrom(type)) {
+			ConfMap mapOptions = getMapOptions(annotationSource);
+			Map<?, ?> currentMap = (Map<?, ?>) currentValue;
+			int size = CheckpointInput.checkLength(in.readInt());
+			Map<String, Object> result = new LinkedHashMap<>();
+			for (int i = 0; i < size; i++) {
+				String key = in.readString();
+				Object currentItem = currentMap != null ? currentMap.get(key) : null;
+				result.put(key, readObject(mapOptions.valueClass(), annotationSource, currentItem, in));
+			}
+			return result;
+
+		} else {
+			throw new IllegalArgumentException("Unknown field type");
+		}
+	}
+
+	private void writeMultipliers(MutatableField value, CheckpointOutput out) throws IOException {
+		Map<Object, Float> multipliers = value.getMultipliers();
+		out.writeInt(multipliers.size());
+		for (Entry<Object, Float> e : multipliers.entrySet()) {
+			int[] cause = causeIndex.get(e.getKey());
+			if (cause == null)
+				throw new IllegalStateException("value is being changed by " + e.getKey() + ", which cannot be saved");
+			out.writeInt(cause[0]);
+			out.writeInt(cause[1]);
+			out.writeFloat(e.getValue());
+		}
+	}
+
+	private void readMultipliers(MutatableField value, CheckpointInput in) throws IOException {
+		value.clearMultipliers();
+		int count = CheckpointInput.checkLength(in.readInt());
+		for (int i = 0; i < count; i++) {
+			int source = in.readInt();
+			int index = in.readInt();
+			float factor = in.readFloat();
+			if (source < 0 || source >= causeSources.size() || index < 0 || index >= causeSources.get(source).length)
+				throw new IOException("Corrupt checkpoint, unknown multiplier cause " + source + ":" + index);
+			value.setMultiplier(causeSources.get(source)[index], factor);
+		}
+	}
+
+	private static Class<?> getListComponentType(AnnotatedElement listAnnotations) {
+		ConfListType listTypeAnnotation = listAnnotations.getAnnotation(ConfListType.class);
+		if (listTypeAnnotation == null)
+			throw new IllegalArgumentException("List not tagged with @ConfListType");
+		return listTypeAnnotation.value();
+	}
+
+	private static ConfMap getMapOptions(AnnotatedElement mapAnnotations) {
+		ConfMap mapOptions = mapAnnotations.getAnnotation(ConfMap.class);
+		if (mapOptions == null)
+			throw new IllegalArgumentException("Config maps must be tagged @ConfMap");
+		return mapOptions;
+	}
+
+	private ParameterChoice loadChoice(Class<? extends ParameterChoice> type, String identifier) throws IOException {
+		for (ParameterChoice x : parts.getChoices(type)) {
+			if (identifier == null && x.getIdentifier() == null)
+				return x;
+			else if (identifier != null && identifier.equals(x.getIdentifier()))
+				return x;
+		}
+		throw new IOException("Checkpoint uses unknown " + type.getSimpleName() + ": " + identifier);
+	}
+}
@@ -0,0 +1,194 @@
+package org.cobweb.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.cobweb.util.BlockCompressor;
+
+/**
+ * Reads a checkpoint written by CheckpointOutput. Values must be read in the order they were written.
+ */
+public class CheckpointInput implements Closeable {
+
+	private final ReadableByteChannel channel;
+
+	private final int version;
+
+	private final ByteBuffer block = ByteBuffer.allocate(CheckpointOutput.BLOCK_SIZE);
+
+	private final ByteBuffer blockHeader = ByteBuffer.allocate(8);
+
+	private final byte[] compressed = new byte[BlockCompressor.maxCompressedLength(CheckpointOutput.BLOCK_SIZE)];
+
+	/**
+	 * Reads the header of the checkpoint.
+	 *
+	 * @param channel channel to read from, closed by close()
+	 * @throws IOException when the channel does not contain a checkpoint
+	 */
+	public CheckpointInput(ReadableByteChannel channel) throws IOException {
+		this.channel = channel;
+
+		ByteBuffer header = ByteBuffer.allocate(12);
+		readFully(header);
+		header.flip();
+		if (header.getInt() != CheckpointOutput.MAGIC)
+			throw new IOException("Not a checkpoint file");
+		version = header.getInt();
+		// Flags only matter to the writer, each block says whether it is compressed
+		header.getInt();
+
+		block.limit(0);
+	}
+
+	/**
+	 * @return version of the format of the values, as given to the CheckpointOutput
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	public boolean readBoolean() throws IOException {
+		return available(1).get() != 0;
+	}
+
+	public byte readByte() throws IOException {
+		return available(1).get();
+	}
+
+	public char readChar() throws IOException {
+		return available(2).getChar();
+	}
+
+	public short readShort() throws IOException {
+		return available(2).getShort();
+	}
+
+	public int readInt() throws IOException {
+		return available(4).getInt();
+	}
+
+	public long readLong() throws IOException {
+		return available(8).getLong();
+	}
+
+	public float readFloat() throws IOException {
+		return available(4).getFloat();
+	}
+
+	public double readDouble() throws IOException {
+		return available(8).getDouble();
+	}
+
+	public String readString() throws IOException {
+		int length = readInt();
+		if (length == -1)
+			return null;
+		byte[] bytes = new byte[checkLength(length)];
+		readBytes(bytes, 0, length);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public byte[] readByteArray() throws IOException {
+		byte[] values = new byte[checkLength(readInt())];
+		readBytes(values, 0, values.length);
+		return values;
+	}
+
+	public int[] readIntArray() throws IOException {
+		int[] values = new int[checkLength(readInt())];
+		for (int i = 0; i < values.length; i++)
+			values[i] = readInt();
+		return values;
+	}
+
+	public float[] readFloatArray() throws IOException {
+		float[] values = new float[checkLength(readInt())];
+		for (int i = 0; i < values.length; i++)
+			values[i] = readFloat();
+		return values;
+	}
+
+	public double[] readDoubleArray() throws IOException {
+		double[] values = new double[checkLength(readInt())];
+		for (int i = 0; i < values.length; i++)
+			values[i] = readDouble();
+		return values;
+	}
+
+	public void readBytes(byte[] values, int offset, int length) throws IOException {
+		while (length > 0) {
+			if (!block.hasRemaining())
+				readBlock();
+			int chunk = Math.min(length, block.remaining());
+			block.get(values, offset, chunk);
+			offset += chunk;
+			length -= chunk;
+		}
+	}
+
+	/**
+	 * Checks a length read from the file is not negative, so corrupt files fail with an IOException.
+	 */
+	protected static int checkLength(int length) throws IOException {
+		if (length < 0)
+			throw new IOException("Corrupt checkpoint, negative length");
+		return length;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * @return buffer holding at least the given number of bytes
+	 */
+	private ByteBuffer available(int bytes) throws IOException {
+		if (!block.hasRemaining())
+			readBlock();
+		// Values never span blocks
+		if (block.remaining() < bytes)
+			throw new IOException("Corrupt checkpoint, value split between blocks");
+		return block;
+	}
+
+	private void readBlock() throws IOException {
+		blockHeader.clear();
+		readFully(blockHeader);
+		blockHeader.flip();
+		int length = blockHeader.getInt();
+		int storedLength = blockHeader.getInt();
+
+		if (length == 0)
+			throw new EOFException("Unexpected end of checkpoint");
+		if (length < 0 || length > block.capacity() || storedLength < 0 || storedLength > compressed.length)
+			throw new IOException("Corrupt checkpoint, bad block length");
+
+		block.clear();
+		block.limit(length);
+		if (storedLength == 0) {
+			readFully(block);
+		} else {
+			ByteBuffer data = ByteBuffer.wrap(compressed, 0, storedLength);
+			readFully(data);
+			try {
+				BlockCompressor.decompress(compressed, 0, storedLength, block.array(), length);
+			} catch (IllegalArgumentException ex) {
+				throw new IOException("Corrupt checkpoint", ex);
+			}
+		}
+		block.position(0);
+	}
+
+	private void readFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0)
+				throw new EOFException("Unexpected end of checkpoint");
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package org.cobweb.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.cobweb.util.BlockCompressor;
+
+/**
+ * Writes a checkpoint, a binary file of values read back in the same order by CheckpointInput.
+ *
+ * <p>The file starts with a header giving the format version, followed by blocks of at most
+ * BLOCK_SIZE bytes, each optionally compressed with BlockCompressor. A single value never spans
+ * two blocks, except for byte arrays and strings. A block of length 0 marks the end of the file.
+ */
+public class CheckpointOutput implements Closeable {
+
+	/**
+	 * "CWCP", first 4 bytes of every checkpoint.
+	 */
+	public static final int MAGIC = 0x43574350;
+
+	static final int BLOCK_SIZE = 1 << 16;
+
+	static final int FLAG_COMPRESSED = 1;
+
+	private final WritableByteChannel channel;
+
+	private final ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+
+	/**
+	 * Length of the block before and after compression, 0 when it is stored as is.
+	 */
+	private final ByteBuffer blockHeader = ByteBuffer.allocate(8);
+
+	private final BlockCompressor compressor;
+
+	private final byte[] compressed;
+
+	/**
+	 * @param channel channel to write to, closed by close()
+	 * @param version version of the format of the values written, given back by CheckpointInput.getVersion()
+	 * @param compress whether to compress blocks
+	 */
+	public CheckpointOutput(WritableByteChannel channel, int version, boolean compress) throws IOException {
+		this.channel = channel;
+		if (compress) {
+			compressor = new BlockCompressor();
+			compressed = new byte[BlockCompressor.maxCompressedLength(BLOCK_SIZE)];
+		} else {
+			compressor = null;
+			compressed = null;
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(12);
+		header.putInt(MAGIC).putInt(version).putInt(compress ? FLAG_COMPRESSED : 0);
+		header.flip();
+		writeFully(header);
+	}
+
+	public void writeBoolean(boolean value) throws IOException {
+		reserve(1).put((byte) (value ? 1 : 0));
+	}
+
+	public void writeByte(byte value) throws IOException {
+		reserve(1).put(value);
+	}
+
+	public void writeChar(char value) throws IOException {
+		reserve(2).putChar(value);
+	}
+
+	public void writeShort(short value) throws IOException {
+		reserve(2).putShort(value);
+	}
+
+	public void writeInt(int value) throws IOException {
+		reserve(4).putInt(value);
+	}
+
+	public void writeLong(long value) throws IOException {
+		reserve(8).putLong(value);
+	}
+
+	public void writeFloat(float value) throws IOException {
+		reserve(4).putFloat(value);
+	}
+
+	public void writeDouble(double value) throws IOException {
+		reserve(8).putDouble(value);
+	}
+
+	/**
+	 * Writes a string, which can be null.
+	 */
+	public void writeString(String value) throws IOException {
+		if (value == null) {
+			writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeInt(bytes.length);
+		writeBytes(bytes, 0, bytes.length);
+	}
+
+	public void writeByteArray(byte[] values) throws IOException {
+		writeInt(values.length);
+		writeBytes(values, 0, values.length);
+	}
+
+	public void writeIntArray(int[] values) throws IOException {
+		writeInt(values.length);
+		for (int v : values)
+			writeInt(v);
+	}
+
+	public void writeFloatArray(float[] values) throws IOException {
+		writeInt(values.length);
+		for (float v : values)
+			writeFloat(v);
+	}
+
+	public void writeDoubleArray(double[] values) throws IOException {
+		writeInt(values.length);
+		for (double v : values)
+			writeDouble(v);
+	}
+
+	/**
+	 * Writes bytes without their length.
+	 */
+	public void writeBytes(byte[] values, int offset, int length) throws IOException {
+		while (length > 0) {
+			if (!block.hasRemaining())
+				writeBlock();
+			int chunk = Math.min(length, block.remaining());
+			block.put(values, offset, chunk);
+			offset += chunk;
+			length -= chunk;
+		}
+	}
+
+	/**
+	 * Writes the last block and the end of file mark, and closes the channel.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			writeBlock();
+			blockHeader.clear();
+			blockHeader.putInt(0).putInt(0).flip();
+			writeFully(blockHeader);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * @return buffer with room for the given number of bytes
+	 */
+	private ByteBuffer reserve(int bytes) throws IOException {
+		if (block.remaining() < bytes)
+			writeBlock();
+		return block;
+	}
+
+	private void writeBlock() throws IOException {
+		int length = block.position();
+		if (length == 0)
+			return;
+
+		int storedLength = 0;
+		ByteBuffer data = null;
+		if (compressor != null) {
+			int compressedLength = compressor.compress(block.array(), length, compressed);
+			if (compressedLength < length) {
+				storedLength = compressedLength;
+				data = ByteBuffer.wrap(compressed, 0, compressedLength);
+			}
+		}
+		if (data == null)
+			data = ByteBuffer.wrap(block.array(), 0, length);
+
+		blockHeader.clear();
+		blockHeader.putInt(length).putInt(storedLength).flip();
+		writeFully(blockHeader);
+		writeFully(data);
+		block.clear();
+	}
+
+	private void writeFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+}
@@ -46,6 +46,29 @@ public class ArrayUtilities {
 		return result;
 	}
 
+	/**
+	 * Resizes a grid stored row by row in a flat array. Cells that fit in the
+	 * new dimensions keep their position, new cells are left empty.
+	 *
+	 * @param original original array, width * height long
+	 * @return the original array if the dimensions did not change, otherwise a new array
+	 */
+	public static <T> T resizeGrid(T original, int width, int height, int newWidth, int newHeight) {
+		if (!original.getClass().isArray()) {
+			throw new IllegalArgumentException("Cannot resize anything except an array!");
+		}
+		if (width == newWidth && height == newHeight)
+			return original;
+
+		@SuppressWarnings("unchecked")
+		T result = (T) Array.newInstance(original.getClass().getComponentType(), newWidth * newHeight);
+		int rowLength = Math.min(width, newWidth);
+		for (int y = 0; y < Math.min(height, newHeight); y++) {
+			System.arraycopy(original, y * width, result, y * newWidth, rowLength);
+		}
+		return result;
+	}
+
 	/**
 	 * Clones multi-dimensional arrays, the inner-most elements are shallow copies!
 	 * @param original Array to clone
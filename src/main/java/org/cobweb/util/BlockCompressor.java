@@ -0,0 +1,204 @@
+package org.cobweb.util;
+
+import java.util.Arrays;
+
+/**
+ * Fast compression of blocks of up to a few hundred kilobytes, using the LZ4 block format:
+ * runs of literal bytes alternate with matches that copy bytes from up to 64KB earlier in the block.
+ *
+ * <p>Each sequence starts with a token byte, the high 4 bits give the number of literals and the low
+ * 4 bits the match length minus 4. A value of 15 is continued by bytes added to it, up to a byte that
+ * is not 255. The literals follow, then the 2 byte little-endian offset of the match. The last
+ * sequence of a block only has literals.
+ *
+ * <p>Compresses poorly compared to deflate, but is fast enough to not slow down writing to disk.
+ * Instances keep a hash table between calls and are not thread safe.
+ */
+public class BlockCompressor {
+
+	private static final int MIN_MATCH = 4;
+
+	private static final int MAX_OFFSET = 0xFFFF;
+
+	/**
+	 * Bytes at the end of a block that are always literals, and the last position a match can
+	 * start at, as in LZ4.
+	 */
+	private static final int LAST_LITERALS = 5;
+	private static final int MATCH_START_LIMIT = 12;
+
+	private static final int HASH_BITS = 14;
+
+	/**
+	 * Last position each hash of 4 bytes was seen at, -1 if not seen in the current block.
+	 */
+	private final int[] hashTable = new int[1 << HASH_BITS];
+
+	/**
+	 * @return largest size data of the given length can compress to, when it does not compress at all.
+	 */
+	public static int maxCompressedLength(int length) {
+		return length + length / 255 + 16;
+	}
+
+	/**
+	 * Compresses a block.
+	 *
+	 * @param src data to compress
+	 * @param length number of bytes of src to compress
+	 * @param dst array to write to, of at least maxCompressedLength(length) bytes
+	 * @return compressed length
+	 */
+	public int compress(byte[] src, int length, byte[] dst) {
+		Arrays.fill(hashTable, -1);
+
+		int anchor = 0;
+		int out = 0;
+		int pos = 0;
+		int matchStartLimit = length - MATCH_START_LIMIT;
+		int matchEndLimit = length - LAST_LITERALS;
+
+		while (pos < matchStartLimit) {
+			int sequence = readInt(src, pos);
+			int hash = hash(sequence);
+			int ref = hashTable[hash];
+			hashTable[hash] = pos;
+
+			if (ref < 0 || pos - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+				pos++;
+				continue;
+			}
+
+			// Take in the bytes before the match that also match
+			while (pos > anchor && ref > 0 && src[pos - 1] == src[ref - 1]) {
+				pos--;
+				ref--;
+			}
+
+			int matchEnd = pos + MIN_MATCH;
+			int refEnd = ref + MIN_MATCH;
+			while (matchEnd < matchEndLimit && src[matchEnd] == src[refEnd]) {
+				matchEnd++;
+				refEnd++;
+			}
+
+			out = writeSequence(src, anchor, pos - anchor, dst, out, pos - ref, matchEnd - pos - MIN_MATCH);
+
+			pos = matchEnd;
+			anchor = pos;
+		}
+
+		return writeSequence(src, anchor, length - anchor, dst, out, 0, -1);
+	}
+
+	/**
+	 * Decompresses a block made by compress().
+	 *
+	 * @param src array containing the compressed block
+	 * @param offset position of the block in src
+	 * @param length compressed length
+	 * @param dst array to decompress into
+	 * @param dstLength length of the block before it was compressed
+	 * @throws IllegalArgumentException when the block is corrupt
+	 */
+	public static void decompress(byte[] src, int offset, int length, byte[] dst, int dstLength) {
+		int in = offset;
+		int end = offset + length;
+		int out = 0;
+
+		try {
+			while (true) {
+				int token = src[in++] & 0xFF;
+
+				int literals = token >>> 4;
+				if (literals == 15) {
+					int b;
+					do {
+						b = src[in++] & 0xFF;
+						literals += b;
+					} while (b == 255);
+				}
+				if (literals > end - in || literals > dstLength - out)
+					throw new IllegalArgumentException("Corrupt compressed block, literals past the end");
+				System.arraycopy(src, in, dst, out, literals);
+				in += literals;
+				out += literals;
+
+				if (in == end)
+					break;
+
+				int matchOffset = (src[in++] & 0xFF) | (src[in++] & 0xFF) << 8;
+				int matchLength = token & 0xF;
+				if (matchLength == 15) {
+					int b;
+					do {
+						b = src[in++] & 0xFF;
+						matchLength += b;
+					} while (b == 255);
+				}
+				matchLength += MIN_MATCH;
+
+				int ref = out - matchOffset;
+				if (matchOffset == 0 || ref < 0 || matchLength > dstLength - out)
+					throw new IllegalArgumentException("Corrupt compressed block, bad match");
+				// Byte by byte, the match can overlap the bytes it produces
+				for (int i = 0; i < matchLength; i++) {
+					dst[out++] = dst[ref++];
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException ex) {
+			throw new IllegalArgumentException("Corrupt compressed block, truncated", ex);
+		}
+
+		if (out != dstLength)
+			throw new IllegalArgumentException("Corrupt compressed block, wrong length");
+	}
+
+	/**
+	 * Writes the literals and match of a sequence.
+	 *
+	 * @param matchLength length of the match minus MIN_MATCH, -1 for the last sequence
+	 * @return position in dst after the sequence
+	 */
+	private static int writeSequence(byte[] src, int literalStart, int literals, byte[] dst, int out,
+			int matchOffset, int matchLength) {
+		int tokenPos = out++;
+		int token = Math.min(literals, 15) << 4;
+		if (literals >= 15)
+			out = writeLength(literals - 15, dst, out);
+
+		System.arraycopy(src, literalStart, dst, out, literals);
+		out += literals;
+
+		if (matchLength >= 0) {
+			dst[out++] = (byte) matchOffset;
+			dst[out++] = (byte) (matchOffset >>> 8);
+			token |= Math.min(matchLength, 15);
+			if (matchLength >= 15)
+				out = writeLength(matchLength - 15, dst, out);
+		}
+
+		dst[tokenPos] = (byte) token;
+		return out;
+	}
+
+	private static int writeLength(int length, byte[] dst, int out) {
+		while (length >= 255) {
+			dst[out++] = (byte) 255;
+			length -= 255;
+		}
+		dst[out++] = (byte) length;
+		return out;
+	}
+
+	private static int readInt(byte[] src, int pos) {
+		return (src[pos] & 0xFF)
+				| (src[pos + 1] & 0xFF) << 8
+				| (src[pos + 2] & 0xFF) << 16
+				| (src[pos + 3] & 0xFF) << 24;
+	}
+
+	private static int hash(int sequence) {
+		return (sequence * -1640531535) >>> (32 - HASH_BITS);
+	}
+}
@@ -1,35 +1,132 @@
 package org.cobweb.util;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.cobweb.io.ParameterSerializable;
 
 
 public class CloneHelper {
 
+	/**
+	 * Instance fields of a ParameterSerializable class, found once per class.
+	 */
+	private static class FieldTable {
+		/** Public MutatableFloat fields */
+		final Field[] floats;
+		/** Public MutatableInt fields */
+		final Field[] ints;
+		/** Every other instance field, including inherited and non-public ones */
+		final Field[] others;
+
+		FieldTable(Class<?> clazz) {
+			List<Field> floatList = new ArrayList<>();
+			List<Field> intList = new ArrayList<>();
+			List<Field> otherList = new ArrayList<>();
+			for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+				for (Field f : c.getDeclaredFields()) {
+					int mod = f.getModifiers();
+					if (Modifier.isStatic(mod))
+						continue;
+					f.setAccessible(true);
+					if (Modifier.isPublic(mod) && f.getType().equals(MutatableFloat.class))
+						floatList.add(f);
+					else if (Modifier.isPublic(mod) && f.getType().equals(MutatableInt.class))
+						intList.add(f);
+					else
+						otherList.add(f);
+				}
+			}
+			floats = floatList.toArray(new Field[floatList.size()]);
+			ints = intList.toArray(new Field[intList.size()]);
+			others = otherList.toArray(new Field[otherList.size()]);
+		}
+	}
+
+	private static final ClassValue<FieldTable> fieldTables = new ClassValue<FieldTable>() {
+		@Override
+		protected FieldTable computeValue(Class<?> type) {
+			return new FieldTable(type);
+		}
+	};
+
 	/**
 	 * Finds MutatableFloat/Int fields in given ParameterSerializable and replaces them with new
 	 * instances with the same raw value and no multipliers applied.
 	 */
 	public static void resetMutatable(ParameterSerializable obj) {
-		Class<? extends ParameterSerializable> clazz = obj.getClass();
-		for (Field f : clazz.getFields()) {
-			try {
-				if (f.getType().equals(MutatableFloat.class)) {
-					MutatableFloat original = (MutatableFloat) f.get(obj);
-					MutatableFloat copy = new MutatableFloat(original.getRawValue());
-					f.set(obj, copy);
-
-				} else if (f.getType().equals(MutatableInt.class))  {
-					MutatableInt original = (MutatableInt) f.get(obj);
-					MutatableInt copy = new MutatableInt(original.getRawValue());
-					f.set(obj, copy);
+		FieldTable table = fieldTables.get(obj.getClass());
+		try {
+			for (Field f : table.floats) {
+				MutatableFloat original = (MutatableFloat) f.get(obj);
+				f.set(obj, new MutatableFloat(original.getRawValue()));
+			}
+			for (Field f : table.ints) {
+				MutatableInt original = (MutatableInt) f.get(obj);
+				f.set(obj, new MutatableInt(original.getRawValue()));
+			}
+		} catch (IllegalArgumentException | IllegalAccessException ex) {
+			throw new RuntimeException("Unexpected reflection error", ex);
+		}
+	}
 
-				}
-			} catch (IllegalArgumentException | IllegalAccessException ex) {
-				throw new RuntimeException("Unexpected reflection error", ex);
+	/**
+	 * Makes target the same as clone() followed by resetMutatable() would make a copy of source,
+	 * but keeps the MutatableFloat/Int instances of target, setting their raw value and removing
+	 * their multipliers instead of creating new ones.
+	 *
+	 * @param source object to copy from
+	 * @param target object of the same class to copy into
+	 */
+	public static <T extends ParameterSerializable> void copyInto(T source, T target) {
+		if (source.getClass() != target.getClass())
+			throw new IllegalArgumentException("Cannot copy " + source.getClass().getName()
+					+ " into " + target.getClass().getName());
+
+		FieldTable table = fieldTables.get(source.getClass());
+		try {
+			for (Field f : table.floats) {
+				MutatableFloat from = (MutatableFloat) f.get(source);
+				MutatableFloat to = (MutatableFloat) f.get(target);
+				to.setValue(from.getRawValue());
+				to.clearMultipliers();
+			}
+			for (Field f : table.ints) {
+				MutatableInt from = (MutatableInt) f.get(source);
+				MutatableInt to = (MutatableInt) f.get(target);
+				to.setValue(from.getRawValue());
+				to.clearMultipliers();
 			}
+			for (Field f : table.others) {
+				copyField(f, source, target);
+			}
+		} catch (IllegalArgumentException | IllegalAccessException ex) {
+			throw new RuntimeException("Unexpected reflection error", ex);
 		}
+	}
 
+	private static void copyField(Field f, Object source, Object target) throws IllegalAccessException {
+		// Primitives are copied without boxing
+		Class<?> type = f.getType();
+		if (type == int.class)
+			f.setInt(target, f.getInt(source));
+		else if (type == float.class)
+			f.setFloat(target, f.getFloat(source));
+		else if (type == boolean.class)
+			f.setBoolean(target, f.getBoolean(source));
+		else if (type == double.class)
+			f.setDouble(target, f.getDouble(source));
+		else if (type == long.class)
+			f.setLong(target, f.getLong(source));
+		else if (type == short.class)
+			f.setShort(target, f.getShort(source));
+		else if (type == byte.class)
+			f.setByte(target, f.getByte(source));
+		else if (type == char.class)
+			f.setChar(target, f.getChar(source));
+		else
+			f.set(target, f.get(source));
 	}
 }
@@ -0,0 +1,83 @@
+package org.cobweb.util;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size set of indexes stored as bits.
+ *
+ * A second level of bits marks which 64-bit words are non-zero, so nextSetBit() skips
+ * 4096 empty indexes at a time and iterating a mostly empty set is fast even when the
+ * range of indexes is large. Bits set ahead of the current position while iterating
+ * with nextSetBit() will be visited.
+ */
+public class IndexBitSet {
+
+	private final int size;
+
+	private final long[] words;
+
+	/**
+	 * Bit w is set when words[w] is not zero.
+	 */
+	private final long[] summary;
+
+	public IndexBitSet(int size) {
+		this.size = size;
+		words = new long[(size + 63) >>> 6];
+		summary = new long[(words.length + 63) >>> 6];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean get(int index) {
+		return (words[index >>> 6] & (1L << index)) != 0;
+	}
+
+	public void set(int index) {
+		int w = index >>> 6;
+		if (words[w] == 0)
+			summary[w >>> 6] |= 1L << w;
+		words[w] |= 1L << index;
+	}
+
+	public void clear(int index) {
+		int w = index >>> 6;
+		words[w] &= ~(1L << index);
+		if (words[w] == 0)
+			summary[w >>> 6] &= ~(1L << w);
+	}
+
+	public void clear() {
+		Arrays.fill(words, 0);
+		Arrays.fill(summary, 0);
+	}
+
+	/**
+	 * @return first set index at or after fromIndex, -1 if there is none.
+	 */
+	public int nextSetBit(int fromIndex) {
+		if (fromIndex >= size)
+			return -1;
+
+		int w = fromIndex >>> 6;
+		long word = words[w] & (-1L << fromIndex);
+		if (word != 0)
+			return (w << 6) + Long.numberOfTrailingZeros(word);
+
+		w++;
+		if (w >= words.length)
+			return -1;
+
+		int s = w >>> 6;
+		long summaryWord = summary[s] & (-1L << w);
+		while (summaryWord == 0) {
+			if (++s >= summary.length)
+				return -1;
+			summaryWord = summary[s];
+		}
+		w = (s << 6) + Long.numberOfTrailingZeros(summaryWord);
+		return (w << 6) + Long.numberOfTrailingZeros(words[w]);
+	}
+}
@@ -1,6 +1,7 @@
 package org.cobweb.util;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -9,7 +10,11 @@ import java.util.Map;
  */
 public abstract class MutatableField {
 
-	private final Map<Object, Float> multipliers = new HashMap<>();
+	/**
+	 * Created by the first setMultiplier(), most fields never get one.
+	 * Multiplied in the order they were first set, so the value is the same every run.
+	 */
+	private Map<Object, Float> multipliers;
 
 	/**
 	 * Adds/updates a multiplier identified by cause
@@ -17,6 +22,8 @@ public abstract class MutatableField {
 	 * @param factor multiplication factor
 	 */
 	public void setMultiplier(Object cause, float factor) {
+		if (multipliers == null)
+			multipliers = new LinkedHashMap<>();
 		multipliers.put(cause, factor);
 		updateCache();
 	}
@@ -26,10 +33,30 @@ public abstract class MutatableField {
 	 * @param cause The source/cause of factor being removed
 	 */
 	public void removeMultiplier(Object cause) {
+		if (multipliers == null)
+			return;
 		multipliers.remove(cause);
 		updateCache();
 	}
 
+	/**
+	 * Removes all multipliers
+	 */
+	public void clearMultipliers() {
+		if (multipliers != null)
+			multipliers.clear();
+		multiplier = 1;
+	}
+
+	/**
+	 * @return multiplication factor of each cause, in the order they are applied
+	 */
+	public Map<Object, Float> getMultipliers() {
+		if (multipliers == null)
+			return Collections.emptyMap();
+		return Collections.unmodifiableMap(multipliers);
+	}
+
 	protected float multiplier = 1;
 
 	private void updateCache() {
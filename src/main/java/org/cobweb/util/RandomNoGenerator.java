@@ -1,18 +1,46 @@
 package org.cobweb.util;
 
+import java.io.IOException;
 import java.util.Random;
 
+import org.cobweb.io.CheckpointInput;
+import org.cobweb.io.CheckpointOutput;
+
 /**
- * Random number generator
+ * Random number generator.
+ *
+ * Generators can be split into independent streams with split(), which derives the seed of
+ * the new generator from the seed of this one and a key. Subsystems that draw from their own
+ * stream get the same numbers whatever other subsystems draw.
+ *
+ * The generator gives the same numbers as java.util.Random with the same seed, but is not
+ * thread safe.
  */
 public class RandomNoGenerator extends Random {
 
 	private long seed;
 
+	/*
+	 * State of the generator, the same linear congruential generator as java.util.Random keeps
+	 * in private fields, so it can be saved and restored with saveState() and loadState().
+	 * Not initialized here: Random's constructor calls setSeed() before field initializers run.
+	 */
+	private long lcgState;
+	private double nextNextGaussian;
+	private boolean haveNextNextGaussian;
+
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+
 	public static final long serialVersionUID = 0x660028115BCBF9CEL;
 
+	/**
+	 * Creates a generator with a random seed, which is kept so split() works the same way
+	 * as on seeded generators.
+	 */
 	public RandomNoGenerator() {
-		super();
+		this(new Random().nextLong());
 	}
 
 	public RandomNoGenerator(long seed) {
@@ -24,6 +52,75 @@ public class RandomNoGenerator extends Random {
 		return seed;
 	}
 
+	@Override
+	public void setSeed(long seed) {
+		lcgState = (seed ^ MULTIPLIER) & MASK;
+		haveNextNextGaussian = false;
+	}
+
+	@Override
+	protected int next(int bits) {
+		lcgState = (lcgState * MULTIPLIER + ADDEND) & MASK;
+		return (int) (lcgState >>> (48 - bits));
+	}
+
+	@Override
+	public double nextGaussian() {
+		// Polar method, as in java.util.Random
+		if (haveNextNextGaussian) {
+			haveNextNextGaussian = false;
+			return nextNextGaussian;
+		}
+		double v1, v2, s;
+		do {
+			v1 = 2 * nextDouble() - 1;
+			v2 = 2 * nextDouble() - 1;
+			s = v1 * v1 + v2 * v2;
+		} while (s >= 1 || s == 0);
+		double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+		nextNextGaussian = v2 * multiplier;
+		haveNextNextGaussian = true;
+		return v1 * multiplier;
+	}
+
+	/**
+	 * Writes the position of the generator in its sequence, and the seed split() uses.
+	 */
+	public void saveState(CheckpointOutput out) throws IOException {
+		out.writeLong(seed);
+		out.writeLong(lcgState);
+		out.writeBoolean(haveNextNextGaussian);
+		out.writeDouble(nextNextGaussian);
+	}
+
+	/**
+	 * Continues the sequence from where the generator was when saveState() was called.
+	 */
+	public void loadState(CheckpointInput in) throws IOException {
+		seed = in.readLong();
+		lcgState = in.readLong();
+		haveNextNextGaussian = in.readBoolean();
+		nextNextGaussian = in.readDouble();
+	}
+
+	/**
+	 * Creates a generator for the stream identified by key. The result only depends on the
+	 * seed this generator was created with and the key, not on how many numbers it has given out.
+	 */
+	public RandomNoGenerator split(long key) {
+		return new RandomNoGenerator(mix(seed, key));
+	}
+
+	/**
+	 * SplitMix64 finalizer, derives well distributed seeds from a seed and an index.
+	 */
+	public static long mix(long seed, long index) {
+		long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
 	/**
 	 * @return a random integer over (m,n]
 	 */
@@ -0,0 +1,75 @@
+package org.cobweb.cobweb2;
+
+import java.lang.management.ManagementFactory;
+
+import org.cobweb.cobweb2.io.Cobweb2Serializer;
+
+/**
+ * Measures how much memory a simulation allocates per tick with and without agent pooling.
+ * Not a unit test, run it directly:
+ * <pre>AgentPoolingBenchmark [config file] [ticks]</pre>
+ * Agents are updated serially so all allocation happens on the calling thread.
+ */
+public class AgentPoolingBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		String file = args.length > 0 ? args[0] : "src/main/resources/experiments/Exponential Growth Experiment.xml";
+		int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+		// Warm up both modes so class loading and compilation are not counted
+		run(file, ticks / 4, false);
+		run(file, ticks / 4, true);
+
+		Result normal = run(file, ticks, false);
+		Result pooled = run(file, ticks, true);
+
+		System.out.println("Without pooling: " + normal);
+		System.out.println("With pooling:    " + pooled);
+		System.out.printf("Allocation per tick reduced by %.1f%%%n",
+				100.0 * (1 - pooled.bytesPerTick() / normal.bytesPerTick()));
+	}
+
+	private static class Result {
+		long bytes;
+		int ticks;
+		int births;
+		long millis;
+
+		double bytesPerTick() {
+			return (double) bytes / ticks;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d ticks, %d births, %.1f KB/tick, %.1f bytes/birth, %d ms",
+					ticks, births, bytesPerTick() / 1024, (double) bytes / Math.max(1, births), millis);
+		}
+	}
+
+	private static Result run(String file, int ticks, boolean pooling) throws Exception {
+		SimulationConfig config = new Cobweb2Serializer().loadConfig(file);
+		config.agentPooling = pooling;
+		if (config.randomSeed == 0)
+			config.randomSeed = 42;
+		config.parallelThreads = 0;
+
+		Simulation simulation = new Simulation();
+		simulation.load(config);
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+
+		Result result = new Result();
+		result.ticks = ticks;
+		long startBytes = threads.getThreadAllocatedBytes(thread);
+		long startTime = System.nanoTime();
+		int startAgents = simulation.statsMutator.getAgentCount();
+		for (int i = 0; i < ticks; i++) {
+			simulation.step();
+		}
+		result.millis = (System.nanoTime() - startTime) / 1000000;
+		result.bytes = threads.getThreadAllocatedBytes(thread) - startBytes;
+		result.births = simulation.statsMutator.getAgentCount() - startAgents;
+		return result;
+	}
+}
@@ -0,0 +1,58 @@
+package org.cobweb.cobweb2;
+
+/**
+ * Measures how long a tick takes when agents are updated serially and with different numbers
+ * of threads. Not a unit test, run it directly:
+ * <pre>ParallelUpdateBenchmark [grid size] [ticks] [thread counts...]</pre>
+ * The default configuration is used on a square grid, with every statistics mutator active.
+ */
+public class ParallelUpdateBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+		int[] threadCounts = { 0, 1, 2, 4 };
+		if (args.length > 2) {
+			threadCounts = new int[args.length - 2];
+			for (int i = 2; i < args.length; i++)
+				threadCounts[i - 2] = Integer.parseInt(args[i]);
+		}
+
+		System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+
+		// Warm up so class loading and compilation are not counted
+		for (int threads : threadCounts)
+			run(size, ticks / 4, threads);
+
+		double serial = 0;
+		for (int threads : threadCounts) {
+			double millisPerTick = run(size, ticks, threads);
+			if (threads == 0)
+				serial = millisPerTick;
+			System.out.printf("%d threads: %.2f ms/tick%s%n", threads, millisPerTick,
+					serial > 0 && threads > 0 ? String.format(", %.2fx serial", serial / millisPerTick) : "");
+		}
+	}
+
+	private static double run(int size, int ticks, int threads) {
+		SimulationConfig config = new SimulationConfig();
+		config.randomSeed = 42;
+		config.envParams.width = size;
+		config.envParams.height = size;
+		config.envParams.initialStones = size * size / 50;
+		for (int i = 0; i < config.getAgentTypes(); i++)
+			config.agentParams.agentParams[i].initialAgents = size * size / 100;
+		config.parallelThreads = threads;
+
+		Simulation simulation = new Simulation();
+		simulation.load(config);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ticks; i++) {
+			simulation.step();
+		}
+		long elapsed = System.nanoTime() - start;
+		simulation.dispose();
+		return elapsed / 1e6 / ticks;
+	}
+}
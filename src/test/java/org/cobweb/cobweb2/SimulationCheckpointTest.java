@@ -0,0 +1,115 @@
+package org.cobweb.cobweb2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import junit.framework.TestCase;
+
+import org.cobweb.cobweb2.core.Phenotype;
+
+/**
+ * Checks a simulation resumed from a checkpoint continues exactly like the simulation that was saved.
+ */
+public class SimulationCheckpointTest extends TestCase {
+
+	private static final int TICKS_BEFORE = 150;
+	private static final int TICKS_AFTER = 150;
+
+	private static SimulationConfig createPluginConfig() {
+		SimulationConfig config = SimulationFixture.createConfig(0);
+		for (int i = 0; i < config.getAgentTypes(); i++) {
+			config.agentParams.agentParams[i].broadcastMode = true;
+			config.wasteParams.agentParams[i].wasteMode = true;
+			config.prodParams.agentParams[i].productionMode = true;
+		}
+		return config;
+	}
+
+	/**
+	 * @return configuration where genes change the food and step energy of every agent
+	 */
+	private static SimulationConfig createGeneticConfig() {
+		SimulationConfig config = SimulationFixture.createConfig(0);
+		config.geneticParams.phenotype = new Phenotype[] { SimulationFixture.findPhenotype("FoodEnergy"), SimulationFixture.findPhenotype("StepEnergy") };
+		config.geneticParams.resizeGenes();
+		return config;
+	}
+
+	private static Simulation resume(Simulation simulation, boolean compress) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		SimulationCheckpoint.save(simulation, Channels.newChannel(bytes), compress);
+		return SimulationCheckpoint.load(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())));
+	}
+
+	private static void checkResume(SimulationConfig config, boolean compress) throws IOException {
+		Simulation simulation = new Simulation();
+		simulation.load(config);
+		SimulationFixture.run(simulation, TICKS_BEFORE);
+
+		Simulation resumed = resume(simulation, compress);
+		assertEquals(simulation.getTime(), resumed.getTime());
+		assertEquals(simulation.theEnvironment.getAgentCount(), resumed.theEnvironment.getAgentCount());
+
+		long expected = SimulationFixture.run(simulation, TICKS_AFTER);
+		assertEquals(expected, SimulationFixture.run(resumed, TICKS_AFTER));
+	}
+
+	public void testResume() throws IOException {
+		checkResume(SimulationFixture.createConfig(0), false);
+	}
+
+	public void testResumeCompressed() throws IOException {
+		checkResume(SimulationFixture.createConfig(0), true);
+	}
+
+	public void testResumeParallel() throws IOException {
+		checkResume(SimulationFixture.createConfig(2), true);
+	}
+
+	public void testResumeWithPlugins() throws IOException {
+		checkResume(createPluginConfig(), true);
+	}
+
+	public void testResumeWithGenes() throws IOException {
+		checkResume(createGeneticConfig(), true);
+	}
+
+	public void testResumeFromFile() throws IOException {
+		Simulation simulation = new Simulation();
+		simulation.load(SimulationFixture.createConfig(0));
+		SimulationFixture.run(simulation, TICKS_BEFORE);
+
+		File file = File.createTempFile("checkpoint", ".bin");
+		try {
+			SimulationCheckpoint.save(simulation, file, true);
+			Simulation resumed = SimulationCheckpoint.load(file);
+			long expected = SimulationFixture.run(simulation, TICKS_AFTER);
+			assertEquals(expected, SimulationFixture.run(resumed, TICKS_AFTER));
+		} finally {
+			file.delete();
+		}
+	}
+
+	public void testSaveRejectedLeavesNoFile() throws IOException {
+		SimulationConfig config = SimulationFixture.createConfig(0);
+		for (int i = 0; i < config.getAgentTypes(); i++)
+			config.learningParams.agentParams[i].learningEnabled = true;
+		Simulation simulation = new Simulation();
+		simulation.load(config);
+
+		File file = File.createTempFile("checkpoint", ".bin");
+		File temp = new File(file.getPath() + ".tmp");
+		try {
+			SimulationCheckpoint.save(simulation, file, true);
+			fail("Agents that learn were saved");
+		} catch (IllegalStateException ex) {
+			// expected
+		} finally {
+			file.delete();
+		}
+		assertFalse(temp.exists());
+	}
+}
@@ -0,0 +1,83 @@
+package org.cobweb.cobweb2;
+
+import junit.framework.Assert;
+
+import org.cobweb.cobweb2.core.Agent;
+import org.cobweb.cobweb2.core.Location;
+import org.cobweb.cobweb2.core.LocationDirection;
+import org.cobweb.cobweb2.core.Phenotype;
+import org.cobweb.cobweb2.core.Topology;
+import org.cobweb.cobweb2.plugins.genetics.PhenotypeIndex;
+
+/**
+ * Seeded simulation and hash of its progress, shared by the tests that compare two runs.
+ */
+final class SimulationFixture {
+
+	private SimulationFixture() {
+	}
+
+	static SimulationConfig createConfig(int threads) {
+		SimulationConfig config = new SimulationConfig();
+		config.randomSeed = 1234;
+		config.envParams.width = 60;
+		config.envParams.height = 60;
+		config.parallelThreads = threads;
+		config.parallelTileSize = 10;
+		return config;
+	}
+
+	static Phenotype findPhenotype(String identifier) {
+		for (Phenotype p : PhenotypeIndex.getPossibleValues()) {
+			if (p.getIdentifier().equals(identifier))
+				return p;
+		}
+		throw new IllegalArgumentException(identifier);
+	}
+
+	/**
+	 * Steps the simulation.
+	 * @return hash of the position and energy of every agent, of the food and of the drops, after every tick
+	 */
+	static long run(Simulation simulation, int ticks) {
+		Topology topology = simulation.getTopology();
+
+		long hash = 17;
+		for (int t = 0; t < ticks; t++) {
+			simulation.step();
+			for (Agent agent : simulation.theEnvironment.getAgents()) {
+				LocationDirection position = agent.getPosition();
+				long agentHash = agent.id;
+				agentHash = agentHash * 31 + agent.getType();
+				agentHash = agentHash * 31 + position.x;
+				agentHash = agentHash * 31 + position.y;
+				agentHash = agentHash * 31 + position.direction.x * 3 + position.direction.y;
+				agentHash = agentHash * 31 + agent.getEnergy();
+				// Agents are summed so the order of the environment's agent list does not matter
+				hash += agentHash * 0x9E3779B97F4A7C15L;
+			}
+			for (int i = 0; i < topology.width * topology.height; i++) {
+				Location l = topology.getLocation(i);
+				if (simulation.theEnvironment.hasFood(l))
+					hash = hash * 31 + i * 7 + simulation.theEnvironment.getFoodType(l);
+				if (simulation.theEnvironment.hasDrop(l))
+					hash = hash * 31 + i * 11;
+			}
+			hash = hash * 1000003 + simulation.theEnvironment.getAgentCount();
+		}
+		Assert.assertTrue("Population died out, nothing was tested", simulation.theEnvironment.getAgentCount() > 0);
+		return hash;
+	}
+
+	/**
+	 * Runs a new simulation of the configuration.
+	 * @see #run(Simulation, int)
+	 */
+	static long run(SimulationConfig config, int ticks) {
+		Simulation simulation = new Simulation();
+		simulation.load(config);
+		long hash = run(simulation, ticks);
+		simulation.dispose();
+		return hash;
+	}
+}
@@ -0,0 +1,97 @@
+package org.cobweb.cobweb2;
+
+import junit.framework.TestCase;
+
+import org.cobweb.cobweb2.core.Phenotype;
+import org.cobweb.cobweb2.plugins.stats.AgentStatistics;
+import org.cobweb.cobweb2.plugins.vision.VisionState;
+
+/**
+ * Runs the same seeded simulation several times and checks every run gives exactly the same result.
+ */
+public class SimulationReplayTest extends TestCase {
+
+	private static final int TICKS = 300;
+
+	public void testSerialReplay() {
+		assertEquals(SimulationFixture.run(SimulationFixture.createConfig(0), TICKS), SimulationFixture.run(SimulationFixture.createConfig(0), TICKS));
+	}
+
+	public void testParallelReplayAcrossThreadCounts() {
+		long expected = SimulationFixture.run(SimulationFixture.createConfig(1), TICKS);
+		assertEquals(expected, SimulationFixture.run(SimulationFixture.createConfig(2), TICKS));
+		assertEquals(expected, SimulationFixture.run(SimulationFixture.createConfig(4), TICKS));
+		assertEquals(expected, SimulationFixture.run(SimulationFixture.createConfig(1), TICKS));
+	}
+
+	public void testAgentPoolingReplay() {
+		SimulationConfig pooled = SimulationFixture.createConfig(0);
+		pooled.agentPooling = true;
+		assertEquals(SimulationFixture.run(SimulationFixture.createConfig(0), TICKS), SimulationFixture.run(pooled, TICKS));
+	}
+
+	public void testParallelBirthsHaveDenseIds() {
+		Simulation simulation = new Simulation();
+		simulation.load(createFastSplittingConfig(2, FAST_TILE_SIZE));
+		for (int t = 0; t < TICKS; t++) {
+			simulation.step();
+		}
+
+		// Statistics are sorted by id, including agents that died in the phase they were born in
+		int expectedId = 1;
+		for (AgentStatistics stats : simulation.statsMutator.getAllStats()) {
+			assertEquals(expectedId++, stats.id);
+		}
+		assertEquals(simulation.statsMutator.getAgentCount(), expectedId - 1);
+		simulation.dispose();
+	}
+
+	public void testWideSwarmRadiusUpdatesSerially() {
+		SimulationConfig config = SimulationFixture.createConfig(2);
+		assertTrue(ParallelAgentUpdater.isSupported(config));
+		config.swarmParams.agentParams[0].effects[0].radius = config.parallelTileSize / 2;
+		assertFalse(ParallelAgentUpdater.isSupported(config));
+	}
+
+	/**
+	 * Agents make two moves and look ahead from the second cell.
+	 */
+	private static final int FAST_TILE_SIZE = 2 * (2 + VisionState.LOOK_DISTANCE);
+
+	private static SimulationConfig createFastSplittingConfig(int threads, int tileSize) {
+		SimulationConfig config = SimulationFixture.createConfig(threads);
+		config.parallelTileSize = tileSize;
+		for (int i = 0; i < config.getAgentTypes(); i++) {
+			config.agentParams.agentParams[i].agentMovementSpeed.setValue(2);
+			config.agentParams.agentParams[i].splitChance.setValue(0.05f);
+			config.agentParams.agentParams[i].splitEnergyRatio = "[[0.4, 0.3, 0.3], [0.5, 0.5]]";
+		}
+		return config;
+	}
+
+	public void testFastSplittingAgentsReplay() {
+		assertFalse(ParallelAgentUpdater.isSupported(createFastSplittingConfig(2, FAST_TILE_SIZE - 1)));
+		assertTrue(ParallelAgentUpdater.isSupported(createFastSplittingConfig(2, FAST_TILE_SIZE)));
+
+		long expected = SimulationFixture.run(createFastSplittingConfig(1, FAST_TILE_SIZE), TICKS);
+		assertEquals(expected, SimulationFixture.run(createFastSplittingConfig(2, FAST_TILE_SIZE), TICKS));
+		assertEquals(expected, SimulationFixture.run(createFastSplittingConfig(4, FAST_TILE_SIZE), TICKS));
+	}
+
+	public void testSpeedPhenotypeUpdatesSerially() {
+		SimulationConfig config = SimulationFixture.createConfig(2);
+		config.geneticParams.phenotype = new Phenotype[] { SimulationFixture.findPhenotype("agentMovementSpeed") };
+		assertFalse(ParallelAgentUpdater.isSupported(config));
+	}
+
+	public void testSmallTileSizeRejected() {
+		SimulationConfig config = SimulationFixture.createConfig(2);
+		config.parallelTileSize = ParallelAgentUpdater.MIN_TILE_SIZE - 1;
+		try {
+			new Simulation().load(config);
+			fail("Tiles smaller than agents can reach were accepted");
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+}
@@ -79,6 +79,104 @@ public class TopologyTest extends TestCase {
 		assertEquals(1.0, t.getDistance(l99, l49)); // Vertical wrap
 	}
 
+	private static final boolean[][] WRAP_MODES = {
+		{false, false, false},
+		{true, false, false},
+		{false, true, false},
+		{false, false, true},
+		{false, true, true},
+	};
+
+	public void testAdjacentIndex() {
+		for (boolean[] mode : WRAP_MODES) {
+			Topology t = new Topology(randomSource, 9, 6, mode[0], mode[1], mode[2]);
+			for (int i = 0; i < t.width * t.height; i++) {
+				for (Direction dir : t.ALL_4_WAY) {
+					Location adjacent = t.getAdjacent(t.getLocation(i), dir);
+					int expected = adjacent == null ? -1 : t.getIndex(adjacent);
+					assertEquals(expected, t.getAdjacentIndex(i, dir));
+				}
+			}
+		}
+	}
 
+	public void testAdjacentTable() {
+		for (boolean[] mode : WRAP_MODES) {
+			Topology t = new Topology(randomSource, 9, 6, mode[0], mode[1], mode[2]);
+			for (int i = 0; i < t.width * t.height; i++) {
+				for (Direction dir : t.ALL_4_WAY) {
+					LocationDirection from = new LocationDirection(t.getLocation(i), dir);
+					LocationDirection expected = t.computeAdjacent(from);
+					LocationDirection adjacent = t.getAdjacent(from);
+					assertEquals(expected, adjacent);
+					if (expected != null) {
+						assertEquals(expected.direction, adjacent.direction);
+						assertEquals(expected.direction, t.getAdjacentDirection(i, dir));
+					}
+				}
+			}
+		}
+	}
+
+	public void testReverseAdjacentIndex() {
+		for (boolean[] mode : WRAP_MODES) {
+			Topology t = new Topology(randomSource, 9, 6, mode[0], mode[1], mode[2]);
+			int cells = t.width * t.height;
+			for (Direction dir : t.ALL_4_WAY) {
+				int[] sources = new int[cells];
+				for (int i = 0; i < cells; i++) {
+					int adjacent = t.getAdjacentIndex(i, dir);
+					if (adjacent != -1)
+						sources[adjacent]++;
+				}
+				for (int i = 0; i < cells; i++) {
+					int found = 0;
+					for (int c = 0; c < Topology.REVERSE_ADJACENT_CANDIDATES; c++) {
+						int source = t.getReverseAdjacentIndex(i, dir, c);
+						if (source != -1) {
+							assertEquals(i, t.getAdjacentIndex(source, dir));
+							found++;
+						}
+					}
+					assertEquals(sources[i], found);
+				}
+			}
+		}
+	}
+
+	public void testDistanceIndex() {
+		for (boolean[] mode : WRAP_MODES) {
+			Topology t = new Topology(randomSource, 9, 6, mode[0], mode[1], mode[2]);
+			int cells = t.width * t.height;
+			for (int a = 0; a < cells; a++) {
+				Location from = t.getLocation(a);
+				for (int b = 0; b < cells; b++) {
+					int expected = Integer.MAX_VALUE;
+					for (Location virtual : t.getWrapVirtualLocations(t.getLocation(b))) {
+						int dx = virtual.x - from.x;
+						int dy = virtual.y - from.y;
+						expected = Math.min(expected, dx * dx + dy * dy);
+					}
+					assertEquals(expected, t.distanceSquared(a, b));
+				}
+			}
+		}
+	}
+
+	public void testAdjacentDirection() {
+		Topology t = new Topology(randomSource, 10, 10, true, false, false);
+		LocationDirection over = t.getAdjacent(new LocationDirection(l00, Topology.NORTH));
+		assertEquals(new Location(5, 0), over);
+		assertEquals(Topology.SOUTH, over.direction);
+
+		t = new Topology(randomSource, 10, 10, false, true, false);
+		over = t.getAdjacent(new LocationDirection(l99, Topology.SOUTH));
+		assertEquals(l99, over);
+		assertEquals(Topology.NORTH, over.direction);
+
+		t = new Topology(randomSource, 10, 10, false, false, false);
+		assertNull(t.getAdjacent(new LocationDirection(l00, Topology.WEST)));
+		assertEquals(Topology.EAST, t.getTurnRightPosition(new LocationDirection(l00, Topology.NORTH)).direction);
+	}
 
 }
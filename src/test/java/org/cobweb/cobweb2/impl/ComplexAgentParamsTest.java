@@ -12,4 +12,36 @@ public class ComplexAgentParamsTest extends TestCase {
 		assertEquals(100, sim.agentParams.agentParams[0].foodEnergy.getValue());
 	}
 
+	public void testSplitRatios() {
+		ComplexAgentParams params = new SimulationConfig().agentParams.agentParams[0];
+		double[][] ratios = params.getSplitRatios();
+		assertEquals(1, ratios.length);
+		assertEquals(0.5, ratios[0][0]);
+		assertEquals(0.5, ratios[0][1]);
+
+		params.splitEnergyRatio = "[[0.6, 0.4], [0.4, 0.3, 0.3]]";
+		ratios = params.getSplitRatios();
+		assertEquals(2, ratios.length);
+		assertEquals(3, ratios[1].length);
+		assertEquals(0.3, ratios[1][2]);
+
+		params.splitEnergyRatio = "[1, 0]";
+		assertEquals(1.0, params.getSplitRatios()[0][0]);
+		assertFalse(params.isSplitRatioTable());
+
+		params.splitEnergyRatio = "[[0.6, 0.4]]";
+		assertEquals(1, params.getSplitRatios().length);
+		assertTrue(params.isSplitRatioTable());
+
+		for (String invalid : new String[] { "[]", "[0.5, [0.5]]", "[[0.5], 0.5]", "[0.5, \"a\"]", "[-0.5, 1]", "0.5" }) {
+			params.splitEnergyRatio = invalid;
+			try {
+				params.getSplitRatios();
+				fail("Accepted split ratio " + invalid);
+			} catch (IllegalArgumentException ex) {
+				// expected
+			}
+		}
+	}
+
 }
@@ -0,0 +1,39 @@
+package org.cobweb.cobweb2.plugins.stats;
+
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+public class LifetimeRecordFileTest extends TestCase {
+
+	private static AgentStatistics record(int id, int children) {
+		AgentStatistics stats = new AgentStatistics(id, 0, id, -1, -1);
+		stats.directChildren = children;
+		return stats;
+	}
+
+	public void testRecordsReadInIdOrder() {
+		LifetimeRecordFile file = new LifetimeRecordFile();
+		try {
+			// Agents die in any order, with large gaps between ids
+			int[] ids = { 5, 3, 1000000, 4, 1, 2, 70000 };
+			for (int id : ids) {
+				file.write(record(id, 0), false);
+			}
+			file.write(record(3, 2), true);
+			assertEquals(ids.length, file.size());
+
+			Iterator<AgentStatistics> records = file.iterator();
+			int[] expected = { 1, 2, 3, 4, 5, 70000, 1000000 };
+			for (int id : expected) {
+				AgentStatistics stats = records.next();
+				assertEquals(id, stats.id);
+				assertEquals(id, stats.birthTick);
+				assertEquals(id == 3 ? 2 : 0, stats.directChildren);
+			}
+			assertFalse(records.hasNext());
+		} finally {
+			file.delete();
+		}
+	}
+}
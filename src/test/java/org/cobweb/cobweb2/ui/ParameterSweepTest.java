@@ -0,0 +1,61 @@
+package org.cobweb.cobweb2.ui;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.cobweb.cobweb2.SimulationConfig;
+import org.cobweb.cobweb2.io.Cobweb2Serializer;
+
+public class ParameterSweepTest extends TestCase {
+
+	private static final String SWEEP =
+			"# comment\n" +
+			"ticks = 100\n" +
+			"seeds = 1, 2\n" +
+			"Agents/AgentParams/Agend[2]/InitEnergy = 50, 150, 250\n" +
+			"Environment/Width = 30, 40\n";
+
+	public void testRunOrder() throws IOException {
+		ParameterSweep sweep = ParameterSweep.parse(new StringReader(SWEEP));
+		assertEquals(100, sweep.getTicks());
+		assertEquals(12, sweep.size());
+
+		assertEquals("[50, 30]", sweep.getValues(0).toString());
+		assertEquals("[50, 30]", sweep.getValues(1).toString());
+		assertEquals("[50, 40]", sweep.getValues(2).toString());
+		assertEquals("[150, 30]", sweep.getValues(4).toString());
+		assertEquals("[250, 40]", sweep.getValues(11).toString());
+		assertEquals(1, sweep.getSeed(0));
+		assertEquals(2, sweep.getSeed(11));
+	}
+
+	public void testCreateConfig() throws IOException {
+		ParameterSweep sweep = ParameterSweep.parse(new StringReader(SWEEP));
+		ByteArrayOutputStream base = new ByteArrayOutputStream();
+		new Cobweb2Serializer().saveConfig(new SimulationConfig(), base);
+
+		SimulationConfig config = sweep.createConfig(base.toByteArray(), 7);
+		assertEquals(2, config.randomSeed);
+		assertEquals(150, config.agentParams.agentParams[1].initEnergy.getRawValue());
+		assertEquals(100, config.agentParams.agentParams[0].initEnergy.getRawValue());
+		assertEquals(40, config.envParams.width);
+	}
+
+	public void testBadSweepFile() throws IOException {
+		try {
+			ParameterSweep.parse(new StringReader("seeds = 1\n"));
+			fail("Sweep without ticks accepted");
+		} catch (UserInputException ex) {
+			// expected
+		}
+		try {
+			ParameterSweep.parse(new StringReader("ticks = 1\nEnvironment/Width\n"));
+			fail("Line without values accepted");
+		} catch (UserInputException ex) {
+			// expected
+		}
+	}
+}